@@ -0,0 +1,118 @@
+package org.opentmf.mockserver.cache;
+
+import static org.opentmf.mockserver.model.TmfConstants.REVISION;
+import static org.opentmf.mockserver.model.TmfConstants.UPDATED_BY;
+import static org.opentmf.mockserver.model.TmfConstants.UPDATED_DATE;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opentmf.mockserver.util.CompressionUtil;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+
+/**
+ * A payload held by the payload cache. Depending on the storage mode, the payload is kept either as
+ * a Jackson tree on the heap, or as serialized JSON outside of the heap.
+ *
+ * @author Gokhan Demir
+ */
+public abstract class CacheEntry {
+
+  private static final AtomicLong STAMPS = new AtomicLong();
+
+  private final boolean updated;
+  private final String revision;
+  private final long stamp;
+  // The values of the indexed fields of the domain, extracted once by DomainStore.index
+  List<List<Comparable<?>>> indexValues;
+
+  protected CacheEntry(JsonNode payload) {
+    this.updated = payload.has(UPDATED_DATE) || payload.has(UPDATED_BY);
+    this.revision = payload.path(REVISION).asText();
+    this.stamp = STAMPS.incrementAndGet();
+  }
+
+  /**
+   * Returns the payload as a tree. Changes to the returned tree are only guaranteed to be kept if
+   * they are stored back into the cache with an update.
+   *
+   * @return The payload tree.
+   */
+  public abstract JsonNode getPayload();
+
+  /**
+   * Returns the payload serialized as UTF-8 encoded JSON. The returned array must not be modified.
+   *
+   * @return The serialized payload.
+   */
+  public abstract byte[] getPayloadBytes();
+
+  /**
+   * Returns the serialized payload compressed with a content coding. The payload is compressed on
+   * every call, unless the entry keeps its serialized form. The returned array must not be
+   * modified.
+   *
+   * @param encoding The content coding.
+   * @return The compressed payload.
+   */
+  public byte[] getEncodedPayloadBytes(Encoding encoding) {
+    return CompressionUtil.compress(getPayloadBytes(), encoding);
+  }
+
+  /**
+   * Tells whether {@link #getPayload()} returns the tree held by the entry, which every reader of
+   * the entry shares, rather than a tree of its own for each caller.
+   *
+   * @return true if changes to the returned tree are seen by other readers.
+   */
+  public boolean isPayloadShared() {
+    return false;
+  }
+
+  /**
+   * Returns the estimated memory used by this entry, in bytes.
+   *
+   * @return The weight of the entry.
+   */
+  public abstract long getWeight();
+
+  /**
+   * Tells whether the payload carries update audit fields, in which case it is no longer subject
+   * to the automatic state transition on the first read.
+   *
+   * @return true if the payload has an updatedDate or updatedBy field.
+   */
+  public boolean isUpdated() {
+    return updated;
+  }
+
+  /**
+   * Returns the revision field of the payload, as it was when the entry was created.
+   *
+   * @return The revision, or an empty string if the payload has none.
+   */
+  public String getRevision() {
+    return revision;
+  }
+
+  /**
+   * Returns a number that is unique to this entry. Every write to the cache creates a new entry,
+   * so the stamp tells apart contents that the revision field does not, such as those of a JSON
+   * patch that leaves the revision as it was.
+   *
+   * @return The stamp, unique within the process.
+   */
+  public long getStamp() {
+    return stamp;
+  }
+
+  List<Comparable<?>> indexValuesOf(int index) {
+    return indexValues == null ? Collections.emptyList() : indexValues.get(index);
+  }
+
+  /** Releases the storage of the payload once the entry has left the cache. */
+  public void release() {
+    // nothing to release by default
+  }
+}
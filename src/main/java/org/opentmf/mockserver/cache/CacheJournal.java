@@ -0,0 +1,457 @@
+package org.opentmf.mockserver.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import org.opentmf.mockserver.model.Id;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the mutations of the payload cache.
+ *
+ * <p>Mutations are encoded on the calling thread and queued. A single writer thread takes
+ * everything queued at once and writes it with one gathering write, so concurrent mutations are
+ * committed as a group, and forces the file to disk according to the {@link FsyncPolicy}.
+ *
+ * <p>Each record is framed by its length and a CRC32 checksum, so that replay stops cleanly at a
+ * record that was torn by a crash. The journal is compacted by {@link #rotate() rotating} it aside,
+ * taking a snapshot of the cache, and then {@link #deleteRotated() deleting} the rotated file; a
+ * rotated file that is still present at startup is replayed before the current one.
+ *
+ * <p>The journal fails closed: once a write fails, the writer thread stops, and every mutation
+ * that was not written, or is appended later, is reported as not durable by completing its future
+ * exceptionally, with the error that failed the journal. Nothing is written to the file again.
+ *
+ * @author Gokhan Demir
+ */
+public final class CacheJournal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CacheJournal.class);
+  private static final int MAX_BATCH = 1024;
+  private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+  private static final Pending STOP = new Pending(null, null);
+
+  /**
+   * The kinds of mutations recorded in the journal. Records hold the ordinal, so new kinds are only
+   * ever added last.
+   */
+  public enum Operation {
+    PUT,
+    UPDATE,
+    CLEAR,
+    /** Restarts the eviction timer of every version of an id. */
+    TOUCH,
+    /** Removes an entry the cache evicted, with the name of the {@link RemovalCause} as payload. */
+    EVICT
+  }
+
+  /** A single mutation, as recorded in the journal. */
+  public static final class Record {
+    private final Operation operation;
+    private final long time;
+    private final String domain;
+    private final Id id;
+    private final byte[] payload;
+
+    private Record(Operation operation, long time, String domain, Id id, byte[] payload) {
+      this.operation = operation;
+      this.time = time;
+      this.domain = domain;
+      this.id = id;
+      this.payload = payload;
+    }
+
+    public Operation getOperation() {
+      return operation;
+    }
+
+    /** Returns the time of the mutation, in epoch milliseconds. */
+    public long getTime() {
+      return time;
+    }
+
+    public String getDomain() {
+      return domain;
+    }
+
+    public Id getId() {
+      return id;
+    }
+
+    /**
+     * Returns the serialized payload, the name of the {@link RemovalCause} for {@link
+     * Operation#EVICT}, or null for {@link Operation#CLEAR} and {@link Operation#TOUCH}.
+     */
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+
+  private static final class Pending {
+    private final ByteBuffer bytes;
+    private final CompletableFuture<Void> durable;
+
+    private Pending(ByteBuffer bytes, CompletableFuture<Void> durable) {
+      this.bytes = bytes;
+      this.durable = durable;
+    }
+  }
+
+  private final Path file;
+  private final Path rotated;
+  private final FsyncPolicy fsyncPolicy;
+  private final long fsyncIntervalMillis;
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private FileChannel channel;
+  private long lastForce = System.currentTimeMillis();
+  private boolean dirty;
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  private CacheJournal(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis)
+      throws IOException {
+    this.file = file;
+    this.rotated = rotatedFileOf(file);
+    this.fsyncPolicy = fsyncPolicy;
+    this.fsyncIntervalMillis = fsyncIntervalMillis;
+    this.channel = openChannel(file);
+    this.writer = new Thread(this::writeLoop, "payload-cache-journal");
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Opens the journal file for appending, and starts its writer thread.
+   *
+   * @param file The journal file.
+   * @param fsyncPolicy When to force the journal to disk.
+   * @param fsyncIntervalMillis The interval of {@link FsyncPolicy#INTERVAL}, in milliseconds.
+   * @return The opened journal.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static CacheJournal open(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis)
+      throws IOException {
+    CacheJournal journal = new CacheJournal(file, fsyncPolicy, fsyncIntervalMillis);
+    journal.writer.start();
+    return journal;
+  }
+
+  /**
+   * Appends a mutation to the journal. The returned future completes once the mutation is as
+   * durable as the fsync policy promises; it is already complete unless the policy is {@link
+   * FsyncPolicy#ALWAYS}, or the journal has failed, in which case it completes exceptionally.
+   *
+   * @param operation The kind of mutation.
+   * @param domain The domain of the mutated id.
+   * @param id The mutated id.
+   * @param payload The serialized payload, the name of the {@link RemovalCause} for {@link
+   *     Operation#EVICT}, or null for {@link Operation#CLEAR} and {@link Operation#TOUCH}.
+   * @return The future to wait on for durability.
+   */
+  public CompletableFuture<Void> append(
+      Operation operation, String domain, Id id, byte[] payload) {
+    if (closed) {
+      return DONE;
+    }
+    IOException failed = failure;
+    if (failed != null) {
+      return CompletableFuture.failedFuture(failed);
+    }
+    ByteBuffer bytes = encode(operation, System.currentTimeMillis(), domain, id, payload);
+    CompletableFuture<Void> durable =
+        fsyncPolicy == FsyncPolicy.ALWAYS ? new CompletableFuture<>() : null;
+    queue.add(new Pending(bytes, durable));
+    if (failure != null) {
+      // The writer may have stopped before this mutation was queued, and would never see it
+      failAll(drain(new ArrayList<>()), failure);
+    }
+    return durable == null ? DONE : durable;
+  }
+
+  /**
+   * Returns whether a write has failed, after which nothing more is journaled.
+   *
+   * @return true if the journal has failed.
+   */
+  public boolean isFailed() {
+    return failure != null;
+  }
+
+  /**
+   * Moves the journal aside and continues appending into a new file. If a rotated file is still
+   * present, because a previous compaction did not complete, it is kept and the journal is not
+   * rotated again.
+   *
+   * @throws IOException If the journal cannot be rotated.
+   */
+  public synchronized void rotate() throws IOException {
+    if (Files.exists(rotated)) {
+      return;
+    }
+    if (failure == null) {
+      channel.force(false);
+    }
+    channel.close();
+    Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+    channel = openChannel(file);
+  }
+
+  /**
+   * Deletes the rotated journal, once a snapshot covering its mutations has been written.
+   *
+   * @throws IOException If the file cannot be deleted.
+   */
+  public void deleteRotated() throws IOException {
+    Files.deleteIfExists(rotated);
+  }
+
+  /**
+   * Stops the writer thread, and writes out and forces everything queued so far. Later appends
+   * are ignored.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    queue.add(STOP);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      List<Pending> batch = drain(new ArrayList<>());
+      try {
+        if (failure == null) {
+          writeBatch(batch, true);
+        } else {
+          failAll(batch, failure);
+        }
+        channel.close();
+      } catch (IOException e) {
+        failAll(batch, e);
+        LOG.error("Cache journal {} could not be closed", file, e);
+      }
+    }
+  }
+
+  /**
+   * Reads the rotated journal, if present, and then the journal itself, stopping at the first
+   * incomplete or corrupt record of each.
+   *
+   * @param file The journal file.
+   * @param consumer The consumer of the records, in the order they were appended.
+   * @return The number of records read.
+   * @throws IOException If a file cannot be read.
+   */
+  public static long replay(Path file, Consumer<Record> consumer) throws IOException {
+    long count = 0;
+    for (Path path : new Path[] {rotatedFileOf(file), file}) {
+      if (Files.exists(path)) {
+        try (InputStream in = Files.newInputStream(path)) {
+          count += replay(path, Files.size(path),
+              new DataInputStream(new BufferedInputStream(in)), consumer);
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Deletes the journal and its rotated file, once a snapshot covering them has been written.
+   *
+   * @param file The journal file.
+   * @throws IOException If a file cannot be deleted.
+   */
+  public static void delete(Path file) throws IOException {
+    Files.deleteIfExists(rotatedFileOf(file));
+    Files.deleteIfExists(file);
+  }
+
+  // A length beyond the rest of the file can only be corrupt, and is never allocated
+  private static long replay(Path path, long size, DataInputStream in, Consumer<Record> consumer)
+      throws IOException {
+    long count = 0;
+    long remaining = size;
+    CRC32 crc = new CRC32();
+    while (true) {
+      in.mark(1);
+      if (in.read() < 0) {
+        return count;
+      }
+      in.reset();
+      byte[] body;
+      try {
+        int length = in.readInt();
+        long checksum = in.readInt() & 0xffffffffL;
+        remaining -= 8;
+        if (length <= 0 || length > remaining) {
+          throw new EOFException();
+        }
+        remaining -= length;
+        body = new byte[length];
+        in.readFully(body);
+        crc.reset();
+        crc.update(body);
+        if (crc.getValue() != checksum) {
+          LOG.warn("Cache journal {} has a corrupt record after {} records", path, count);
+          return count;
+        }
+      } catch (EOFException e) {
+        LOG.warn("Cache journal {} ends with a torn record after {} records", path, count);
+        return count;
+      }
+      consumer.accept(decode(ByteBuffer.wrap(body)));
+      count++;
+    }
+  }
+
+  private static ByteBuffer encode(
+      Operation operation, long time, String domain, Id id, byte[] payload) {
+    byte[] domainBytes = domain.getBytes(UTF_8);
+    byte[] idBytes = id.getId().getBytes(UTF_8);
+    byte[] versionBytes = id.getVersion() == null ? null : id.getVersion().getBytes(UTF_8);
+    int length = 1 + 8 + 4 + domainBytes.length + 4 + idBytes.length + 4
+        + (versionBytes == null ? 0 : versionBytes.length) + 4
+        + (payload == null ? 0 : payload.length);
+    ByteBuffer buffer = ByteBuffer.allocate(8 + length);
+    buffer.putInt(length).putInt(0);
+    buffer.put((byte) operation.ordinal()).putLong(time);
+    putBytes(buffer, domainBytes);
+    putBytes(buffer, idBytes);
+    putBytes(buffer, versionBytes);
+    putBytes(buffer, payload);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), 8, length);
+    buffer.putInt(4, (int) crc.getValue());
+    buffer.flip();
+    return buffer;
+  }
+
+  private static Record decode(ByteBuffer body) {
+    Operation operation = Operation.values()[body.get()];
+    long time = body.getLong();
+    String domain = new String(getBytes(body), UTF_8);
+    Id id = new Id();
+    id.setId(new String(getBytes(body), UTF_8));
+    byte[] version = getBytes(body);
+    id.setVersion(version == null ? null : new String(version, UTF_8));
+    return new Record(operation, time, domain, id, getBytes(body));
+  }
+
+  private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer.putInt(-1);
+    } else {
+      buffer.putInt(bytes.length).put(bytes);
+    }
+  }
+
+  private static byte[] getBytes(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private void writeLoop() {
+    List<Pending> batch = new ArrayList<>();
+    boolean stopped = false;
+    while (!stopped) {
+      try {
+        Pending first = queue.poll(Math.max(1L, fsyncIntervalMillis), TimeUnit.MILLISECONDS);
+        batch.clear();
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, MAX_BATCH - 1);
+        }
+        stopped = batch.remove(STOP);
+        synchronized (this) {
+          writeBatch(batch, false);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException e) {
+        LOG.error("Cache journal {} could not be written, no more mutations are journaled", file,
+            e);
+        failure = e;
+        failAll(batch, e);
+        failAll(drain(new ArrayList<>()), e);
+        return;
+      }
+    }
+  }
+
+  private static void failAll(List<Pending> batch, IOException e) {
+    batch.forEach(pending -> {
+      if (pending.durable != null) {
+        pending.durable.completeExceptionally(e);
+      }
+    });
+  }
+
+  private List<Pending> drain(List<Pending> batch) {
+    queue.drainTo(batch);
+    batch.remove(STOP);
+    return batch;
+  }
+
+  // Called with the monitor held, so that it never races with a rotation
+  private void writeBatch(List<Pending> batch, boolean force) throws IOException {
+    if (!batch.isEmpty()) {
+      ByteBuffer[] buffers = batch.stream().map(pending -> pending.bytes).toArray(ByteBuffer[]::new);
+      long remaining = batch.stream().mapToLong(pending -> pending.bytes.remaining()).sum();
+      while (remaining > 0) {
+        remaining -= channel.write(buffers);
+      }
+      dirty = true;
+    }
+    long now = System.currentTimeMillis();
+    boolean due = fsyncPolicy == FsyncPolicy.ALWAYS
+        || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastForce >= fsyncIntervalMillis;
+    if (dirty && (force || due)) {
+      channel.force(false);
+      lastForce = now;
+      dirty = false;
+    }
+    batch.forEach(pending -> {
+      if (pending.durable != null) {
+        pending.durable.complete(null);
+      }
+    });
+  }
+
+  private static FileChannel openChannel(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+  }
+
+  private static Path rotatedFileOf(Path file) {
+    return file.resolveSibling(file.getFileName() + ".old");
+  }
+}
@@ -0,0 +1,71 @@
+package org.opentmf.mockserver.cache;
+
+/**
+ * The optional size limits of the payload cache, globally and per domain. A limit of {@link
+ * Long#MAX_VALUE} means unbounded.
+ *
+ * @author Gokhan Demir
+ */
+public class CacheLimits {
+
+  private final long maxEntries;
+  private final long maxBytes;
+  private final long maxEntriesPerDomain;
+  private final long maxBytesPerDomain;
+
+  public CacheLimits(
+      long maxEntries, long maxBytes, long maxEntriesPerDomain, long maxBytesPerDomain) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.maxEntriesPerDomain = maxEntriesPerDomain;
+    this.maxBytesPerDomain = maxBytesPerDomain;
+  }
+
+  public long getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Returns the number of entries a single domain may hold, which is never more than the global
+   * limit.
+   *
+   * @return The maximum number of entries of a domain.
+   */
+  public long getMaxEntriesPerDomain() {
+    return Math.min(maxEntries, maxEntriesPerDomain);
+  }
+
+  /**
+   * Returns the estimated number of bytes a single domain may hold, which is never more than the
+   * global limit.
+   *
+   * @return The maximum weight of a domain.
+   */
+  public long getMaxBytesPerDomain() {
+    return Math.min(maxBytes, maxBytesPerDomain);
+  }
+
+  public boolean isBounded() {
+    return getMaxEntriesPerDomain() != Long.MAX_VALUE || getMaxBytesPerDomain() != Long.MAX_VALUE;
+  }
+
+  public boolean isExceededBy(WTinyLfuPolicy.Usage usage) {
+    return usage.getEntries() > maxEntries || usage.getWeight() > maxBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "maxEntries=" + format(maxEntries)
+        + ", maxBytes=" + format(maxBytes)
+        + ", maxEntriesPerDomain=" + format(maxEntriesPerDomain)
+        + ", maxBytesPerDomain=" + format(maxBytesPerDomain);
+  }
+
+  private static String format(long limit) {
+    return limit == Long.MAX_VALUE ? "unbounded" : String.valueOf(limit);
+  }
+}
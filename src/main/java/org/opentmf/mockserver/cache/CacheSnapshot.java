@@ -0,0 +1,196 @@
+package org.opentmf.mockserver.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.opentmf.mockserver.model.Id;
+
+/**
+ * Reads and writes snapshots of the payload cache in a compact binary file.
+ *
+ * <p>A snapshot starts with a magic number and a format version, followed by one record per cached
+ * payload, and ends with a trailer holding the number of records. A file without the trailer is
+ * considered truncated and is rejected as a whole. Each record holds the domain, the id and the
+ * optional version, the last touch time in epoch milliseconds, and the serialized payload.
+ *
+ * <p>Snapshots are written through a {@link FileChannel} into a temporary file next to the target,
+ * forced to disk, and then atomically moved over the previous snapshot, so that a crash while
+ * writing never destroys the last complete snapshot.
+ *
+ * @author Gokhan Demir
+ */
+public final class CacheSnapshot {
+
+  private static final int MAGIC = 0x544d4643;
+  private static final int FORMAT_VERSION = 1;
+  private static final byte RECORD = 1;
+  private static final byte END = 0;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CacheSnapshot() {}
+
+  /** A single cached payload, as stored in a snapshot. */
+  public static final class Record {
+    private final String domain;
+    private final Id id;
+    private final long lastTouch;
+    private final byte[] payload;
+
+    public Record(String domain, Id id, long lastTouch, byte[] payload) {
+      this.domain = domain;
+      this.id = id;
+      this.lastTouch = lastTouch;
+      this.payload = payload;
+    }
+
+    public String getDomain() {
+      return domain;
+    }
+
+    public Id getId() {
+      return id;
+    }
+
+    public long getLastTouch() {
+      return lastTouch;
+    }
+
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+
+  /**
+   * Writes the given records as the new snapshot file, replacing the previous one atomically.
+   *
+   * @param file The snapshot file.
+   * @param records The records to write.
+   * @return The number of records written.
+   * @throws IOException If the snapshot cannot be written.
+   */
+  public static long write(Path file, Iterator<Record> records) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = parent.resolve(file.getFileName() + ".tmp");
+    long count = 0;
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+      while (records.hasNext()) {
+        Record record = records.next();
+        byte[] domain = record.domain.getBytes(UTF_8);
+        byte[] id = record.id.getId().getBytes(UTF_8);
+        byte[] version = record.id.getVersion() == null
+            ? null
+            : record.id.getVersion().getBytes(UTF_8);
+        int headerLength = 1 + 4 + domain.length + 4 + id.length + 4
+            + (version == null ? 0 : version.length) + 8 + 4;
+        ensureRemaining(channel, buffer, headerLength);
+        buffer.put(RECORD);
+        buffer.putInt(domain.length).put(domain);
+        buffer.putInt(id.length).put(id);
+        if (version == null) {
+          buffer.putInt(-1);
+        } else {
+          buffer.putInt(version.length).put(version);
+        }
+        buffer.putLong(record.lastTouch);
+        buffer.putInt(record.payload.length);
+        if (record.payload.length > buffer.remaining()) {
+          drain(channel, buffer);
+          writeFully(channel, ByteBuffer.wrap(record.payload));
+        } else {
+          buffer.put(record.payload);
+        }
+        count++;
+      }
+      ensureRemaining(channel, buffer, 1 + 8);
+      buffer.put(END).putLong(count);
+      drain(channel, buffer);
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return count;
+  }
+
+  /**
+   * Reads all records of a snapshot file.
+   *
+   * @param file The snapshot file.
+   * @return The records, in the order they were written.
+   * @throws IOException If the file cannot be read, or is not a complete snapshot.
+   */
+  public static List<Record> read(Path file) throws IOException {
+    List<Record> records = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ)), BUFFER_SIZE))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Not a payload cache snapshot: " + file);
+      }
+      while (in.readByte() == RECORD) {
+        String domain = readString(in);
+        Id id = new Id();
+        id.setId(readString(in));
+        id.setVersion(readString(in));
+        long lastTouch = in.readLong();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        records.add(new Record(domain, id, lastTouch, payload));
+      }
+      if (in.readLong() != records.size()) {
+        throw new IOException("Corrupt payload cache snapshot: " + file);
+      }
+    } catch (EOFException e) {
+      throw new IOException("Truncated payload cache snapshot: " + file, e);
+    }
+    return records;
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int length)
+      throws IOException {
+    if (buffer.remaining() < length) {
+      drain(channel, buffer);
+      if (buffer.capacity() < length) {
+        throw new IOException("Snapshot record header too long: " + length + " bytes");
+      }
+    }
+  }
+
+  // Writes out everything put into the buffer so far, and makes it ready to be filled again
+  private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    writeFully(channel, buffer);
+    buffer.clear();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the entries removed from the payload cache, by {@link RemovalCause}. Recording is
+ * contention free, so it is safe to call from any request thread.
+ *
+ * @author Gokhan Demir
+ */
+public class CacheStats {
+
+  private final Map<RemovalCause, LongAdder> removals = new EnumMap<>(RemovalCause.class);
+
+  public CacheStats() {
+    for (RemovalCause cause : RemovalCause.values()) {
+      removals.put(cause, new LongAdder());
+    }
+  }
+
+  public void recordRemoval(RemovalCause cause) {
+    removals.get(cause).increment();
+  }
+
+  /**
+   * Returns the number of entries removed for the given cause since startup.
+   *
+   * @param cause The removal cause.
+   * @return The number of removed entries.
+   */
+  public long removalCount(RemovalCause cause) {
+    return removals.get(cause).sum();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder("removals{");
+    removals.forEach((cause, count) -> buf.append(cause).append('=').append(count.sum()).append(", "));
+    buf.setLength(buf.length() - 2);
+    return buf.append('}').toString();
+  }
+}
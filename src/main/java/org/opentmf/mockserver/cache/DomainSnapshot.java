@@ -0,0 +1,362 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opentmf.mockserver.model.Id;
+
+/**
+ * An immutable version of the entries of a domain, together with its secondary indexes. Each index
+ * is a {@link PersistentSortedMap} from {@link IndexKey} to entry, so the snapshot of a domain is
+ * as cheap to take, and to change, as the snapshot of its entries alone.
+ *
+ * @author Gokhan Demir
+ */
+public final class DomainSnapshot {
+
+  // Generations are drawn from a single sequence, so that they stay unique across domains, and
+  // across a domain being dropped and created again
+  private static final AtomicLong GENERATIONS = new AtomicLong();
+  // The generation of every empty snapshot, which the sequence never draws
+  private static final long EMPTY_GENERATION = 0;
+
+  private final long generation;
+  private final PersistentSortedMap<Id, CacheEntry> entries;
+  private final List<SecondaryIndex> definitions;
+  private final List<PersistentSortedMap<IndexKey, CacheEntry>> indexes;
+  // Per index, the number of entries that have no value, or more than one, for the field
+  private final int[] irregular;
+
+  private DomainSnapshot(PersistentSortedMap<Id, CacheEntry> entries,
+      List<SecondaryIndex> definitions, List<PersistentSortedMap<IndexKey, CacheEntry>> indexes,
+      int[] irregular, long generation) {
+    this.generation = generation;
+    this.entries = entries;
+    this.definitions = definitions;
+    this.indexes = indexes;
+    this.irregular = irregular;
+  }
+
+  /**
+   * Returns a snapshot of an empty domain. Every such snapshot has the same generation, so that
+   * the results of queries on a domain that does not exist yet stay valid from one request to the
+   * next.
+   *
+   * @param definitions The secondary indexes of the domain.
+   * @return The empty snapshot.
+   */
+  public static DomainSnapshot empty(List<SecondaryIndex> definitions) {
+    return new DomainSnapshot(PersistentSortedMap.empty(), definitions,
+        Collections.nCopies(definitions.size(), PersistentSortedMap.empty()),
+        new int[definitions.size()], EMPTY_GENERATION);
+  }
+
+  /**
+   * Returns the generation of the snapshot. Every change to a domain publishes a new snapshot,
+   * with a greater generation than any before it, so results computed from a snapshot remain
+   * valid for as long as the generation of the domain stays the same. The snapshots of a domain
+   * that has not been changed yet are all empty, and share generation 0.
+   *
+   * @return The generation.
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the entries of the domain, ordered by id.
+   *
+   * @return The entries.
+   */
+  public PersistentSortedMap<Id, CacheEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Tells whether the domain has a secondary index on the given field.
+   *
+   * @param field The dotted path of the field.
+   * @return true if the field is indexed.
+   */
+  public boolean isIndexed(String field) {
+    return positionOf(field, false) >= 0;
+  }
+
+  /**
+   * Returns the entries whose indexed field has the given value, or one of the given values if the
+   * field leads to an array.
+   *
+   * @param field The dotted path of an indexed field.
+   * @param value The indexable value, see {@link IndexKey#valueOf}.
+   * @return The matching entries, ordered by id.
+   * @throws IllegalArgumentException If the field is not indexed.
+   */
+  public SortedMap<Id, CacheEntry> findEqual(String field, Comparable<?> value) {
+    return findRange(field, value, true, value, true);
+  }
+
+  /**
+   * Returns the entries whose indexed field has a value within the given range. A null bound
+   * leaves that side of the range open.
+   *
+   * @param field The dotted path of an indexed field.
+   * @param from The lower bound, or null.
+   * @param fromInclusive Whether the lower bound is part of the range.
+   * @param to The upper bound, or null.
+   * @param toInclusive Whether the upper bound is part of the range.
+   * @return The matching entries, ordered by id.
+   * @throws IllegalArgumentException If the field is not indexed.
+   */
+  public SortedMap<Id, CacheEntry> findRange(String field, Comparable<?> from,
+      boolean fromInclusive, Comparable<?> to, boolean toInclusive) {
+    SortedMap<Id, CacheEntry> result = new TreeMap<>();
+    for (Map.Entry<IndexKey, CacheEntry> e
+        : rangeOf(field, from, fromInclusive, to, toInclusive).entrySet()) {
+      result.put(e.getKey().getId(), e.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Counts the keys of an index within the given range, without visiting them. An entry that has
+   * several values in the range is counted once for each, so the count is an upper bound of the
+   * number of entries {@link #findRange} returns.
+   *
+   * @param field The dotted path of an indexed field.
+   * @param from The lower bound, or null.
+   * @param fromInclusive Whether the lower bound is part of the range.
+   * @param to The upper bound, or null.
+   * @param toInclusive Whether the upper bound is part of the range.
+   * @return The number of index keys in the range.
+   * @throws IllegalArgumentException If the field is not indexed.
+   */
+  public int countRange(String field, Comparable<?> from, boolean fromInclusive,
+      Comparable<?> to, boolean toInclusive) {
+    return rangeOf(field, from, fromInclusive, to, toInclusive).size();
+  }
+
+  /**
+   * Returns an iterator over the entries in the order of the {@link SortKey}s of a field. Entries
+   * with equal keys are ordered by id in both directions, as a stable sort of the entries would
+   * order them.
+   *
+   * @param field The dotted path of a field with an ordering index.
+   * @param descending Whether the greatest keys come first.
+   * @return The iterator, or null if the field has no ordering index, or if the field is missing
+   *     from some entries, in which case the index cannot order all entries.
+   */
+  public Iterator<CacheEntry> ordered(String field, boolean descending) {
+    int position = positionOf(field, true);
+    if (position < 0 || irregular[position] != 0) {
+      return null;
+    }
+    PersistentSortedMap<IndexKey, CacheEntry> index = indexes.get(position);
+    return descending ? new DescendingRunIterator(index) : index.values().iterator();
+  }
+
+  /**
+   * Returns a page of the entries in the order of the {@link SortKey}s of a field, walking the
+   * index for only the entries up to the end of the page.
+   *
+   * @param field The dotted path of a field with an ordering index.
+   * @param descending Whether the greatest values come first.
+   * @param offset The number of entries to skip.
+   * @param limit The maximum number of entries to return.
+   * @return The entries of the page, or null if the index cannot order all entries, see {@link
+   *     #ordered}.
+   */
+  public List<CacheEntry> findPage(String field, boolean descending, int offset, int limit) {
+    Iterator<CacheEntry> it = ordered(field, descending);
+    if (it == null) {
+      return null;
+    }
+    List<CacheEntry> page = new ArrayList<>(Math.max(0, Math.min(limit, entries.size() - offset)));
+    for (int i = 0; i < offset + limit && it.hasNext(); i++) {
+      CacheEntry entry = it.next();
+      if (i >= offset) {
+        page.add(entry);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Returns a page of the entries that come strictly after a cursor, in the order of the {@link
+   * SortKey}s of a field and then of the ids, seeking the cursor in the index rather than walking
+   * the entries before it.
+   *
+   * @param field The dotted path of a field with an ordering index.
+   * @param descending Whether the greatest values come first.
+   * @param key The sort key of the field at the cursor.
+   * @param id The id at the cursor.
+   * @param limit The maximum number of entries to return.
+   * @return The entries of the page, or null if the index cannot order all entries, see {@link
+   *     #ordered}.
+   */
+  public List<CacheEntry> findPageAfter(
+      String field, boolean descending, SortKey key, Id id, int limit) {
+    int position = positionOf(field, true);
+    if (position < 0 || irregular[position] != 0) {
+      return null;
+    }
+    PersistentSortedMap<IndexKey, CacheEntry> index = indexes.get(position);
+    IndexKey cursor = IndexKey.of(key, id);
+    List<CacheEntry> page = new ArrayList<>();
+    // Entries with an equal key come in id order in both directions, so those after the cursor
+    // come first, followed by the lesser or greater keys
+    Iterator<CacheEntry> it = descending
+        ? index.subMap(cursor, IndexKey.after(key)).values().iterator()
+        : index.tailMap(cursor).values().iterator();
+    addAfter(page, it, index.get(cursor), limit);
+    if (descending && page.size() < limit) {
+      addAfter(page, new DescendingRunIterator(index.headMap(IndexKey.before(key))), null, limit);
+    }
+    return page;
+  }
+
+  /**
+   * Counts the entries that come strictly after a cursor, see {@link #findPageAfter}.
+   *
+   * @param field The dotted path of a field with an ordering index.
+   * @param descending Whether the greatest values come first.
+   * @param key The sort key of the field at the cursor.
+   * @param id The id at the cursor.
+   * @return The number of entries after the cursor, or -1 if the index cannot order all entries.
+   */
+  public int countAfter(String field, boolean descending, SortKey key, Id id) {
+    int position = positionOf(field, true);
+    if (position < 0 || irregular[position] != 0) {
+      return -1;
+    }
+    PersistentSortedMap<IndexKey, CacheEntry> index = indexes.get(position);
+    IndexKey cursor = IndexKey.of(key, id);
+    int count = descending
+        ? index.subMap(cursor, IndexKey.after(key)).size()
+            + index.headMap(IndexKey.before(key)).size()
+        : index.tailMap(cursor).size();
+    return index.containsKey(cursor) ? count - 1 : count;
+  }
+
+  private static void addAfter(
+      List<CacheEntry> page, Iterator<CacheEntry> it, CacheEntry skipped, int limit) {
+    while (page.size() < limit && it.hasNext()) {
+      CacheEntry entry = it.next();
+      if (entry != skipped) {
+        page.add(entry);
+      }
+    }
+  }
+
+  // Walks an index backwards one run of equal values at a time, emitting each run in id order
+  private static final class DescendingRunIterator implements Iterator<CacheEntry> {
+    private final Iterator<Map.Entry<IndexKey, CacheEntry>> keys;
+    private final Deque<CacheEntry> run = new ArrayDeque<>();
+    private Map.Entry<IndexKey, CacheEntry> next;
+
+    private DescendingRunIterator(PersistentSortedMap<IndexKey, CacheEntry> index) {
+      this.keys = index.descendingIterator();
+      this.next = keys.hasNext() ? keys.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !run.isEmpty() || next != null;
+    }
+
+    @Override
+    public CacheEntry next() {
+      if (run.isEmpty()) {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Comparable<?> value = next.getKey().getValue();
+        while (next != null && IndexKey.compareValues(next.getKey().getValue(), value) == 0) {
+          run.push(next.getValue());
+          next = keys.hasNext() ? keys.next() : null;
+        }
+      }
+      return run.pop();
+    }
+  }
+
+  private SortedMap<IndexKey, CacheEntry> rangeOf(String field, Comparable<?> from,
+      boolean fromInclusive, Comparable<?> to, boolean toInclusive) {
+    int position = positionOf(field, false);
+    if (position < 0) {
+      throw new IllegalArgumentException("Field " + field + " is not indexed");
+    }
+    SortedMap<IndexKey, CacheEntry> index = indexes.get(position);
+    IndexKey lower = from == null
+        ? null
+        : fromInclusive ? IndexKey.before(from) : IndexKey.after(from);
+    IndexKey upper = to == null
+        ? null
+        : toInclusive ? IndexKey.after(to) : IndexKey.before(to);
+    if (lower != null && upper != null) {
+      return lower.compareTo(upper) < 0 ? index.subMap(lower, upper) : Collections.emptySortedMap();
+    } else if (lower != null) {
+      return index.tailMap(lower);
+    } else if (upper != null) {
+      return index.headMap(upper);
+    }
+    return index;
+  }
+
+  DomainSnapshot with(Id key, CacheEntry replaced, CacheEntry entry) {
+    List<PersistentSortedMap<IndexKey, CacheEntry>> updated = new ArrayList<>(indexes);
+    int[] updatedIrregular = irregular.clone();
+    for (int i = 0; i < updated.size(); i++) {
+      PersistentSortedMap<IndexKey, CacheEntry> index = updated.get(i);
+      if (replaced != null) {
+        for (Comparable<?> value : replaced.indexValuesOf(i)) {
+          index = index.without(IndexKey.of(value, key));
+        }
+        updatedIrregular[i] -= isIrregular(replaced, i);
+      }
+      for (Comparable<?> value : entry.indexValuesOf(i)) {
+        index = index.with(IndexKey.of(value, key), entry);
+      }
+      updatedIrregular[i] += isIrregular(entry, i);
+      updated.set(i, index);
+    }
+    return new DomainSnapshot(entries.with(key, entry), definitions, updated, updatedIrregular,
+        GENERATIONS.incrementAndGet());
+  }
+
+  DomainSnapshot without(Id key, CacheEntry removed) {
+    List<PersistentSortedMap<IndexKey, CacheEntry>> updated = new ArrayList<>(indexes);
+    int[] updatedIrregular = irregular.clone();
+    for (int i = 0; i < updated.size(); i++) {
+      PersistentSortedMap<IndexKey, CacheEntry> index = updated.get(i);
+      for (Comparable<?> value : removed.indexValuesOf(i)) {
+        index = index.without(IndexKey.of(value, key));
+      }
+      updatedIrregular[i] -= isIrregular(removed, i);
+      updated.set(i, index);
+    }
+    return new DomainSnapshot(entries.without(key), definitions, updated, updatedIrregular,
+        GENERATIONS.incrementAndGet());
+  }
+
+  private static int isIrregular(CacheEntry entry, int index) {
+    return entry.indexValuesOf(index).size() == 1 ? 0 : 1;
+  }
+
+  private int positionOf(String field, boolean ordering) {
+    for (int i = 0; i < definitions.size(); i++) {
+      SecondaryIndex definition = definitions.get(i);
+      if (definition.isOrdering() == ordering && definition.getField().equals(field)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
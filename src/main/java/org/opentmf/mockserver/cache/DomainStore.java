@@ -0,0 +1,130 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.opentmf.mockserver.model.Id;
+
+/**
+ * The entries of a single domain, with their secondary indexes, as a mutable reference to an
+ * immutable {@link DomainSnapshot}. Writers publish new versions of the snapshot atomically with
+ * compare-and-set. Readers take an O(1) {@link #snapshot()} that never changes, in which the
+ * indexes always agree with the entries, and never block or get blocked by writers.
+ *
+ * @author Gokhan Demir
+ */
+public final class DomainStore {
+
+  private final List<SecondaryIndex> indexes;
+  private final AtomicReference<DomainSnapshot> current;
+
+  public DomainStore(List<SecondaryIndex> indexes) {
+    this.indexes = indexes;
+    this.current = new AtomicReference<>(DomainSnapshot.empty(indexes));
+  }
+
+  /**
+   * Returns the current version of the domain.
+   *
+   * @return An immutable snapshot of the domain.
+   */
+  public DomainSnapshot snapshot() {
+    return current.get();
+  }
+
+  /**
+   * Extracts the values of the indexed fields of a payload into the entry holding it. This must be
+   * called once for each new entry, before it is added.
+   *
+   * @param entry The new entry.
+   * @param payload The payload of the entry.
+   * @return The entry.
+   */
+  public CacheEntry index(CacheEntry entry, JsonNode payload) {
+    if (!indexes.isEmpty()) {
+      List<List<Comparable<?>>> values = new ArrayList<>(indexes.size());
+      for (SecondaryIndex index : indexes) {
+        values.add(index.valuesOf(payload));
+      }
+      entry.indexValues = values;
+    }
+    return entry;
+  }
+
+  public CacheEntry get(Id key) {
+    return current.get().getEntries().get(key);
+  }
+
+  /**
+   * Maps the key to the entry, unless the key is already present.
+   *
+   * @param key The key.
+   * @param entry The entry.
+   * @return The entry already present, or null if the entry was added.
+   */
+  public CacheEntry putIfAbsent(Id key, CacheEntry entry) {
+    while (true) {
+      DomainSnapshot snapshot = current.get();
+      CacheEntry existing = snapshot.getEntries().get(key);
+      if (existing != null) {
+        return existing;
+      }
+      if (current.compareAndSet(snapshot, snapshot.with(key, null, entry))) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Maps the key to the entry, whether or not the key is already present.
+   *
+   * @param key The key.
+   * @param entry The entry.
+   * @return The entry replaced, or null if the key was absent.
+   */
+  public CacheEntry put(Id key, CacheEntry entry) {
+    while (true) {
+      DomainSnapshot snapshot = current.get();
+      CacheEntry existing = snapshot.getEntries().get(key);
+      if (current.compareAndSet(snapshot, snapshot.with(key, existing, entry))) {
+        return existing;
+      }
+    }
+  }
+
+  /**
+   * Maps the key to the entry, only if the key is already present.
+   *
+   * @param key The key.
+   * @param entry The entry.
+   * @return The entry replaced, or null if the key was absent and nothing changed.
+   */
+  public CacheEntry replace(Id key, CacheEntry entry) {
+    while (true) {
+      DomainSnapshot snapshot = current.get();
+      CacheEntry existing = snapshot.getEntries().get(key);
+      if (existing == null
+          || current.compareAndSet(snapshot, snapshot.with(key, existing, entry))) {
+        return existing;
+      }
+    }
+  }
+
+  /**
+   * Removes the key, if present.
+   *
+   * @param key The key.
+   * @return The entry removed, or null if the key was absent.
+   */
+  public CacheEntry remove(Id key) {
+    while (true) {
+      DomainSnapshot snapshot = current.get();
+      CacheEntry existing = snapshot.getEntries().get(key);
+      if (existing == null
+          || current.compareAndSet(snapshot, snapshot.without(key, existing))) {
+        return existing;
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.opentmf.mockserver.cache;
+
+/**
+ * A count-min sketch with 4-bit counters that estimates how often a key has been seen recently.
+ * Every four counters of a key live in the same <code>long</code>, picked by four independent
+ * hashes. All counters are halved once the number of recorded events reaches ten times the width
+ * of the sketch, so that the estimates favour recent popularity.
+ *
+ * <p>This class is not thread-safe; callers must hold the lock of the owning policy.
+ *
+ * @author Gokhan Demir
+ */
+public class FrequencySketch {
+
+  private static final long[] SEEDS = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_WIDTH = 1 << 22;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * Creates a sketch sized for the given number of distinct keys.
+   *
+   * @param expectedKeys The expected number of distinct keys.
+   */
+  public FrequencySketch(long expectedKeys) {
+    long width = Math.max(16, Long.highestOneBit(Math.max(2, expectedKeys) - 1) << 1);
+    this.table = new long[(int) Math.min(MAX_WIDTH, width)];
+    this.tableMask = table.length - 1;
+    this.sampleSize = 10 * table.length;
+  }
+
+  /**
+   * Returns the estimated number of occurrences of the key, at most 15.
+   *
+   * @param key The key.
+   * @return The estimated frequency.
+   */
+  public int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      int offset = offsetOf(hash, i);
+      frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+    }
+    return frequency;
+  }
+
+  /**
+   * Records an occurrence of the key, ageing all counters when the sample is full.
+   *
+   * @param key The key.
+   */
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int index = indexOf(hash, i);
+      int offset = offsetOf(hash, i);
+      if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+        table[index] += 1L << offset;
+        added = true;
+      }
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size /= 2;
+  }
+
+  private int indexOf(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  // Each row uses its own group of four counters within the long, selected by the hash
+  private static int offsetOf(int hash, int row) {
+    return ((row << 2) + ((hash >>> (row << 3)) & 3)) << 2;
+  }
+
+  private static int spread(int hash) {
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    return (hash >>> 16) ^ hash;
+  }
+}
@@ -0,0 +1,24 @@
+package org.opentmf.mockserver.cache;
+
+/**
+ * When the cache journal forces its appended mutations to disk.
+ *
+ * @author Gokhan Demir
+ */
+public enum FsyncPolicy {
+
+  /**
+   * Every batch of mutations is forced to disk before the mutations return. Concurrent mutations
+   * share a single fsync.
+   */
+  ALWAYS,
+
+  /**
+   * Mutations return once they are queued, and the journal is forced to disk at most once per
+   * interval. A crash may lose the mutations of the last interval.
+   */
+  INTERVAL,
+
+  /** The journal is never forced explicitly, and the operating system decides when to write. */
+  NEVER
+}
@@ -0,0 +1,100 @@
+package org.opentmf.mockserver.cache;
+
+import static org.opentmf.mockserver.model.TmfConstants.REVISION;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.opentmf.mockserver.util.CompressionUtil;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+/**
+ * A cache entry that keeps its payload as a Jackson tree on the heap. The tree is shared with the
+ * callbacks, so reading it costs nothing.
+ *
+ * <p>The serialized form is built on first use and kept alongside the tree, tagged with the
+ * revision of the payload at that time. Every change to a cached payload bumps its revision, so
+ * a serialized form is reused for as long as the revision is unchanged. So are the compressed
+ * forms of the serialized payload, built on first use for each content coding.
+ *
+ * @author Gokhan Demir
+ */
+public class HeapEntry extends CacheEntry {
+
+  private final JsonNode payload;
+  private final long weight;
+  private volatile Serialized serialized;
+
+  // The serialized payload together with the revision it was taken at, and its compressed forms
+  private static final class Serialized {
+    private final String revision;
+    private final byte[] bytes;
+    // Indexed by the ordinal of the coding; racing threads compress to equal arrays
+    private final byte[][] encoded = new byte[Encoding.values().length][];
+
+    private Serialized(String revision, byte[] bytes) {
+      this.revision = revision;
+      this.bytes = bytes;
+    }
+  }
+
+  public HeapEntry(JsonNode payload) {
+    super(payload);
+    this.payload = payload;
+    this.weight = PayloadWeigher.weigh(payload);
+  }
+
+  @Override
+  public JsonNode getPayload() {
+    return payload;
+  }
+
+  /**
+   * Returns the payload serialized as UTF-8 encoded JSON. The returned array is shared between
+   * callers, and must not be modified.
+   *
+   * @return The serialized payload.
+   */
+  @Override
+  public byte[] getPayloadBytes() {
+    return getSerialized().bytes;
+  }
+
+  /**
+   * Returns the serialized payload compressed with a content coding, which is kept alongside the
+   * serialized form, so that a payload read many times is compressed once per revision. The
+   * returned array is shared between callers, and must not be modified.
+   *
+   * @param encoding The content coding.
+   * @return The compressed payload.
+   */
+  @Override
+  public byte[] getEncodedPayloadBytes(Encoding encoding) {
+    Serialized current = getSerialized();
+    byte[] encoded = current.encoded[encoding.ordinal()];
+    if (encoded == null) {
+      encoded = CompressionUtil.compress(current.bytes, encoding);
+      current.encoded[encoding.ordinal()] = encoded;
+    }
+    return encoded;
+  }
+
+  private Serialized getSerialized() {
+    String revision = payload.path(REVISION).asText();
+    Serialized current = serialized;
+    if (current == null || !current.revision.equals(revision)) {
+      current = new Serialized(revision, JacksonUtil.writeAsBytes(payload));
+      serialized = current;
+    }
+    return current;
+  }
+
+  @Override
+  public boolean isPayloadShared() {
+    return true;
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+}
@@ -0,0 +1,97 @@
+package org.opentmf.mockserver.cache;
+
+import static org.opentmf.mockserver.model.TmfConstants.CREATED_DATE;
+import static org.opentmf.mockserver.model.TmfConstants.UPDATED_DATE;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The secondary indexes to maintain, per domain path. The configuration is a semicolon separated
+ * list of <code>path:field,field</code> items, such as <code>
+ * *:state,externalId;productOrder:relatedParty.id</code>. The path <code>*</code> applies to all
+ * domains; any other path applies to the domains that are equal to it or end with it.
+ *
+ * <p>Whatever the configuration, every domain also has ordering indexes on {@link
+ * #ORDERING_FIELDS}, so that pages in the default order are read off an index instead of sorting
+ * the domain.
+ *
+ * @author Gokhan Demir
+ */
+public final class IndexConfig {
+
+  /** The indexes of all domains when nothing is configured. */
+  public static final String DEFAULT = "*:state,status,lifecycleStatus,relatedParty.id,externalId";
+
+  /** The fields every domain has an ordering index on, to order list queries by. */
+  public static final List<String> ORDERING_FIELDS = List.of(CREATED_DATE, UPDATED_DATE);
+
+  private static final String ALL_DOMAINS = "*";
+
+  private final Map<String, Set<String>> fieldsByPath;
+
+  private IndexConfig(Map<String, Set<String>> fieldsByPath) {
+    this.fieldsByPath = fieldsByPath;
+  }
+
+  /**
+   * Parses an index configuration.
+   *
+   * @param spec The configuration, or null for {@link #DEFAULT}.
+   * @return The parsed configuration.
+   * @throws IllegalArgumentException If an item has no path.
+   */
+  public static IndexConfig parse(String spec) {
+    Map<String, Set<String>> fieldsByPath = new LinkedHashMap<>();
+    for (String item : (spec == null ? DEFAULT : spec).split(";")) {
+      if (item.trim().isEmpty()) {
+        continue;
+      }
+      int colon = item.indexOf(':');
+      if (colon <= 0) {
+        throw new IllegalArgumentException("Index configuration item without a path: " + item);
+      }
+      Set<String> fields = fieldsByPath.computeIfAbsent(
+          trimSlashes(item.substring(0, colon).trim()), path -> new LinkedHashSet<>());
+      for (String field : item.substring(colon + 1).split(",")) {
+        if (!field.trim().isEmpty()) {
+          fields.add(field.trim());
+        }
+      }
+    }
+    return new IndexConfig(fieldsByPath);
+  }
+
+  /**
+   * Returns the indexes to maintain for a domain.
+   *
+   * @param domain The domain, as extracted from the request path.
+   * @return The index definitions, possibly empty.
+   */
+  public List<SecondaryIndex> forDomain(String domain) {
+    Set<String> fields = new LinkedHashSet<>();
+    fieldsByPath.forEach((path, pathFields) -> {
+      if (path.equals(ALL_DOMAINS) || domain.equals(path) || domain.endsWith("/" + path)) {
+        fields.addAll(pathFields);
+      }
+    });
+    List<SecondaryIndex> indexes = new ArrayList<>(ORDERING_FIELDS.size() + fields.size());
+    ORDERING_FIELDS.forEach(field -> indexes.add(SecondaryIndex.ordering(field)));
+    fields.forEach(field -> indexes.add(new SecondaryIndex(field)));
+    return indexes;
+  }
+
+  private static String trimSlashes(String path) {
+    String result = path.startsWith("/") ? path.substring(1) : path;
+    return result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+  }
+
+  @Override
+  public String toString() {
+    return fieldsByPath.toString();
+  }
+}
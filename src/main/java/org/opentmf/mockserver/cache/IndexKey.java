@@ -0,0 +1,130 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.math.BigDecimal;
+import org.opentmf.mockserver.model.Id;
+
+/**
+ * A key of a {@link SecondaryIndex}: an indexed value, followed by the id of the entry carrying
+ * it, so that entries with equal values are kept apart and ordered by id.
+ *
+ * <p>Values are booleans, numbers or strings; booleans sort before numbers, and numbers before
+ * strings. Numbers compare by value, so that <code>5</code> and <code>5.0</code> are equal. The
+ * keys of an ordering index hold {@link SortKey}s instead, which compare as such.
+ *
+ * @author Gokhan Demir
+ */
+public final class IndexKey implements Comparable<IndexKey> {
+
+  private final Comparable<?> value;
+  private final Id id;
+  // -1 before all ids of the value, 1 after all of them, 0 for a key with an id
+  private final int edge;
+
+  private IndexKey(Comparable<?> value, Id id, int edge) {
+    this.value = value;
+    this.id = id;
+    this.edge = edge;
+  }
+
+  static IndexKey of(Comparable<?> value, Id id) {
+    return new IndexKey(value, id, 0);
+  }
+
+  /** Returns a key that sorts before every entry with the given value. */
+  static IndexKey before(Comparable<?> value) {
+    return new IndexKey(value, null, -1);
+  }
+
+  /** Returns a key that sorts after every entry with the given value. */
+  static IndexKey after(Comparable<?> value) {
+    return new IndexKey(value, null, 1);
+  }
+
+  /**
+   * Returns the indexable form of a JSON value.
+   *
+   * @param node The JSON value.
+   * @return A Boolean, a BigDecimal or a String, or null if the value is not a scalar.
+   */
+  public static Comparable<?> valueOf(JsonNode node) {
+    if (node == null) {
+      return null;
+    }
+    if (node.isBoolean()) {
+      return node.booleanValue();
+    }
+    if (node.isNumber()) {
+      return node.decimalValue().stripTrailingZeros();
+    }
+    if (node.isTextual()) {
+      return node.textValue();
+    }
+    return null;
+  }
+
+  public Comparable<?> getValue() {
+    return value;
+  }
+
+  public Id getId() {
+    return id;
+  }
+
+  @Override
+  public int compareTo(IndexKey other) {
+    int cmp = compareValues(value, other.value);
+    if (cmp != 0) {
+      return cmp;
+    }
+    if (edge != 0 || other.edge != 0) {
+      return Integer.compare(edge, other.edge);
+    }
+    return id.compareTo(other.id);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof IndexKey && compareTo((IndexKey) obj) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return value.hashCode() * 31 + (id == null ? edge : id.hashCode());
+  }
+
+  /**
+   * Compares two indexable values, booleans first, then numbers, then strings.
+   *
+   * @param a The first value.
+   * @param b The second value.
+   * @return A negative number, zero, or a positive number as the first value is less than, equal
+   *     to, or greater than the second one.
+   */
+  public static int compareValues(Comparable<?> a, Comparable<?> b) {
+    int cmp = Integer.compare(rankOf(a), rankOf(b));
+    if (cmp != 0) {
+      return cmp;
+    }
+    if (a instanceof Boolean) {
+      return ((Boolean) a).compareTo((Boolean) b);
+    }
+    if (a instanceof BigDecimal) {
+      return ((BigDecimal) a).compareTo((BigDecimal) b);
+    }
+    if (a instanceof SortKey) {
+      return ((SortKey) a).compareTo((SortKey) b);
+    }
+    return ((String) a).compareTo((String) b);
+  }
+
+  private static int rankOf(Comparable<?> value) {
+    if (value instanceof Boolean) {
+      return 0;
+    }
+    if (value instanceof SortKey) {
+      return 3;
+    }
+    return value instanceof BigDecimal ? 1 : 2;
+  }
+}
@@ -0,0 +1,101 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+/**
+ * A read-only view of a sorted map, converting its values on access.
+ *
+ * @param <K> The type of the keys.
+ * @param <S> The type of the values of the underlying map.
+ * @param <V> The type of the values of the view.
+ * @author Gokhan Demir
+ */
+public class MappedSortedMap<K, S, V> extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+  private final SortedMap<K, S> source;
+  private final Function<S, V> mapper;
+
+  public MappedSortedMap(SortedMap<K, S> source, Function<S, V> mapper) {
+    this.source = source;
+    this.mapper = mapper;
+  }
+
+  @Override
+  public int size() {
+    return source.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return source.containsKey(key);
+  }
+
+  @Override
+  public V get(Object key) {
+    S value = source.get(key);
+    return value == null ? null : mapper.apply(value);
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        Iterator<Entry<K, S>> it = source.entrySet().iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Entry<K, V> next() {
+            Entry<K, S> entry = it.next();
+            return new SimpleImmutableEntry<>(entry.getKey(), mapper.apply(entry.getValue()));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return source.size();
+      }
+    };
+  }
+
+  @Override
+  public Comparator<? super K> comparator() {
+    return source.comparator();
+  }
+
+  @Override
+  public SortedMap<K, V> subMap(K fromKey, K toKey) {
+    return new MappedSortedMap<>(source.subMap(fromKey, toKey), mapper);
+  }
+
+  @Override
+  public SortedMap<K, V> headMap(K toKey) {
+    return new MappedSortedMap<>(source.headMap(toKey), mapper);
+  }
+
+  @Override
+  public SortedMap<K, V> tailMap(K fromKey) {
+    return new MappedSortedMap<>(source.tailMap(fromKey), mapper);
+  }
+
+  @Override
+  public K firstKey() {
+    return source.firstKey();
+  }
+
+  @Override
+  public K lastKey() {
+    return source.lastKey();
+  }
+}
@@ -0,0 +1,189 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.opentmf.mockserver.util.JacksonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores serialized payloads outside of the Java heap, in direct memory slabs.
+ *
+ * <p>Payloads are appended to the current slab with a bump pointer; a payload larger than a slab
+ * gets a dedicated slab. Freed space is never reused in place. Instead, once the live bytes of a
+ * full slab drop below half of its capacity, its remaining payloads are copied into the current
+ * slab and the slab is dropped, so that the direct memory is returned once the garbage collector
+ * reclaims the buffer. Payloads are only moved under the store lock, and readers always see a
+ * consistent location, so reads never lock.
+ *
+ * @author Gokhan Demir
+ */
+public class OffHeapStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapStore.class);
+
+  /** The default capacity of a slab, in bytes. */
+  public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+  private final int slabSize;
+  private final List<Slab> slabs = new ArrayList<>();
+  private Slab current;
+
+  public OffHeapStore(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  private static final class Slab {
+    private final ByteBuffer buffer;
+    private final Set<OffHeapEntry> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long liveBytes;
+
+    private Slab(int capacity) {
+      this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+  }
+
+  // Immutable, so that a reader never sees the slab of one location with the offset of another
+  private static final class Location {
+    private final Slab slab;
+    private final int offset;
+
+    private Location(Slab slab, int offset) {
+      this.slab = slab;
+      this.offset = offset;
+    }
+  }
+
+  /** A cache entry whose payload lives in a slab of this store. */
+  private final class OffHeapEntry extends CacheEntry {
+    private final int length;
+    private volatile Location location;
+    private boolean released;
+
+    private OffHeapEntry(JsonNode payload, int length) {
+      super(payload);
+      this.length = length;
+    }
+
+    @Override
+    public JsonNode getPayload() {
+      return JacksonUtil.readAsTree(slice());
+    }
+
+    @Override
+    public byte[] getPayloadBytes() {
+      byte[] bytes = new byte[length];
+      slice().get(bytes);
+      return bytes;
+    }
+
+    @Override
+    public long getWeight() {
+      return length;
+    }
+
+    @Override
+    public void release() {
+      free(this);
+    }
+
+    private ByteBuffer slice() {
+      Location loc = location;
+      ByteBuffer view = loc.slab.buffer.duplicate();
+      view.position(loc.offset);
+      view.limit(loc.offset + length);
+      return view.slice();
+    }
+  }
+
+  /**
+   * Serializes the payload into off-heap memory.
+   *
+   * @param payload The payload to store.
+   * @return The cache entry giving access to the stored payload.
+   */
+  public CacheEntry store(JsonNode payload) {
+    byte[] bytes = JacksonUtil.writeAsBytes(payload);
+    OffHeapEntry entry = new OffHeapEntry(payload, bytes.length);
+    synchronized (this) {
+      entry.location = append(entry, ByteBuffer.wrap(bytes));
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the number of bytes of direct memory held by the slabs.
+   *
+   * @return The allocated bytes.
+   */
+  public synchronized long getAllocatedBytes() {
+    return slabs.stream().mapToLong(slab -> slab.buffer.capacity()).sum();
+  }
+
+  /**
+   * Returns the number of bytes of direct memory used by live payloads.
+   *
+   * @return The live bytes.
+   */
+  public synchronized long getLiveBytes() {
+    return slabs.stream().mapToLong(slab -> slab.liveBytes).sum();
+  }
+
+  private Location append(OffHeapEntry entry, ByteBuffer bytes) {
+    int length = bytes.remaining();
+    Slab slab;
+    if (length > slabSize) {
+      slab = new Slab(length);
+      slabs.add(slab);
+    } else {
+      if (current == null || current.buffer.remaining() < length) {
+        Slab full = current;
+        current = new Slab(slabSize);
+        slabs.add(current);
+        if (full != null) {
+          compactIfSparse(full);
+        }
+      }
+      slab = current;
+    }
+    int offset = slab.buffer.position();
+    slab.buffer.put(bytes);
+    slab.entries.add(entry);
+    slab.liveBytes += length;
+    return new Location(slab, offset);
+  }
+
+  private synchronized void free(OffHeapEntry entry) {
+    if (entry.released) {
+      return;
+    }
+    entry.released = true;
+    Slab slab = entry.location.slab;
+    slab.entries.remove(entry);
+    slab.liveBytes -= entry.length;
+    if (slab != current) {
+      compactIfSparse(slab);
+    }
+  }
+
+  // Moves the live payloads out of a slab that is mostly garbage, and drops the slab
+  private void compactIfSparse(Slab slab) {
+    if (slab.liveBytes * 2 >= slab.buffer.capacity()) {
+      return;
+    }
+    slabs.remove(slab);
+    if (slab.entries.isEmpty()) {
+      return;
+    }
+    LOG.debug("Compacting an off-heap slab with {} live bytes", slab.liveBytes);
+    for (OffHeapEntry entry : new ArrayList<>(slab.entries)) {
+      entry.location = append(entry, entry.slice());
+    }
+    slab.entries.clear();
+  }
+}
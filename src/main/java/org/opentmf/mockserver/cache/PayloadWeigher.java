@@ -0,0 +1,63 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Estimates the heap footprint of a cached JSON tree, in bytes. The estimate walks the tree once
+ * and charges a fixed overhead per node plus the length of its texts, which is close enough to
+ * enforce a memory budget without the cost of measuring the real object graph.
+ *
+ * @author Gokhan Demir
+ */
+public class PayloadWeigher {
+
+  private static final int OBJECT_NODE = 56;
+  private static final int ARRAY_NODE = 40;
+  private static final int FIELD_ENTRY = 48;
+  private static final int ARRAY_SLOT = 8;
+  private static final int TEXT_NODE = 56;
+  private static final int VALUE_NODE = 24;
+
+  private PayloadWeigher() {}
+
+  /**
+   * Returns the estimated heap size of the given tree.
+   *
+   * @param node The root of the tree.
+   * @return The estimated size in bytes.
+   */
+  public static long weigh(JsonNode node) {
+    if (node == null) {
+      return 0L;
+    }
+    switch (node.getNodeType()) {
+      case OBJECT:
+      case POJO:
+        long objectWeight = OBJECT_NODE;
+        for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+          Map.Entry<String, JsonNode> field = it.next();
+          objectWeight += FIELD_ENTRY + TEXT_NODE + field.getKey().length() + weigh(field.getValue());
+        }
+        return objectWeight;
+      case ARRAY:
+        long arrayWeight = ARRAY_NODE;
+        for (JsonNode element : node) {
+          arrayWeight += ARRAY_SLOT + weigh(element);
+        }
+        return arrayWeight;
+      case STRING:
+        return TEXT_NODE + node.textValue().length();
+      case BINARY:
+        return TEXT_NODE + node.asText().length();
+      case BOOLEAN:
+      case NULL:
+      case MISSING:
+        // shared singletons
+        return 0L;
+      default:
+        return VALUE_NODE;
+    }
+  }
+}
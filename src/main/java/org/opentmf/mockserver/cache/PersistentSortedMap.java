@@ -0,0 +1,408 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * An immutable sorted map, backed by a persistent AVL tree.
+ *
+ * <p>{@link #with(Comparable, Object)} and {@link #without(Comparable)} return a new map and leave
+ * this one untouched; the new map shares all nodes but the O(log n) nodes on the path to the
+ * changed key. A reference to a map is therefore a consistent snapshot that can be read, iterated
+ * and sized without copying or locking, however the map is changed afterwards.
+ *
+ * <p>Every node knows the size of its subtree, so {@link #size()} is O(log n) on range views as
+ * well, and O(1) on the whole map. Range views share the tree of the map they are taken from.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ * @author Gokhan Demir
+ */
+public final class PersistentSortedMap<K extends Comparable<? super K>, V>
+    extends AbstractMap<K, V> implements SortedMap<K, V> {
+
+  private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null, null, null);
+
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final Node<K, V> left;
+    private final Node<K, V> right;
+    private final int height;
+    private final int size;
+
+    private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(heightOf(left), heightOf(right)) + 1;
+      this.size = sizeOf(left) + sizeOf(right) + 1;
+    }
+  }
+
+  private final Node<K, V> root;
+  // The bounds of a range view: from inclusive, to exclusive, null if unbounded
+  private final K from;
+  private final K to;
+
+  private PersistentSortedMap(Node<K, V> root, K from, K to) {
+    this.root = root;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Returns the empty map.
+   *
+   * @param <K> The type of the keys.
+   * @param <V> The type of the values.
+   * @return The empty map.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+    return (PersistentSortedMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns a map with the given mapping added, or replaced if the key is already present.
+   *
+   * @param key The key.
+   * @param value The value.
+   * @return The new map, with the same bounds as this one.
+   */
+  public PersistentSortedMap<K, V> with(K key, V value) {
+    return new PersistentSortedMap<>(insert(root, key, value), from, to);
+  }
+
+  /**
+   * Returns a map without the given key.
+   *
+   * @param key The key.
+   * @return The new map, with the same bounds as this one, or this map if the key is absent.
+   */
+  public PersistentSortedMap<K, V> without(K key) {
+    if (find(root, key) == null) {
+      return this;
+    }
+    return new PersistentSortedMap<>(delete(root, key), from, to);
+  }
+
+  /**
+   * Returns the mapping with the greatest key of this map.
+   *
+   * @return The last entry, or null if the map is empty.
+   */
+  public Entry<K, V> lastEntry() {
+    Node<K, V> last = null;
+    Node<K, V> node = root;
+    while (node != null) {
+      if (to != null && node.key.compareTo(to) >= 0) {
+        node = node.left;
+      } else {
+        last = node;
+        node = node.right;
+      }
+    }
+    return last == null || !inRange(last.key) ? null : entryOf(last);
+  }
+
+  /**
+   * Returns the mapping with the least key of this map.
+   *
+   * @return The first entry, or null if the map is empty.
+   */
+  public Entry<K, V> firstEntry() {
+    Node<K, V> first = null;
+    Node<K, V> node = root;
+    while (node != null) {
+      if (from != null && node.key.compareTo(from) < 0) {
+        node = node.right;
+      } else {
+        first = node;
+        node = node.left;
+      }
+    }
+    return first == null || !inRange(first.key) ? null : entryOf(first);
+  }
+
+  /**
+   * Returns an iterator over the mappings of this map, from the greatest key to the least.
+   *
+   * @return The descending iterator.
+   */
+  public Iterator<Entry<K, V>> descendingIterator() {
+    return new DescendingEntryIterator();
+  }
+
+  @Override
+  public int size() {
+    if (from == null && to == null) {
+      return sizeOf(root);
+    }
+    return Math.max(0, (to == null ? sizeOf(root) : rankOf(to)) - (from == null ? 0 : rankOf(from)));
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    K k = (K) key;
+    if (!inRange(k)) {
+      return null;
+    }
+    Node<K, V> node = find(root, k);
+    return node == null ? null : node.value;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return PersistentSortedMap.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Comparator<? super K> comparator() {
+    return null;
+  }
+
+  @Override
+  public PersistentSortedMap<K, V> subMap(K fromKey, K toKey) {
+    return new PersistentSortedMap<>(root, max(from, fromKey), min(to, toKey));
+  }
+
+  @Override
+  public PersistentSortedMap<K, V> headMap(K toKey) {
+    return new PersistentSortedMap<>(root, from, min(to, toKey));
+  }
+
+  @Override
+  public PersistentSortedMap<K, V> tailMap(K fromKey) {
+    return new PersistentSortedMap<>(root, max(from, fromKey), to);
+  }
+
+  @Override
+  public K firstKey() {
+    Entry<K, V> first = firstEntry();
+    if (first == null) {
+      throw new NoSuchElementException();
+    }
+    return first.getKey();
+  }
+
+  @Override
+  public K lastKey() {
+    Entry<K, V> last = lastEntry();
+    if (last == null) {
+      throw new NoSuchElementException();
+    }
+    return last.getKey();
+  }
+
+  // Iterates the nodes within the bounds in order, keeping the path of pending ancestors
+  private final class EntryIterator implements Iterator<Entry<K, V>> {
+    private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+    private EntryIterator() {
+      Node<K, V> node = root;
+      while (node != null) {
+        if (from != null && node.key.compareTo(from) < 0) {
+          node = node.right;
+        } else {
+          stack.push(node);
+          node = node.left;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty() && (to == null || stack.peek().key.compareTo(to) < 0);
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Node<K, V> node = stack.pop();
+      for (Node<K, V> child = node.right; child != null; child = child.left) {
+        stack.push(child);
+      }
+      return entryOf(node);
+    }
+  }
+
+  // The mirror image of EntryIterator, walking from the upper bound down
+  private final class DescendingEntryIterator implements Iterator<Entry<K, V>> {
+    private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+    private DescendingEntryIterator() {
+      Node<K, V> node = root;
+      while (node != null) {
+        if (to != null && node.key.compareTo(to) >= 0) {
+          node = node.left;
+        } else {
+          stack.push(node);
+          node = node.right;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty() && (from == null || stack.peek().key.compareTo(from) >= 0);
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Node<K, V> node = stack.pop();
+      for (Node<K, V> child = node.left; child != null; child = child.right) {
+        stack.push(child);
+      }
+      return entryOf(node);
+    }
+  }
+
+  private boolean inRange(K key) {
+    return (from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) < 0);
+  }
+
+  // The number of keys of the whole tree that are less than the given key
+  private int rankOf(K key) {
+    int rank = 0;
+    Node<K, V> node = root;
+    while (node != null) {
+      if (key.compareTo(node.key) <= 0) {
+        node = node.left;
+      } else {
+        rank += sizeOf(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  private K max(K a, K b) {
+    return a == null || b.compareTo(a) > 0 ? b : a;
+  }
+
+  private K min(K a, K b) {
+    return a == null || b.compareTo(a) < 0 ? b : a;
+  }
+
+  private static <K, V> Entry<K, V> entryOf(Node<K, V> node) {
+    return new SimpleImmutableEntry<>(node.key, node.value);
+  }
+
+  private static <K extends Comparable<? super K>, V> Node<K, V> find(Node<K, V> node, K key) {
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp == 0) {
+        return node;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return null;
+  }
+
+  private static <K extends Comparable<? super K>, V> Node<K, V> insert(
+      Node<K, V> node, K key, V value) {
+    if (node == null) {
+      return new Node<>(key, value, null, null);
+    }
+    int cmp = key.compareTo(node.key);
+    if (cmp == 0) {
+      // The key already mapped is kept, as keys must never be instances the caller may change
+      return new Node<>(node.key, value, node.left, node.right);
+    }
+    return cmp < 0
+        ? balance(node.key, node.value, insert(node.left, key, value), node.right)
+        : balance(node.key, node.value, node.left, insert(node.right, key, value));
+  }
+
+  private static <K extends Comparable<? super K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+    int cmp = key.compareTo(node.key);
+    if (cmp < 0) {
+      return balance(node.key, node.value, delete(node.left, key), node.right);
+    }
+    if (cmp > 0) {
+      return balance(node.key, node.value, node.left, delete(node.right, key));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node<K, V> successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.key, successor.value, node.left, deleteMin(node.right));
+  }
+
+  private static <K, V> Node<K, V> deleteMin(Node<K, V> node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    return balance(node.key, node.value, deleteMin(node.left), node.right);
+  }
+
+  // Builds a node whose subtrees differ in height by at most two, restoring the AVL invariant
+  private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+    int diff = heightOf(left) - heightOf(right);
+    if (diff > 1) {
+      if (heightOf(left.left) < heightOf(left.right)) {
+        left = rotateLeft(left.key, left.value, left.left, left.right);
+      }
+      return rotateRight(key, value, left, right);
+    }
+    if (diff < -1) {
+      if (heightOf(right.right) < heightOf(right.left)) {
+        right = rotateRight(right.key, right.value, right.left, right.right);
+      }
+      return rotateLeft(key, value, left, right);
+    }
+    return new Node<>(key, value, left, right);
+  }
+
+  private static <K, V> Node<K, V> rotateRight(K key, V value, Node<K, V> left, Node<K, V> right) {
+    return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+  }
+
+  private static <K, V> Node<K, V> rotateLeft(K key, V value, Node<K, V> left, Node<K, V> right) {
+    return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+  }
+
+  private static int heightOf(Node<?, ?> node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static int sizeOf(Node<?, ?> node) {
+    return node == null ? 0 : node.size;
+  }
+}
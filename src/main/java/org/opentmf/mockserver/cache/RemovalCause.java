@@ -0,0 +1,21 @@
+package org.opentmf.mockserver.cache;
+
+/**
+ * The reasons for which an entry may leave the payload cache.
+ *
+ * @author Gokhan Demir
+ */
+public enum RemovalCause {
+
+  /** The entry was deleted through the API. */
+  EXPLICIT,
+
+  /** The entry was not touched within the time-to-live. */
+  EXPIRED,
+
+  /** The entry was evicted because a maximum number of entries was exceeded. */
+  SIZE,
+
+  /** The entry was evicted because a maximum estimated memory size was exceeded. */
+  WEIGHT
+}
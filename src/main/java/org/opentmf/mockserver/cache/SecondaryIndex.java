@@ -0,0 +1,97 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The definition of a secondary index on a payload field, given as a dotted path such as <code>
+ * state</code> or <code>relatedParty.id</code>. Arrays met along the path are flattened, so an
+ * entry is indexed under every distinct scalar value the path leads to.
+ *
+ * <p>An ordering index, see {@link #ordering(String)}, is rather keyed by the {@link SortKey} of
+ * the field, so that walking it gives the order a sort on the field would give.
+ *
+ * @author Gokhan Demir
+ */
+public final class SecondaryIndex {
+
+  private final String field;
+  private final String[] path;
+  private final boolean ordering;
+
+  public SecondaryIndex(String field) {
+    this(field, false);
+  }
+
+  private SecondaryIndex(String field, boolean ordering) {
+    this.field = field;
+    this.path = field.split("\\.");
+    this.ordering = ordering;
+  }
+
+  /**
+   * Returns the definition of an ordering index on a field.
+   *
+   * @param field The dotted path of the field.
+   * @return The definition.
+   */
+  public static SecondaryIndex ordering(String field) {
+    return new SecondaryIndex(field, true);
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public boolean isOrdering() {
+    return ordering;
+  }
+
+  /**
+   * Returns the distinct indexable values of the field in the given payload; for an ordering
+   * index, the sort key of the field, unless it is missing.
+   *
+   * @param payload The payload.
+   * @return The values, possibly empty.
+   */
+  public List<Comparable<?>> valuesOf(JsonNode payload) {
+    if (ordering) {
+      SortKey key = SortKey.of(payload, path);
+      return key.isMissing() ? Collections.emptyList() : Collections.singletonList(key);
+    }
+    List<JsonNode> nodes = Collections.singletonList(payload);
+    for (String segment : path) {
+      List<JsonNode> next = new ArrayList<>();
+      for (JsonNode node : nodes) {
+        collect(node.get(segment), next);
+      }
+      nodes = next;
+    }
+    List<Comparable<?>> values = new ArrayList<>(nodes.size());
+    for (JsonNode node : nodes) {
+      Comparable<?> value = IndexKey.valueOf(node);
+      if (value != null && values.stream().noneMatch(v -> IndexKey.compareValues(v, value) == 0)) {
+        values.add(value);
+      }
+    }
+    return values;
+  }
+
+  private static void collect(JsonNode node, List<JsonNode> into) {
+    if (node == null || node.isNull()) {
+      return;
+    }
+    if (node.isArray()) {
+      node.forEach(into::add);
+    } else {
+      into.add(node);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return ordering ? field + " (ordering)" : field;
+  }
+}
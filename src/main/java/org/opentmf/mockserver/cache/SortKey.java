@@ -0,0 +1,169 @@
+package org.opentmf.mockserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+
+/**
+ * The value of a sort field, decoded once into a compact, typed key, so that comparing two
+ * payloads neither walks their trees nor parses their values again.
+ *
+ * <p>Keys of different types sort booleans first, then numbers, date-times and other strings, and
+ * missing values last. Integral numbers compare exactly as longs, other numbers as doubles, and
+ * ISO-8601 date-times, such as <code>createdDate</code>, by the instant they denote rather than by
+ * their text.
+ *
+ * @author Gokhan Demir
+ */
+public final class SortKey implements Comparable<SortKey> {
+
+  private static final int BOOLEAN = 0;
+  private static final int NUMBER = 1;
+  private static final int INSTANT = 2;
+  private static final int STRING = 3;
+  private static final int MISSING = 4;
+
+  /** The key of a field that is absent or null. */
+  public static final SortKey MISSING_KEY = new SortKey(MISSING, 0, 0, true, null);
+
+  private static final Pattern DATE_TIME = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}T.*");
+
+  private final int type;
+  // A boolean as 0 or 1, an integral number, or the epoch second of an instant
+  private final long whole;
+  // A non-integral number, or the nano of second of an instant
+  private final double fraction;
+  private final boolean integral;
+  private final String text;
+
+  private SortKey(int type, long whole, double fraction, boolean integral, String text) {
+    this.type = type;
+    this.whole = whole;
+    this.fraction = fraction;
+    this.integral = integral;
+    this.text = text;
+  }
+
+  /**
+   * Decodes the value at a dotted path of a payload, see {@link #resolve}.
+   *
+   * @param payload The payload.
+   * @param path The segments of the path.
+   * @return The key, {@link #MISSING_KEY} if the path leads to nothing, null or a container.
+   */
+  public static SortKey of(JsonNode payload, String[] path) {
+    return of(resolve(payload, path));
+  }
+
+  /**
+   * Returns the value at a dotted path of a payload. Arrays met along the path lead to their first
+   * element.
+   *
+   * @param payload The payload.
+   * @param path The segments of the path.
+   * @return The value, or a missing node.
+   */
+  public static JsonNode resolve(JsonNode payload, String[] path) {
+    JsonNode node = payload;
+    for (String segment : path) {
+      if (node.isArray()) {
+        node = node.path(0);
+      }
+      node = node.path(segment);
+    }
+    return node.isArray() ? node.path(0) : node;
+  }
+
+  /**
+   * Decodes a JSON value.
+   *
+   * @param node The value.
+   * @return The key, {@link #MISSING_KEY} if the value is missing, null or a container.
+   */
+  public static SortKey of(JsonNode node) {
+    if (node.isBoolean()) {
+      return new SortKey(BOOLEAN, node.booleanValue() ? 1 : 0, 0, true, null);
+    }
+    if (node.isNumber()) {
+      if (node.isIntegralNumber() && node.canConvertToLong()) {
+        return new SortKey(NUMBER, node.longValue(), 0, true, null);
+      }
+      return new SortKey(NUMBER, 0, node.doubleValue(), false, null);
+    }
+    if (node.isTextual()) {
+      String value = node.textValue();
+      if (DATE_TIME.matcher(value).matches()) {
+        try {
+          OffsetDateTime dateTime = OffsetDateTime.parse(value);
+          return new SortKey(INSTANT, dateTime.toEpochSecond(), dateTime.getNano(), true, value);
+        } catch (DateTimeParseException e) {
+          // not a date-time after all, sorted as text
+        }
+      }
+      return new SortKey(STRING, 0, 0, true, value);
+    }
+    return MISSING_KEY;
+  }
+
+  public boolean isMissing() {
+    return type == MISSING;
+  }
+
+  @Override
+  public int compareTo(SortKey other) {
+    int cmp = Integer.compare(type, other.type);
+    if (cmp != 0) {
+      return cmp;
+    }
+    switch (type) {
+      case NUMBER:
+        if (integral && other.integral) {
+          return Long.compare(whole, other.whole);
+        }
+        return Double.compare(doubleValue(), other.doubleValue());
+      case STRING:
+        return text.compareTo(other.text);
+      case INSTANT:
+        cmp = Long.compare(whole, other.whole);
+        return cmp != 0 ? cmp : Double.compare(fraction, other.fraction);
+      default:
+        return Long.compare(whole, other.whole);
+    }
+  }
+
+  private double doubleValue() {
+    return integral ? whole : fraction;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof SortKey && compareTo((SortKey) obj) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    switch (type) {
+      case NUMBER:
+        return Double.hashCode(doubleValue());
+      case STRING:
+        return text.hashCode();
+      default:
+        return Long.hashCode(whole) * 31 + Double.hashCode(fraction) + type;
+    }
+  }
+
+  @Override
+  public String toString() {
+    switch (type) {
+      case BOOLEAN:
+        return String.valueOf(whole == 1);
+      case NUMBER:
+        return integral ? String.valueOf(whole) : String.valueOf(fraction);
+      case MISSING:
+        return "missing";
+      default:
+        return text;
+    }
+  }
+}
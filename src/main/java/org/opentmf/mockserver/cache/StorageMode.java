@@ -0,0 +1,18 @@
+package org.opentmf.mockserver.cache;
+
+/**
+ * Where the payload cache keeps its payloads.
+ *
+ * @author Gokhan Demir
+ */
+public enum StorageMode {
+
+  /** Payloads are kept as Jackson trees on the heap. */
+  HEAP,
+
+  /**
+   * Payloads are kept as serialized JSON in direct memory, and only parsed into trees when a
+   * callback needs them.
+   */
+  OFF_HEAP
+}
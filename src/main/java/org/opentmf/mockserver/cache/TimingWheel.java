@@ -0,0 +1,174 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel that expires scheduled items in small incremental ticks. Each tick drains a
+ * single bucket, so the work done per tick is proportional to the number of items that became due
+ * in that tick, instead of a scan over every item that is alive.
+ *
+ * <p>Items are scheduled once and re-checked lazily: when a bucket is drained, every item whose
+ * {@link Timeout#getDeadline() deadline} has been pushed into the future in the meantime (for
+ * example, because a cache entry was touched) is simply moved to the bucket of its new deadline.
+ * Scheduling and touching therefore never contend with the ticking thread.
+ *
+ * <p>The precision of the wheel equals its tick: an item expires at most one tick after its
+ * deadline. An item whose expiry action fails is rescheduled, and retried on the next tick.
+ *
+ * @param <T> The type of the scheduled items.
+ * @author Gokhan Demir
+ */
+public class TimingWheel<T extends TimingWheel.Timeout> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TimingWheel.class);
+  private static final int MAX_BUCKETS = 1 << 16;
+
+  /** An item that can be scheduled on a {@link TimingWheel}. */
+  public interface Timeout {
+
+    /**
+     * Returns the current deadline of the item, in epoch milliseconds. The deadline may change
+     * after the item has been scheduled.
+     *
+     * @return The deadline in epoch milliseconds.
+     */
+    long getDeadline();
+  }
+
+  private final long tickMillis;
+  private final int mask;
+  private final AtomicReferenceArray<Queue<T>> buckets;
+  private final Consumer<T> onExpired;
+  private volatile long currentTick;
+  private ScheduledExecutorService ticker;
+
+  /**
+   * Creates a timing wheel.
+   *
+   * @param tickMillis The duration of one tick, which is the expiry precision, in milliseconds.
+   * @param horizonMillis The longest delay usually scheduled, used to size the wheel so that a
+   *     bucket only holds items of a single revolution.
+   * @param onExpired The action to run for each item whose deadline has passed.
+   */
+  public TimingWheel(long tickMillis, long horizonMillis, Consumer<T> onExpired) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick must be positive, but was " + tickMillis);
+    }
+    this.tickMillis = tickMillis;
+    this.onExpired = onExpired;
+    long ticksInHorizon = Math.max(horizonMillis / tickMillis + 2, 2);
+    int size = (int) Math.min(MAX_BUCKETS, Long.highestOneBit(ticksInHorizon - 1) << 1);
+    this.mask = size - 1;
+    this.buckets = new AtomicReferenceArray<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.set(i, new ConcurrentLinkedQueue<>());
+    }
+    this.currentTick = System.currentTimeMillis() / tickMillis;
+  }
+
+  /**
+   * Starts a daemon thread that advances the wheel once per tick.
+   *
+   * @param threadName The name of the ticking thread.
+   */
+  public synchronized void start(String threadName) {
+    if (ticker != null) {
+      return;
+    }
+    ticker =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, threadName);
+              thread.setDaemon(true);
+              return thread;
+            });
+    ticker.scheduleAtFixedRate(
+        this::advanceSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Schedules an item to be checked at its current deadline. An item may be scheduled more than
+   * once, so the expiry action must tolerate items that have already been expired.
+   *
+   * @param item The item to schedule.
+   */
+  public void schedule(T item) {
+    // Never schedule into the bucket being drained, or the item would wait a whole revolution
+    long tick = Math.max(item.getDeadline() / tickMillis, currentTick + 1);
+    int index = (int) (tick & mask);
+    Queue<T> bucket = buckets.get(index);
+    bucket.add(item);
+    if (buckets.get(index) != bucket) {
+      // the bucket was drained concurrently, possibly before the item was added
+      schedule(item);
+    }
+  }
+
+  /**
+   * Drains every bucket up to the given time, expiring the items that are due and rescheduling the
+   * ones whose deadline moved into the future, or whose expiry action failed. Only a single thread
+   * may advance the wheel.
+   *
+   * @param now The current time in epoch milliseconds.
+   * @return The number of expired items.
+   */
+  public int advance(long now) {
+    long targetTick = now / tickMillis;
+    int expired = 0;
+    while (currentTick <= targetTick) {
+      Queue<T> due =
+          buckets.getAndSet((int) (currentTick & mask), new ConcurrentLinkedQueue<>());
+      currentTick++;
+      for (T item = due.poll(); item != null; item = due.poll()) {
+        if (item.getDeadline() > now) {
+          schedule(item);
+        } else if (expire(item)) {
+          expired++;
+        }
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Returns the expiry precision of the wheel.
+   *
+   * @return The duration of one tick, in milliseconds.
+   */
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  // The bucket of the item is gone already, so an item that fails is put into the next bucket to
+  // drain, which only the advancing thread drains
+  private boolean expire(T item) {
+    try {
+      onExpired.accept(item);
+      return true;
+    } catch (RuntimeException e) {
+      LOG.warn("Expiring an item failed, retrying on the next tick", e);
+      buckets.get((int) (currentTick & mask)).add(item);
+      return false;
+    }
+  }
+
+  private void advanceSafely() {
+    try {
+      int expired = advance(System.currentTimeMillis());
+      if (expired > 0) {
+        LOG.debug("Expired {} items", expired);
+      }
+    } catch (RuntimeException e) {
+      // an exception would cancel the periodic task, and nothing would ever expire again
+      LOG.warn("Advancing the timing wheel failed", e);
+    }
+  }
+}
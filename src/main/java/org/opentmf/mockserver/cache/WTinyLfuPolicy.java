@@ -0,0 +1,339 @@
+package org.opentmf.mockserver.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A W-TinyLFU eviction policy, deciding which entries of a bounded cache stay resident.
+ *
+ * <p>New entries enter a small LRU admission window (1% of the capacity). Entries leaving the
+ * window become candidates for the main space, a segmented LRU split into a probation (20%) and a
+ * protected (80%) segment. When the cache is over its limits, a candidate is only admitted if it
+ * has been used more often recently than the main space's victim, as estimated by a {@link
+ * FrequencySketch}; otherwise the candidate itself is evicted. Entries hit while on probation are
+ * promoted to the protected segment. This keeps frequently used entries resident even when a burst
+ * of one-off entries arrives.
+ *
+ * <p>The capacity of the regions is measured in weight if a maximum weight is configured, and in
+ * entries otherwise. Both limits are enforced.
+ *
+ * <p>Writes and removals must be recorded while holding the policy {@link #lock() lock}, so that
+ * they can be made atomic with the corresponding change of the cache. Accesses are recorded on a
+ * best effort basis, and are dropped instead of waiting when the lock is busy.
+ *
+ * @param <K> The type of the keys.
+ * @author Gokhan Demir
+ */
+public class WTinyLfuPolicy<K> {
+
+  /**
+   * Receives the keys chosen for eviction. It is called while the policy lock is held, and must
+   * remove the entry from the cache.
+   *
+   * @param <K> The type of the keys.
+   */
+  public interface EvictionListener<K> {
+    void onEviction(K key, RemovalCause cause);
+  }
+
+  /** The number of entries and the weight of all policies together, to enforce global limits. */
+  public static final class Usage {
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong weight = new AtomicLong();
+
+    public long getEntries() {
+      return entries.get();
+    }
+
+    public long getWeight() {
+      return weight.get();
+    }
+  }
+
+  private enum Region {
+    WINDOW,
+    PROBATION,
+    PROTECTED
+  }
+
+  private static final class Node<K> {
+    private final K key;
+    private long weight;
+    private Region region;
+    private Node<K> prev;
+    private Node<K> next;
+
+    private Node(K key, long weight) {
+      this.key = key;
+      this.weight = weight;
+      this.region = Region.WINDOW;
+    }
+  }
+
+  // A doubly linked access order queue; the first node is the least recently used one
+  private static final class NodeDeque<K> {
+    private Node<K> first;
+    private Node<K> last;
+    private long size;
+    private long weight;
+
+    private void addLast(Node<K> node) {
+      node.prev = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+      size++;
+      weight += node.weight;
+    }
+
+    private void remove(Node<K> node) {
+      if (node.prev == null) {
+        first = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      size--;
+      weight -= node.weight;
+    }
+
+    private void moveToBack(Node<K> node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<K, Node<K>> nodes = new HashMap<>();
+  private final NodeDeque<K> window = new NodeDeque<>();
+  private final NodeDeque<K> probation = new NodeDeque<>();
+  private final NodeDeque<K> protectedSegment = new NodeDeque<>();
+  private final FrequencySketch sketch;
+  private final long maximumEntries;
+  private final long maximumWeight;
+  private final boolean weighted;
+  private final long windowMaximum;
+  private final long protectedMaximum;
+  private final Usage usage;
+  private final EvictionListener<K> listener;
+  private long entries;
+  private long weight;
+
+  /**
+   * Creates a policy.
+   *
+   * @param maximumEntries The maximum number of entries, or {@link Long#MAX_VALUE} if unbounded.
+   * @param maximumWeight The maximum total weight, or {@link Long#MAX_VALUE} if unbounded.
+   * @param usage The usage shared with the other policies of the cache.
+   * @param listener The listener removing the evicted entries from the cache.
+   */
+  public WTinyLfuPolicy(
+      long maximumEntries, long maximumWeight, Usage usage, EvictionListener<K> listener) {
+    this.maximumEntries = maximumEntries;
+    this.maximumWeight = maximumWeight;
+    this.weighted = maximumWeight != Long.MAX_VALUE;
+    this.usage = usage;
+    this.listener = listener;
+    long capacity = weighted ? maximumWeight : maximumEntries;
+    this.windowMaximum = Math.max(1L, capacity / 100);
+    long mainMaximum = capacity - windowMaximum;
+    this.protectedMaximum = mainMaximum - mainMaximum / 5;
+    // assume payloads of a few kilobytes when only the weight is bounded
+    this.sketch =
+        new FrequencySketch(maximumEntries != Long.MAX_VALUE ? maximumEntries : capacity / 4096);
+  }
+
+  public void lock() {
+    lock.lock();
+  }
+
+  public void unlock() {
+    lock.unlock();
+  }
+
+  /**
+   * Records the insertion or the replacement of an entry, then evicts entries until the policy is
+   * within its limits again. The caller must hold the lock.
+   *
+   * @param key The key of the entry.
+   * @param entryWeight The weight of the new value.
+   */
+  public void recordWrite(K key, long entryWeight) {
+    sketch.increment(key);
+    Node<K> node = nodes.get(key);
+    if (node == null) {
+      node = new Node<>(key, entryWeight);
+      nodes.put(key, node);
+      window.addLast(node);
+      adjust(1, entryWeight);
+    } else {
+      long delta = entryWeight - node.weight;
+      dequeOf(node).remove(node);
+      node.weight = entryWeight;
+      dequeOf(node).addLast(node);
+      adjust(0, delta);
+      onHit(node);
+    }
+    evict();
+  }
+
+  /**
+   * Records a read of an entry. The access is dropped if another thread holds the lock.
+   *
+   * @param key The key of the entry.
+   */
+  public void recordAccess(K key) {
+    if (!lock.tryLock()) {
+      return;
+    }
+    try {
+      Node<K> node = nodes.get(key);
+      if (node != null) {
+        sketch.increment(key);
+        onHit(node);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records the removal of an entry from the cache. The caller must hold the lock.
+   *
+   * @param key The key of the removed entry.
+   */
+  public void recordRemoval(K key) {
+    Node<K> node = nodes.remove(key);
+    if (node != null) {
+      dequeOf(node).remove(node);
+      adjust(-1, -node.weight);
+    }
+  }
+
+  /**
+   * Evicts the entry that is the least valuable to keep, to honour a limit that is enforced
+   * outside of this policy. The caller must hold the lock.
+   *
+   * @param cause The cause to report to the listener.
+   * @return false if the policy holds no entries.
+   */
+  public boolean evictOne(RemovalCause cause) {
+    Node<K> victim = mainVictim();
+    if (victim == null) {
+      return false;
+    }
+    evict(victim, cause);
+    return true;
+  }
+
+  public long getEntries() {
+    return entries;
+  }
+
+  public long getWeight() {
+    return weight;
+  }
+
+  private void onHit(Node<K> node) {
+    switch (node.region) {
+      case WINDOW:
+        window.moveToBack(node);
+        break;
+      case PROBATION:
+        probation.remove(node);
+        node.region = Region.PROTECTED;
+        protectedSegment.addLast(node);
+        while (measure(protectedSegment) > protectedMaximum && protectedSegment.first != node) {
+          Node<K> demoted = protectedSegment.first;
+          protectedSegment.remove(demoted);
+          demoted.region = Region.PROBATION;
+          probation.addLast(demoted);
+        }
+        break;
+      default:
+        protectedSegment.moveToBack(node);
+    }
+  }
+
+  private void evict() {
+    // entries leaving the window become candidates at the back of the probation segment
+    Node<K> candidate = null;
+    while (measure(window) > windowMaximum && window.first != null) {
+      Node<K> node = window.first;
+      window.remove(node);
+      node.region = Region.PROBATION;
+      probation.addLast(node);
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+
+    while (entries > maximumEntries || weight > maximumWeight) {
+      RemovalCause cause = entries > maximumEntries ? RemovalCause.SIZE : RemovalCause.WEIGHT;
+      Node<K> victim = mainVictim();
+      if (victim == null) {
+        return;
+      }
+      if (candidate == null || candidate == victim) {
+        if (candidate == victim) {
+          candidate = candidate.next;
+        }
+        evict(victim, cause);
+      } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        evict(victim, cause);
+      } else {
+        Node<K> rejected = candidate;
+        candidate = candidate.next;
+        evict(rejected, cause);
+      }
+    }
+  }
+
+  private Node<K> mainVictim() {
+    if (probation.first != null) {
+      return probation.first;
+    }
+    return protectedSegment.first != null ? protectedSegment.first : window.first;
+  }
+
+  private void evict(Node<K> node, RemovalCause cause) {
+    recordRemoval(node.key);
+    listener.onEviction(node.key, cause);
+  }
+
+  private void adjust(long entryDelta, long weightDelta) {
+    entries += entryDelta;
+    weight += weightDelta;
+    usage.entries.addAndGet(entryDelta);
+    usage.weight.addAndGet(weightDelta);
+  }
+
+  private long measure(NodeDeque<K> deque) {
+    return weighted ? deque.weight : deque.size;
+  }
+
+  private NodeDeque<K> dequeOf(Node<K> node) {
+    switch (node.region) {
+      case WINDOW:
+        return window;
+      case PROBATION:
+        return probation;
+      default:
+        return protectedSegment;
+    }
+  }
+}
@@ -6,11 +6,18 @@ import static org.opentmf.mockserver.model.TmfConstants.ID;
 import static org.opentmf.mockserver.model.TmfConstants.UPDATED_BY;
 import static org.opentmf.mockserver.model.TmfConstants.UPDATED_DATE;
 import static org.opentmf.mockserver.util.AuditFieldUtil.setUpdateFields;
+import static org.opentmf.mockserver.util.CompressionUtil.encode;
+import static org.opentmf.mockserver.util.CompressionUtil.negotiate;
+import static org.opentmf.mockserver.util.ETagUtil.ETAG;
+import static org.opentmf.mockserver.util.ETagUtil.isNotModified;
+import static org.opentmf.mockserver.util.ETagUtil.notModified;
 import static org.opentmf.mockserver.util.ErrorResponseUtil.getErrorResponse;
 import static org.opentmf.mockserver.util.HttpRequestUtil.extractFields;
+import static org.opentmf.mockserver.util.ResponseUtil.getJsonResponse;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import org.mockserver.mock.action.ExpectationResponseCallback;
@@ -18,7 +25,10 @@ import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.mockserver.model.HttpStatusCode;
 import org.mockserver.model.MediaType;
+import org.opentmf.mockserver.cache.CacheEntry;
 import org.opentmf.mockserver.model.RequestContext;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+import org.opentmf.mockserver.util.ETagUtil;
 import org.opentmf.mockserver.util.JacksonUtil;
 import org.opentmf.mockserver.util.PayloadCache;
 
@@ -37,7 +47,11 @@ import org.opentmf.mockserver.util.PayloadCache;
  *       value, then sets the final value to the state field, and adds updatedDate, updatedBy
  *       fields, plus, increases the revision field.
  *   <li>Touches the cache, so that the eviction timer restarts for this particular payload.
- *   <li>Returns 200 and the potentially manipulated payload.
+ *   <li>Returns 200 and the potentially manipulated payload. Without fields, the payload is served
+ *       from its serialized form, which the cache keeps until the next revision.
+ *   <li>Sets header ETag, and returns 304 with no body if header If-None-Match carries that tag.
+ *   <li>Compresses a large payload with the coding accepted in header Accept-Encoding. The
+ *       compressed form of a whole payload is kept by the cache until the next revision, too.
  * </ul>
  *
  * @author Yusuf BOZKURT
@@ -50,38 +64,85 @@ public class DynamicGetCallback implements ExpectationResponseCallback {
   public HttpResponse handle(HttpRequest httpRequest) {
     RequestContext ctx = RequestContext.initialize(httpRequest, true, null);
 
-    // Retrieve the cached data associated with the domain and ID
-    JsonNode cachedData = ctx.usePointQuery() ? CACHE.get(ctx) : CACHE.getLatestOf(ctx);
+    // Retrieve the cached entry associated with the domain and ID
+    CacheEntry entry = ctx.usePointQuery() ? CACHE.getEntry(ctx) : CACHE.getLatestEntryOf(ctx);
 
     // If cached data is not found, return a not found response
-    if (Objects.isNull(cachedData)) {
+    if (Objects.isNull(entry)) {
       return getErrorResponse(HttpStatusCode.NOT_FOUND_404, createErrorContextForNotFound());
     }
 
+    // Extract specified fields from the request
+    Set<String> fields = extractFields(httpRequest);
+
+    // Choose the content coding, which makes a different representation, with its own tag
+    Encoding encoding = negotiate(httpRequest);
+
+    // An updated payload never changes state on read, so it can be revalidated, and served
+    // whole, without parsing it
+    if (entry.isUpdated()) {
+      String etag = ETagUtil.ofEntity(ctx.getId(), entry, fields, encoding);
+      if (isNotModified(httpRequest, etag)) {
+        CACHE.touch(ctx);
+        return notModified(etag);
+      }
+      if (fields.isEmpty()) {
+        CACHE.touch(ctx);
+        return wholePayload(entry, encoding, etag);
+      }
+    }
+
+    JsonNode cachedData = entry.getPayload();
     ctx.obtainVersionFromPayloadIfNecessary(cachedData);
 
     // Check if state transition is required based on TmfStatePath, and update cached data if
-    // necessary
+    // necessary. A payload shared with readers is never changed in place: the transition only sets
+    // top-level fields, so a shallow copy keeps the cached payload, its serialized forms and its
+    // index entries as they were until the update replaces them.
     if (needToChangeState(ctx, cachedData)) {
-      ObjectNode o = ((ObjectNode) cachedData);
+      ObjectNode o = entry.isPayloadShared()
+          ? JacksonUtil.createObjectNode().setAll((ObjectNode) cachedData)
+          : (ObjectNode) cachedData;
       o.put(ctx.getTmfStatePath().getVariableName(), ctx.getTmfStatePath().getFinalState());
-      setUpdateFields((ObjectNode) cachedData);
+      setUpdateFields(o);
+      cachedData = o;
+      entry = CACHE.update(ctx, cachedData);
     }
 
     // Update the last access time of cached data in the cache
     CACHE.touch(ctx);
 
-    // Extract specified fields from the request
-    Set<String> fields = extractFields(httpRequest);
+    // Answer a client that has the payload already before any serialization work
+    String etag = ETagUtil.ofEntity(ctx.getId(), entry, fields, encoding);
+    if (isNotModified(httpRequest, etag)) {
+      return notModified(etag);
+    }
+
+    // Serve the whole payload from its serialized form, kept by the cache until the next revision
+    if (fields.isEmpty()) {
+      return wholePayload(entry, encoding, etag);
+    }
 
     // Filter the cached data based on the extracted fields
     JsonNode filteredData = filterFields(cachedData, fields);
 
     // Generate and return the response containing the filtered data
-    return HttpResponse.response()
+    HttpResponse response = HttpResponse.response()
         .withStatusCode(HttpStatusCode.OK_200.code())
         .withContentType(MediaType.APPLICATION_JSON)
-        .withBody(JacksonUtil.writeAsString(filteredData));
+        .withBody(JacksonUtil.writeAsString(filteredData))
+        .withHeader(ETAG, etag);
+    return encode(response, encoding);
+  }
+
+  /**
+   * Serves the whole payload from its serialized form, or from its compressed form if the
+   * payload is large enough, both of which the cache keeps until the next revision.
+   */
+  private static HttpResponse wholePayload(CacheEntry entry, Encoding encoding, String etag) {
+    HttpResponse response = getJsonResponse(HttpStatusCode.OK_200, entry.getPayloadBytes())
+        .withHeader(ETAG, etag);
+    return encode(response, encoding, bytes -> entry.getEncodedPayloadBytes(encoding));
   }
 
   /**
@@ -95,10 +156,11 @@ public class DynamicGetCallback implements ExpectationResponseCallback {
     if (fieldNames.isEmpty()) {
       return originalNode;
     }
-    fieldNames.add(ID);
-    fieldNames.add(HREF);
+    Set<String> names = new HashSet<>(fieldNames);
+    names.add(ID);
+    names.add(HREF);
     ObjectNode filteredNode = JacksonUtil.createObjectNode();
-    for (String fieldName : fieldNames) {
+    for (String fieldName : names) {
       if (originalNode.has(fieldName)) {
         filteredNode.set(fieldName, originalNode.get(fieldName));
       }
@@ -1,32 +1,61 @@
 package org.opentmf.mockserver.callback;
 
-import static org.opentmf.mockserver.model.TmfConstants.HREF;
-import static org.opentmf.mockserver.model.TmfConstants.ID;
+import static org.opentmf.mockserver.util.CompressionUtil.encode;
+import static org.opentmf.mockserver.util.CompressionUtil.negotiate;
+import static org.opentmf.mockserver.util.Constants.NDJSON_MAX_PAGE_BYTES;
+import static org.opentmf.mockserver.util.Constants.ONE_HUNDRED;
+import static org.opentmf.mockserver.util.Constants.RESULT_CACHE_MAX_BYTES;
+import static org.opentmf.mockserver.util.Constants.RESULT_CACHE_MAX_ENTRIES;
+import static org.opentmf.mockserver.util.Constants.SIXTY_FOUR_MEGABYTES;
+import static org.opentmf.mockserver.util.Constants.SIXTEEN_MEGABYTES;
+import static org.opentmf.mockserver.util.ETagUtil.ETAG;
+import static org.opentmf.mockserver.util.ETagUtil.isNotModified;
+import static org.opentmf.mockserver.util.ETagUtil.notModified;
+import static org.opentmf.mockserver.util.ErrorResponseUtil.getErrorResponse;
+import static org.opentmf.mockserver.util.HttpRequestUtil.extractAttributeFilter;
+import static org.opentmf.mockserver.util.HttpRequestUtil.extractCursor;
 import static org.opentmf.mockserver.util.HttpRequestUtil.extractFields;
-import static org.opentmf.mockserver.util.HttpRequestUtil.extractFilter;
+import static org.opentmf.mockserver.util.HttpRequestUtil.extractFilterPlan;
 import static org.opentmf.mockserver.util.HttpRequestUtil.extractLimit;
 import static org.opentmf.mockserver.util.HttpRequestUtil.extractOffset;
-import static org.opentmf.mockserver.util.HttpRequestUtil.extractSort;
+import static org.opentmf.mockserver.util.HttpRequestUtil.extractSortSpec;
+import static org.opentmf.mockserver.util.ResponseUtil.APPLICATION_NDJSON;
+import static org.opentmf.mockserver.util.ResponseUtil.getJsonResponse;
+import static org.opentmf.mockserver.util.ResponseUtil.getNdjsonResponse;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.jayway.jsonpath.JsonPath;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.stream.Collectors;
 import org.mockserver.mock.action.ExpectationResponseCallback;
 import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.mockserver.model.HttpStatusCode;
-import org.mockserver.model.MediaType;
-import org.opentmf.mockserver.model.Id;
+import org.mockserver.model.NottableString;
+import org.mockserver.model.Parameter;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.cache.IndexConfig;
+import org.opentmf.mockserver.filter.AttributeFilter;
+import org.opentmf.mockserver.filter.Cursor;
+import org.opentmf.mockserver.filter.FilterPlan;
+import org.opentmf.mockserver.filter.IndexLookup;
+import org.opentmf.mockserver.filter.QueryPlan;
+import org.opentmf.mockserver.filter.QueryPlanner;
+import org.opentmf.mockserver.filter.SortSpec;
 import org.opentmf.mockserver.model.RequestContext;
-import org.opentmf.mockserver.util.JacksonUtil;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+import org.opentmf.mockserver.util.ETagUtil;
+import org.opentmf.mockserver.util.JsonListWriter;
+import org.opentmf.mockserver.util.PageSizeConfig;
+import org.opentmf.mockserver.util.ParallelUtil;
 import org.opentmf.mockserver.util.PayloadCache;
+import org.opentmf.mockserver.util.QueryCache;
 
 /**
  *
@@ -34,15 +63,47 @@ import org.opentmf.mockserver.util.PayloadCache;
  * <h2>DynamicGetListCallback</h2>
  *
  * <ul>
+ *   <li>Serves a query that is repeated while its domain is unchanged the response it was served
+ *       before, from a cache keyed by the generation of the domain and the normalized query, and
+ *       bounded by the number of responses and the total size of their bodies.
+ *   <li>Sets header ETag, derived from the generation of the domain and the normalized query, and
+ *       returns 304 with no body if header If-None-Match carries that tag.
  *   <li>Decides the domain from the path parameter.
- *   <li>Extracts offset, limit, sort criteria, filter and fields from the httpRequest.
- *   <li>Applies jsonPath filter to the cached domain payloads.
- *   <li>Applies sorting to the filtered out domain payloads.
- *   <li>Restricts the set by applying paging depending on the offset and limit.
- *   <li>Applies fields filtering to the payloads to return.
+ *   <li>Extracts offset, limit, sort criteria, filter and fields from the httpRequest, and, if
+ *       enabled with the ATTRIBUTE_FILTERING environment variable, considers any other query
+ *       parameter not starting with an underscore a TMF-630 attribute filter, such as <code>
+ *       state=completed</code> or <code>createdDate.gt=2026-01-01</code>.
+ *   <li>Lets the {@link QueryPlanner} narrow the domain down with the most selective secondary
+ *       index lookup, or read it in the sort order with an ordered scan.
+ *   <li>Applies attribute filters and jsonPath filter to the cached domain payloads, evaluating
+ *       them on each payload tree without serializing the domain.
+ *   <li>Applies sorting to the filtered out domain payloads, on dotted field paths in the given
+ *       order, comparing typed sort keys decoded once per payload. Without any filter, a page
+ *       sorted on createdDate or updatedDate alone is read off an ordering index instead.
+ *   <li>On large domains, reads the payloads, filters and sorts them in parallel, on a dedicated
+ *       pool, see {@link ParallelUtil}.
+ *   <li>Restricts the set by applying paging depending on the offset and limit, the limit being at
+ *       most the maximum page size of the domain, see {@link PageSizeConfig}. A page near the
+ *       start is selected with a bounded heap of offset + limit items, instead of a full sort.
+ *   <li>Alternatively, resumes after the cursor given in parameter cursor, ignoring the offset.
+ *       Each page that is not the last one carries the cursor of the next page in header
+ *       X-Next-Cursor, and in a Link header with rel="next". Only an unfiltered page read off an
+ *       ordering index seeks the cursor there; otherwise, the matches up to the cursor are skipped
+ *       in a linear pass, see {@link Cursor}.
+ *   <li>Writes the payloads to return straight into the response body, one at a time, applying
+ *       fields filtering while writing.
  *   <li>Finds the total result count and sets header X-Total-Count as per TMF-630 specification.
+ *       A HEAD request, or a limit of 0, is served the count alone, without sorting, paging or
+ *       serializing the payloads.
  *   <li>Finds the items' content range and sets header Content-Range as per TMF-630 specification.
- *   <li>Serves the response with http status 200 and content type application/json.
+ *   <li>Serves the response with http status 200 and content type application/json, or, if the
+ *       request accepts application/x-ndjson, as newline delimited JSON. The body is built in memory
+ *       before it is sent, so such a page stops taking payloads at about the size set with the
+ *       NDJSON_MAX_PAGE_BYTES environment variable, and the cursor of the next page resumes
+ *       after the last payload written. Unfiltered pages read off an ordering index are then
+ *       written from the serialized payloads.
+ *   <li>Compresses a large response with the coding accepted in header Accept-Encoding. The
+ *       coding is part of the key of the cached response, so a repeated query is compressed once.
  * </ul>
  *
  * @author Yusuf BOZKURT
@@ -50,119 +111,333 @@ import org.opentmf.mockserver.util.PayloadCache;
 public class DynamicGetListCallback implements ExpectationResponseCallback {
 
   private static final PayloadCache CACHE = PayloadCache.getInstance();
+  private static final String HEAD = "HEAD";
+  private static final int RESULT_CACHE_CAPACITY = Integer.parseInt(
+      Optional.ofNullable(System.getenv(RESULT_CACHE_MAX_ENTRIES)).orElse(ONE_HUNDRED));
+  private static final long RESULT_CACHE_WEIGHT = Long.parseLong(
+      Optional.ofNullable(System.getenv(RESULT_CACHE_MAX_BYTES)).orElse(SIXTY_FOUR_MEGABYTES));
+  // Responses are weighed by the size of their bodies, which holds the bulk of their memory
+  private static final QueryCache<HttpResponse> RESULTS = RESULT_CACHE_CAPACITY > 0
+      ? new QueryCache<>("results", RESULT_CACHE_CAPACITY, RESULT_CACHE_WEIGHT,
+          DynamicGetListCallback::weigh)
+      : null;
+  private static final long NDJSON_PAGE_BYTES = Long.parseLong(
+      Optional.ofNullable(System.getenv(NDJSON_MAX_PAGE_BYTES)).orElse(SIXTEEN_MEGABYTES));
+  private static final byte[] EMPTY_ARRAY = {'[', ']'};
 
   @Override
   public HttpResponse handle(HttpRequest httpRequest) {
     RequestContext ctx = RequestContext.initialize(httpRequest, false, null);
 
-    // Retrieve the cached data associated with the domain
-    SortedMap<Id, JsonNode> cachedData = CACHE.getAll(ctx.getDomain());
+    // Retrieve an immutable snapshot of the cached data associated with the domain
+    DomainSnapshot snapshot = CACHE.getSnapshot(ctx.getDomain());
 
+    // A client that has the result of the query on this generation of the domain, in the same
+    // content coding, is told so
+    Encoding encoding = negotiate(httpRequest);
+    String resultKey = resultKey(httpRequest, snapshot, encoding);
+    String etag = ETagUtil.ofList(resultKey);
+    if (isNotModified(httpRequest, etag)) {
+      return notModified(etag);
+    }
+
+    // A query repeated while the domain is unchanged is served the response computed and
+    // compressed before
+    HttpResponse response = RESULTS == null
+        ? encode(query(httpRequest, ctx, snapshot), encoding)
+        : RESULTS.get(resultKey, key -> encode(query(httpRequest, ctx, snapshot), encoding))
+            .clone();
+    return response.getStatusCode() == HttpStatusCode.OK_200.code()
+        ? response.withHeader(ETAG, etag)
+        : response;
+  }
+
+  private HttpResponse query(HttpRequest httpRequest, RequestContext ctx, DomainSnapshot snapshot) {
     // Extract limit, offset, sort, and filter parameters from the request
-    int limit = extractLimit(httpRequest);
+    int limit = extractLimit(httpRequest, ctx.getDomain());
     int offset = extractOffset(httpRequest);
-    Set<String> sortList = extractSort(httpRequest);
-    String filter = extractFilter(httpRequest);
+    SortSpec sortSpec = extractSortSpec(httpRequest);
+    Set<String> sortList = sortSpec.getCriteria();
+    FilterPlan filterPlan = extractFilterPlan(httpRequest);
     Set<String> fields = extractFields(httpRequest);
 
-    // Convert cached data to a list for further processing
-    List<JsonNode> jsonNodesBeforeFilter = new ArrayList<>(cachedData.values());
+    AttributeFilter attributeFilter = extractAttributeFilter(httpRequest);
 
-    // Apply filter to the data
-    List<JsonNode> afterFiltered = applyFilter(jsonNodesBeforeFilter, filter);
+    // Pollers that need the count alone get neither sorting, nor paging, nor a body
+    if (limit == 0 || HEAD.equalsIgnoreCase(httpRequest.getMethod().getValue())) {
+      return countOnly(httpRequest, snapshot, filterPlan, attributeFilter, sortList, offset);
+    }
 
-    // Get the total count of filtered data
-    long totalCount = afterFiltered.size();
+    // Newline delimited JSON suits large pages, which are capped in bytes rather than in items
+    boolean ndjson = acceptsNdjson(httpRequest);
 
-    // Apply sorting, paging, and fields filtering to the filtered data
-    List<JsonNode> dataList = applySortingAndPaging(afterFiltered, sortList, offset, limit);
-    dataList = applyFieldsFiltering(dataList, fields);
+    // A cursor resumes the query after the last item of the previous page, instead of the offset
+    Cursor cursor;
+    try {
+      cursor = extractCursor(httpRequest);
+    } catch (IllegalArgumentException e) {
+      return getErrorResponse(HttpStatusCode.BAD_REQUEST_400, e.getMessage());
+    }
+    if (cursor != null && !cursor.isFor(sortSpec)) {
+      return getErrorResponse(
+          HttpStatusCode.BAD_REQUEST_400, "The cursor does not belong to sort " + sortSpec);
+    }
 
-    // Get the count of results after sorting and filtering
-    int resultCount = dataList.size();
+    long totalCount;
+    // The number of result items before the page
+    long start;
+    List<JsonNode> dataList;
+    List<CacheEntry> page = filterPlan == null && attributeFilter == null
+        ? findOrderedPage(snapshot, sortList, cursor, offset, limit)
+        : null;
+    if (page != null) {
+      // The page has been read off an ordering index, without sorting the domain
+      totalCount = snapshot.getEntries().size();
+      start = cursor == null ? offset : totalCount - countOrderedAfter(snapshot, sortList, cursor);
+      // Entries sent in their serialized form need no payload trees
+      dataList = ndjson && fields.isEmpty()
+          ? null
+          : page.stream().map(CacheEntry::getPayload).collect(Collectors.toList());
+    } else {
+      // Let the planner choose between an index lookup, an ordered scan and a full scan
+      QueryPlan plan = planQuery(snapshot, filterPlan, attributeFilter, sortList);
 
-    // Construct Content-Range header to indicate the range of returned resources
-    String contentRange = "items " + (offset + 1) + "-" + (offset + resultCount) + "/" + totalCount;
+      // Apply filters to the data
+      List<JsonNode> afterFiltered = findMatches(snapshot, plan, filterPlan, attributeFilter);
+
+      // Get the total count of filtered data
+      totalCount = afterFiltered.size();
+
+      // Drop the data up to the cursor, if any, which takes the place of the offset
+      List<JsonNode> remaining = afterFiltered;
+      int skip = offset;
+      if (cursor != null) {
+        remaining = sortSpec.after(afterFiltered, cursor);
+        skip = 0;
+      }
+      start = totalCount - remaining.size() + skip;
+
+      // Apply sorting, unless the plan has read the data in order already, and paging
+      dataList = plan.isOrdered()
+          ? remaining.stream().skip(skip).limit(limit).collect(Collectors.toList())
+          : sortSpec.sortedPage(remaining, skip, limit);
+    }
 
-    // Convert the filtered, sorted, and paginated data to a JSON array
-    ArrayNode arrayNode = JacksonUtil.createArrayNode();
-    dataList.forEach(arrayNode::add);
+    // Write the filtered, sorted, and paginated data as a JSON array, or as lines of JSON, applying
+    // fields filtering. The lines are written up to the maximum page size in bytes, and those that
+    // do not fit are left for the next page.
+    int available = dataList != null ? dataList.size() : page.size();
+    int resultCount = available;
+    HttpResponse response;
+    if (ndjson) {
+      JsonListWriter.Lines lines = dataList == null
+          ? JsonListWriter.writeSerializedLines(page, NDJSON_PAGE_BYTES)
+          : JsonListWriter.writeLines(dataList, fields, NDJSON_PAGE_BYTES);
+      resultCount = lines.getCount();
+      response = getNdjsonResponse(HttpStatusCode.OK_200, lines.getBytes());
+    } else {
+      response = getJsonResponse(HttpStatusCode.OK_200, JsonListWriter.write(dataList, fields));
+    }
 
-    // Generate and return the response containing the filtered, sorted, and paginated resource list
-    return HttpResponse.response()
-        .withStatusCode(HttpStatusCode.OK_200.code())
-        .withContentType(MediaType.APPLICATION_JSON)
-        .withBody(JacksonUtil.writeAsString(arrayNode))
+    // The cursor of the next page, if the result goes on after this page
+    String nextCursor = null;
+    if (resultCount > 0 && (resultCount == limit || resultCount < available)
+        && start + resultCount < totalCount) {
+      JsonNode last = dataList != null
+          ? dataList.get(resultCount - 1)
+          : page.get(resultCount - 1).getPayload();
+      nextCursor = Cursor.after(sortSpec, last).encode();
+    }
+
+    // Construct Content-Range header to indicate the range of returned resources
+    String contentRange = contentRange(start, resultCount, totalCount);
+
+    // Complete the response containing the filtered, sorted, and paginated resource list
+    response
         .withHeader("X-Total-Count", String.valueOf(totalCount))
         .withHeader("Content-Range", contentRange);
+    if (nextCursor != null) {
+      response
+          .withHeader("X-Next-Cursor", nextCursor)
+          .withHeader("Link", "<" + nextLink(httpRequest, nextCursor) + ">; rel=\"next\"");
+    }
+    return response;
+  }
+
+  /**
+   * Serves the total result count alone, in headers X-Total-Count and Content-Range. Without any
+   * filter, the count is the size of the domain snapshot, which is known without visiting the
+   * entries, and with a single attribute filter read off an index, the number of entries the
+   * lookup finds. A HEAD request gets no body, any other an empty array.
+   */
+  private HttpResponse countOnly(HttpRequest httpRequest, DomainSnapshot snapshot,
+      FilterPlan filterPlan, AttributeFilter attributeFilter, Set<String> sort, int offset) {
+    long totalCount;
+    if (filterPlan == null && attributeFilter == null) {
+      totalCount = snapshot.getEntries().size();
+    } else {
+      QueryPlan plan = planQuery(snapshot, filterPlan, attributeFilter, sort);
+      totalCount = filterPlan == null && attributeFilter.getConditions().size() == 1
+          ? plan.countExact(snapshot)
+          : -1;
+      if (totalCount < 0) {
+        totalCount = findMatches(snapshot, plan, filterPlan, attributeFilter).size();
+      }
+    }
+    boolean head = HEAD.equalsIgnoreCase(httpRequest.getMethod().getValue());
+    HttpResponse response = head
+        ? HttpResponse.response().withStatusCode(HttpStatusCode.OK_200.code())
+        : getJsonResponse(HttpStatusCode.OK_200, EMPTY_ARRAY);
+    return response
+        .withHeader("X-Total-Count", String.valueOf(totalCount))
+        .withHeader("Content-Range", contentRange(offset, 0, totalCount));
   }
 
-  private List<JsonNode> applyFilter(List<JsonNode> data, String filter) {
-    if (filter == null || filter.isEmpty()) {
-      return data;
+  /**
+   * Returns the value of header Content-Range for count items after the first start ones, or, if
+   * there are none, the unsatisfied range that carries the total count alone.
+   */
+  private static String contentRange(long start, int count, long totalCount) {
+    return count == 0
+        ? "items */" + totalCount
+        : "items " + (start + 1) + "-" + (start + count) + "/" + totalCount;
+  }
+
+  /**
+   * Returns the key of the response to a query: the generation of the domain snapshot, the method
+   * and the path, the query parameters ordered by name, the accepted media type, and the content
+   * coding. Parameters given in a different order thus share a response.
+   */
+  private static String resultKey(
+      HttpRequest httpRequest, DomainSnapshot snapshot, Encoding encoding) {
+    List<String> parameters = new ArrayList<>();
+    for (Parameter parameter : httpRequest.getQueryStringParameterList()) {
+      StringBuilder text = new StringBuilder(parameter.getName().getValue());
+      for (NottableString value : parameter.getValues()) {
+        text.append('\0').append(value.getValue());
+      }
+      parameters.add(text.toString());
     }
-    String dataAsString = JacksonUtil.writeAsString(data);
-    List<Object> filteredData = JsonPath.read(dataAsString, filter);
-    return JacksonUtil.convertToJsonNodeList(filteredData);
+    Collections.sort(parameters);
+    // The parts are separated by characters no URL carries
+    StringBuilder key = new StringBuilder()
+        .append(snapshot.getGeneration()).append('\1')
+        .append(httpRequest.getMethod().getValue()).append('\1')
+        .append(httpRequest.getPath().getValue()).append('\1')
+        .append(acceptsNdjson(httpRequest)).append('\1')
+        .append(encoding == null ? "" : encoding.getToken());
+    parameters.forEach(parameter -> key.append('\1').append(parameter));
+    return key.toString();
   }
 
-  private List<JsonNode> applySortingAndPaging(
-      List<JsonNode> data, Set<String> sort, int offset, int limit) {
+  private static long weigh(HttpResponse response) {
+    return response.getBody() == null ? 0 : response.getBody().getRawBytes().length;
+  }
 
-    List<Comparator<JsonNode>> comparators = getComparators(sort);
-    Comparator<JsonNode> combinedComparator =
-        comparators.stream().reduce(Comparator::thenComparing).orElse((o1, o2) -> 0);
+  /**
+   * Returns the cache of list responses, with its hit and miss counters.
+   *
+   * @return The cache, or null if it is disabled.
+   */
+  public static QueryCache<HttpResponse> getResultCache() {
+    return RESULTS;
+  }
 
-    return data.stream()
-        .sorted(combinedComparator)
-        .skip(offset)
-        .limit(limit)
-        .collect(Collectors.toList());
+  private static boolean acceptsNdjson(HttpRequest httpRequest) {
+    return httpRequest.getFirstHeader("Accept").contains(APPLICATION_NDJSON.toString());
   }
 
-  private List<JsonNode> applyFieldsFiltering(List<JsonNode> data, Set<String> fields) {
-    if (fields == null || fields.isEmpty()) {
-      return data;
+  /**
+   * Reads a page off the ordering index of the sort field, if the sort is on a single field that
+   * every domain is indexed on, such as the default createdDate.
+   *
+   * @param snapshot The snapshot of the domain.
+   * @param sort The sort criteria.
+   * @param cursor The cursor to resume after, or null to skip the offset instead.
+   * @param offset The number of entries to skip.
+   * @param limit The maximum number of entries to return.
+   * @return The entries of the page, or null if the page has to be built by sorting.
+   */
+  private List<CacheEntry> findOrderedPage(
+      DomainSnapshot snapshot, Set<String> sort, Cursor cursor, int offset, int limit) {
+    String field = orderingFieldOf(sort);
+    if (field == null) {
+      return null;
     }
-    fields.add(ID);
-    fields.add(HREF);
+    boolean descending = sort.iterator().next().startsWith("-");
+    return cursor == null
+        ? snapshot.findPage(field, descending, offset, limit)
+        : snapshot.findPageAfter(field, descending, cursor.getKeys()[0], cursor.getId(), limit);
+  }
 
-    return data.stream().map(node -> filterFields(node, fields)).collect(Collectors.toList());
+  private int countOrderedAfter(DomainSnapshot snapshot, Set<String> sort, Cursor cursor) {
+    boolean descending = sort.iterator().next().startsWith("-");
+    return snapshot.countAfter(
+        orderingFieldOf(sort), descending, cursor.getKeys()[0], cursor.getId());
   }
 
-  private JsonNode filterFields(JsonNode originalNode, Set<String> fieldNames) {
-    ObjectNode filteredNode = JacksonUtil.createObjectNode();
-    for (String fieldName : fieldNames) {
-      if (originalNode.has(fieldName)) {
-        filteredNode.set(fieldName, originalNode.get(fieldName));
+  // The field of a sort on a single field that has an ordering index, or null
+  private static String orderingFieldOf(Set<String> sort) {
+    if (sort.size() != 1) {
+      return null;
+    }
+    String sortField = sort.iterator().next();
+    String field = sortField.startsWith("-") ? sortField.substring(1) : sortField;
+    return IndexConfig.ORDERING_FIELDS.contains(field) ? field : null;
+  }
+
+  // The request URL with the offset replaced by the cursor of the next page
+  private static String nextLink(HttpRequest httpRequest, String nextCursor) {
+    StringBuilder link = new StringBuilder(httpRequest.getPath().getValue()).append('?');
+    for (Parameter parameter : httpRequest.getQueryStringParameterList()) {
+      String name = parameter.getName().getValue();
+      if ("offset".equals(name) || "cursor".equals(name)) {
+        continue;
+      }
+      for (NottableString value : parameter.getValues()) {
+        link.append(URLEncoder.encode(name, StandardCharsets.UTF_8)).append('=')
+            .append(URLEncoder.encode(value.getValue(), StandardCharsets.UTF_8)).append('&');
       }
     }
-    return filteredNode;
+    return link.append("cursor=").append(nextCursor).toString();
   }
 
-  private int compare(String sortField, JsonNode node1, JsonNode node2) {
-    if (node1.get(sortField).isNumber() && node2.get(sortField).isNumber()) {
-      return Integer.compare(node1.get(sortField).asInt(), node2.get(sortField).asInt());
-    } else if (node1.get(sortField).isTextual() && node2.get(sortField).isTextual()) {
-      return node1.get(sortField).asText().compareTo(node2.get(sortField).asText());
-    } else if (node1.get(sortField).isBoolean() && node2.get(sortField).isBoolean()) {
-      return Boolean.compare(node1.get(sortField).asBoolean(), node2.get(sortField).asBoolean());
-    } else {
-      return node1.get(sortField).asText().compareTo(node2.get(sortField).asText());
+  private QueryPlan planQuery(DomainSnapshot snapshot, FilterPlan filterPlan,
+      AttributeFilter attributeFilter, Set<String> sort) {
+    List<IndexLookup> lookups = new ArrayList<>();
+    if (attributeFilter != null) {
+      lookups.addAll(attributeFilter.toIndexLookups());
+    }
+    if (filterPlan != null && filterPlan.getIndexLookup() != null) {
+      lookups.add(filterPlan.getIndexLookup());
     }
+    return QueryPlanner.plan(
+        snapshot, lookups, sort, filterPlan == null || filterPlan.isPerPayload());
   }
 
-  private List<Comparator<JsonNode>> getComparators(Set<String> sortFields) {
-    return sortFields.stream()
-        .map(
-            sortField -> {
-              if (sortField.startsWith("-")) {
-                String field = sortField.substring(1);
-                return (Comparator<JsonNode>) (node1, node2) -> compare(field, node2, node1);
-              } else {
-                return (Comparator<JsonNode>) (node1, node2) -> compare(sortField, node1, node2);
-              }
-            })
-        .collect(Collectors.toList());
+  private List<JsonNode> findMatches(DomainSnapshot snapshot, QueryPlan plan,
+      FilterPlan filterPlan, AttributeFilter attributeFilter) {
+    List<JsonNode> candidates =
+        ParallelUtil.map(plan.findCandidates(snapshot), CacheEntry::getPayload);
+    return applyFilters(candidates, filterPlan, attributeFilter);
+  }
+
+  /**
+   * Applies the attribute filter and the JsonPath filter. A JsonPath filter that is not a predicate
+   * on each payload, such as a slice, selects out of the whole domain, so it is applied first.
+   */
+  private List<JsonNode> applyFilters(
+      List<JsonNode> data, FilterPlan filterPlan, AttributeFilter attributeFilter) {
+    List<JsonNode> result = data;
+    if (filterPlan != null && !filterPlan.isPerPayload()) {
+      result = filterPlan.apply(result);
+    }
+    if (attributeFilter != null) {
+      result = ParallelUtil.filter(result, attributeFilter::matches);
+    }
+    if (filterPlan != null && filterPlan.isPerPayload()) {
+      result = filterPlan.apply(result);
+    }
+    return result;
   }
 }
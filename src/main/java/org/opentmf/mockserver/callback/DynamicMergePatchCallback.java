@@ -3,19 +3,18 @@ package org.opentmf.mockserver.callback;
 import static org.opentmf.mockserver.model.Error.createErrorContextForNotFound;
 import static org.opentmf.mockserver.util.AuditFieldUtil.setUpdateFields;
 import static org.opentmf.mockserver.util.ErrorResponseUtil.getErrorResponse;
+import static org.opentmf.mockserver.util.ResponseUtil.getJsonResponse;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.github.fge.jsonpatch.JsonPatchException;
-import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
 import java.util.Objects;
 import org.mockserver.mock.action.ExpectationResponseCallback;
 import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.mockserver.model.HttpStatusCode;
-import org.mockserver.model.MediaType;
+import org.opentmf.mockserver.cache.CacheEntry;
 import org.opentmf.mockserver.model.RequestContext;
-import org.opentmf.mockserver.util.JacksonUtil;
+import org.opentmf.mockserver.patch.MergePatchEngine;
 import org.opentmf.mockserver.util.PayloadCache;
 
 /**
@@ -29,11 +28,13 @@ import org.opentmf.mockserver.util.PayloadCache;
  *       entities
  *   <li>Checks if a payload is found in the cache with that id (and version if versioned entity).
  *   <li>Returns 404 if no payload is cached with that id.
- *   <li>Applies the mergePatch body to the cached payload.
+ *   <li>Applies the mergePatch body to the cached payload, streaming it without building a patch
+ *       object, see {@link MergePatchEngine}. A payload that readers share is not changed; only the
+ *       objects the patch touches are copied. Any other payload is patched in place.
  *   <li>Updates the cached payload with the patch result and restarts the cache evict timer.
  *   <li>Adds/overrides updatedDate, updatedBy fields, plus, increases the revision field's value by
  *       one.
- *   <li>Returns 200 and the updated payload.
+ *   <li>Returns 200 and the updated payload, serialized once for the response and the cache.
  * </ul>
  *
  * @author Yusuf BOZKURT
@@ -46,41 +47,43 @@ public class DynamicMergePatchCallback implements ExpectationResponseCallback {
   public HttpResponse handle(HttpRequest httpRequest) {
     RequestContext ctx = RequestContext.initialize(httpRequest, true, null);
 
-    // Retrieve the cached data associated with the domain and ID
-    JsonNode cachedData = ctx.usePointQuery() ? CACHE.get(ctx) : CACHE.getLatestOf(ctx);
+    // Retrieve the cached entry associated with the domain and ID
+    CacheEntry cachedEntry =
+        ctx.usePointQuery() ? CACHE.getEntry(ctx) : CACHE.getLatestEntryOf(ctx);
 
     // If the data does not exist in the cache, indicating that the resource does not exist, return
     // a not found response
-    if (Objects.isNull(cachedData)) {
+    if (Objects.isNull(cachedEntry)) {
       return getErrorResponse(HttpStatusCode.NOT_FOUND_404, createErrorContextForNotFound());
     }
 
+    JsonNode cachedData = cachedEntry.getPayload();
     ctx.obtainVersionFromPayloadIfNecessary(cachedData);
 
-    // Extract the JSON Merge Patch from the request body
-    String body = httpRequest.getBodyAsString();
-    JsonMergePatch patchData = JacksonUtil.readAsJsonMerger(body);
-
-    // Apply the JSON Merge Patch to the cached data
+    // Apply the JSON Merge Patch, read straight from the request body, to the cached data. A tree
+    // that readers share is left as it is, for them to see either the old payload or the new one
+    byte[] body = httpRequest.getBody() == null ? new byte[0] : httpRequest.getBody().getRawBytes();
     JsonNode patchedNode;
     try {
-      patchedNode = patchData.apply(cachedData);
-    } catch (JsonPatchException e) {
+      patchedNode = MergePatchEngine.apply(cachedData, body, cachedEntry.isPayloadShared());
+    } catch (IllegalArgumentException e) {
       // If there is an error while applying the JSON Merge Patch, return an error response (HTTP
       // 400 Bad Request)
       return getErrorResponse(HttpStatusCode.BAD_REQUEST_400, e.getMessage());
     }
-
-    // Update the cached data with the patched node
-    CACHE.update(ctx, patchedNode);
+    if (!patchedNode.isObject()) {
+      return getErrorResponse(
+          HttpStatusCode.BAD_REQUEST_400, "The merge patch must result in an object");
+    }
 
     // Set audit fields for update operation
     setUpdateFields((ObjectNode) patchedNode);
 
-    // Return a successful update response (HTTP 200 OK) containing the updated data
-    return HttpResponse.response()
-        .withStatusCode(HttpStatusCode.OK_200.code())
-        .withContentType(MediaType.APPLICATION_JSON)
-        .withBody(JacksonUtil.writeAsString(patchedNode));
+    // Update the cached data with the patched node
+    CacheEntry entry = CACHE.update(ctx, patchedNode);
+
+    // Return a successful update response (HTTP 200 OK) containing the updated data, serialized
+    // once for the cache as well
+    return getJsonResponse(HttpStatusCode.OK_200, entry.getPayloadBytes());
   }
 }
@@ -0,0 +1,189 @@
+package org.opentmf.mockserver.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.opentmf.mockserver.cache.SecondaryIndex;
+
+/**
+ * A TMF-630 attribute filtering condition, given as a query parameter such as <code>
+ * state=completed</code>, <code>createdDate.gt=2026-01-01</code> or <code>
+ * relatedParty.id=42,43</code>. A comma separated value matches any of its items. The field is a
+ * dotted path, and a payload matches if any of the values the path leads to does.
+ *
+ * <p>Values are compared by the type of the payload value: numbers numerically, provided that the
+ * query value is a number too, strings as text, and booleans only for equality with <code>
+ * true</code> or <code>false</code>.
+ *
+ * @author Gokhan Demir
+ */
+public final class AttributeCondition {
+
+  /** The comparison of a condition, named by the suffix of its query parameter. */
+  public enum Operator {
+    EQ,
+    GT,
+    GTE,
+    LT,
+    LTE;
+
+    /**
+     * Returns the operator named by the last segment of a query parameter.
+     *
+     * @param suffix The last segment, such as <code>gt</code>.
+     * @return The operator, or null if the segment names no operator.
+     */
+    public static Operator ofSuffix(String suffix) {
+      for (Operator operator : values()) {
+        if (operator.name().equalsIgnoreCase(suffix)) {
+          return operator;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final SecondaryIndex path;
+  private final Operator operator;
+  private final List<String> texts;
+  // The numeric form of each text, or null where the text is not a number
+  private final List<BigDecimal> numbers;
+
+  public AttributeCondition(String field, Operator operator, List<String> texts) {
+    this.path = new SecondaryIndex(field);
+    this.operator = operator;
+    this.texts = List.copyOf(texts);
+    List<BigDecimal> parsed = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      parsed.add(numberOf(text));
+    }
+    this.numbers = parsed;
+  }
+
+  /**
+   * Parses the condition of a query parameter.
+   *
+   * @param name The name of the parameter, such as <code>createdDate.gt</code>.
+   * @param value The value of the parameter, possibly a comma separated list.
+   * @return The condition.
+   */
+  public static AttributeCondition parse(String name, String value) {
+    int dot = name.lastIndexOf('.');
+    Operator operator = dot < 0 ? null : Operator.ofSuffix(name.substring(dot + 1));
+    String field = operator == null ? name : name.substring(0, dot);
+    List<String> texts = new ArrayList<>();
+    for (String text : value.split(",")) {
+      texts.add(text.trim());
+    }
+    return new AttributeCondition(field, operator == null ? Operator.EQ : operator, texts);
+  }
+
+  public String getField() {
+    return path.getField();
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  /**
+   * Tells whether a payload matches the condition.
+   *
+   * @param payload The payload.
+   * @return true if a value of the field matches any of the query values.
+   */
+  public boolean matches(JsonNode payload) {
+    for (Comparable<?> value : path.valuesOf(payload)) {
+      for (int i = 0; i < texts.size(); i++) {
+        if (matches(value, texts.get(i), numbers.get(i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean matches(Comparable<?> value, String text, BigDecimal number) {
+    int cmp;
+    if (value instanceof String) {
+      cmp = ((String) value).compareTo(text);
+    } else if (value instanceof BigDecimal) {
+      if (number == null) {
+        return false;
+      }
+      cmp = ((BigDecimal) value).compareTo(number);
+    } else {
+      return operator == Operator.EQ && value.toString().equals(text);
+    }
+    switch (operator) {
+      case EQ:
+        return cmp == 0;
+      case GT:
+        return cmp > 0;
+      case GTE:
+        return cmp >= 0;
+      case LT:
+        return cmp < 0;
+      default:
+        return cmp <= 0;
+    }
+  }
+
+  /**
+   * Returns the index lookup that finds every entry this condition may match: the query values as
+   * strings, and as numbers or booleans where they can be read as such. The index holds the values
+   * the condition compares, and orders them by type the way the condition tells types apart, so
+   * the lookup is exact.
+   *
+   * @return The exact lookup.
+   */
+  public IndexLookup toIndexLookup() {
+    IndexLookup lookup = IndexLookup.of(getField());
+    for (int i = 0; i < texts.size(); i++) {
+      String text = texts.get(i);
+      BigDecimal number = numbers.get(i);
+      switch (operator) {
+        case EQ:
+          lookup = lookup.orEqual(text);
+          if (number != null) {
+            lookup = lookup.orEqual(number);
+          }
+          if ("true".equals(text) || "false".equals(text)) {
+            lookup = lookup.orEqual(Boolean.valueOf(text));
+          }
+          break;
+        case GT:
+        case GTE:
+          boolean fromInclusive = operator == Operator.GTE;
+          // Strings sort after all numbers, so the string range is open at the top
+          lookup = lookup.orRange(text, fromInclusive, null, false);
+          if (number != null) {
+            lookup = lookup.orRange(number, fromInclusive, "", false);
+          }
+          break;
+        default:
+          boolean toInclusive = operator == Operator.LTE;
+          // Booleans sort before all numbers, and numbers before all strings
+          lookup = lookup.orRange("", true, text, toInclusive);
+          if (number != null) {
+            lookup = lookup.orRange(Boolean.TRUE, false, number, toInclusive);
+          }
+      }
+    }
+    return lookup.asExact();
+  }
+
+  private static BigDecimal numberOf(String text) {
+    try {
+      return new BigDecimal(text).stripTrailingZeros();
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getField() + "." + operator.name().toLowerCase() + "=" + String.join(",", texts);
+  }
+}
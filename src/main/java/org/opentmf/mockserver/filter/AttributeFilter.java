@@ -0,0 +1,61 @@
+package org.opentmf.mockserver.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The TMF-630 attribute filtering conditions of a list query, one for each query parameter that is
+ * not one of the {@link #RESERVED_PARAMETERS}, nor starts with an underscore. A payload matches if
+ * it matches all of them.
+ *
+ * @author Gokhan Demir
+ */
+public final class AttributeFilter {
+
+  /** The query parameters that control the query, rather than filter on an attribute. */
+  public static final Set<String> RESERVED_PARAMETERS =
+      Set.of("fields", "offset", "limit", "sort", "filter", "depth", "expand", "cursor");
+
+  private final List<AttributeCondition> conditions;
+
+  public AttributeFilter(List<AttributeCondition> conditions) {
+    this.conditions = List.copyOf(conditions);
+  }
+
+  public List<AttributeCondition> getConditions() {
+    return conditions;
+  }
+
+  /**
+   * Tells whether a payload matches all conditions.
+   *
+   * @param payload The payload.
+   * @return true if the payload matches.
+   */
+  public boolean matches(JsonNode payload) {
+    for (AttributeCondition condition : conditions) {
+      if (!condition.matches(payload)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index lookups of the conditions, any of which can narrow the domain down.
+   *
+   * @return The lookups, one per condition.
+   */
+  public List<IndexLookup> toIndexLookups() {
+    List<IndexLookup> lookups = new ArrayList<>(conditions.size());
+    conditions.forEach(condition -> lookups.add(condition.toIndexLookup()));
+    return lookups;
+  }
+
+  @Override
+  public String toString() {
+    return conditions.toString();
+  }
+}
@@ -0,0 +1,144 @@
+package org.opentmf.mockserver.filter;
+
+import static org.opentmf.mockserver.model.TmfConstants.ID;
+import static org.opentmf.mockserver.model.TmfConstants.VERSION;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.opentmf.mockserver.cache.SortKey;
+import org.opentmf.mockserver.model.Id;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+/**
+ * The position of a list query after the last item of a page: the values of the sort fields of
+ * that item, and its id. A query given the cursor resumes strictly after that position in the
+ * order of the sort fields and then the id, so that items created or deleted meanwhile neither
+ * shift nor repeat the following pages.
+ *
+ * <p>Only an unfiltered query sorted on a single field with an ordering index seeks the cursor in
+ * that index, so that its pages cost the same at any depth. Any other query still filters the
+ * whole domain on every page, as its total count needs all matches, and then drops the matches up
+ * to the cursor in a linear pass. It then selects the page with a bounded heap of the page size,
+ * rather than of the offset plus the page size, so deep pages are cheaper than with an offset, but
+ * each page still costs time linear in the size of the domain.
+ *
+ * <p>Clients see the cursor as an opaque, URL safe token, encoding the sort it was made for.
+ *
+ * @author Gokhan Demir
+ */
+public final class Cursor {
+
+  private final String sort;
+  private final List<JsonNode> values;
+  private final Id id;
+
+  private Cursor(String sort, List<JsonNode> values, Id id) {
+    this.sort = sort;
+    this.values = values;
+    this.id = id;
+  }
+
+  /**
+   * Returns the cursor after a payload.
+   *
+   * @param sortSpec The sort of the query.
+   * @param payload The last payload of a page.
+   * @return The cursor.
+   */
+  public static Cursor after(SortSpec sortSpec, JsonNode payload) {
+    return new Cursor(sortSpec.toString(), sortSpec.valuesOf(payload), idOf(payload));
+  }
+
+  /**
+   * Decodes a cursor token.
+   *
+   * @param token The token, as returned by {@link #encode()}.
+   * @return The cursor.
+   * @throws IllegalArgumentException If the token is not a valid cursor.
+   */
+  public static Cursor decode(String token) {
+    JsonNode node;
+    try {
+      node = JacksonUtil.readAsTree(
+          new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + token, e);
+    }
+    if (node == null || !node.isArray() || node.size() < 3
+        || !node.get(0).isTextual() || !node.get(1).isTextual()) {
+      throw new IllegalArgumentException("Invalid cursor: " + token);
+    }
+    Id id = new Id();
+    id.setId(node.get(1).textValue());
+    id.setVersion(node.get(2).isNull() ? null : node.get(2).asText());
+    List<JsonNode> values = new ArrayList<>(node.size() - 3);
+    for (int i = 3; i < node.size(); i++) {
+      values.add(node.get(i));
+    }
+    return new Cursor(node.get(0).textValue(), values, id);
+  }
+
+  /**
+   * Encodes the cursor into an opaque token.
+   *
+   * @return The base64url encoded token.
+   */
+  public String encode() {
+    ArrayNode node = JacksonUtil.createArrayNode();
+    node.add(sort);
+    node.add(id.getId());
+    node.add(id.getVersion());
+    values.forEach(node::add);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(JacksonUtil.writeAsBytes(node));
+  }
+
+  /**
+   * Tells whether the cursor was made for the given sort, the only one it can resume.
+   *
+   * @param sortSpec The sort of the query.
+   * @return true if the cursor can resume the query.
+   */
+  public boolean isFor(SortSpec sortSpec) {
+    return sort.equals(sortSpec.toString()) && values.size() == sortSpec.getCriteria().size();
+  }
+
+  /**
+   * Returns the sort keys of the last item, one per sort field.
+   *
+   * @return The keys.
+   */
+  public SortKey[] getKeys() {
+    SortKey[] keys = new SortKey[values.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = SortKey.of(values.get(i));
+    }
+    return keys;
+  }
+
+  public Id getId() {
+    return id;
+  }
+
+  /**
+   * Returns the id of a payload, as the domain is keyed on.
+   *
+   * @param payload The payload.
+   * @return The id and the version, if any.
+   */
+  static Id idOf(JsonNode payload) {
+    Id id = new Id();
+    id.setId(payload.path(ID).asText());
+    JsonNode version = payload.get(VERSION);
+    id.setVersion(version == null || version.isNull() ? null : version.asText());
+    return id;
+  }
+
+  static JsonNode valueOrNull(JsonNode value) {
+    return value.isMissingNode() ? NullNode.getInstance() : value;
+  }
+}
@@ -0,0 +1,115 @@
+package org.opentmf.mockserver.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The plan of a list query filter: the compiled filter itself, and the secondary index lookup, if
+ * any, that finds the entries the filter may match. A plan holds nothing specific to a domain, so
+ * it can be cached by the text of the filter and shared between requests.
+ *
+ * @author Gokhan Demir
+ */
+public final class FilterPlan {
+
+  // A filter comparing a single field with a literal, such as $[?(@.state == 'completed')]
+  private static final Pattern SINGLE_COMPARISON = Pattern.compile(
+      "^\\$\\[\\?\\(\\s*@\\.([\\w.]+)\\s*(==|<=|>=|<|>)\\s*"
+          + "('([^']*)'|\"([^\"]*)\"|-?\\d+(\\.\\d+)?|true|false)\\s*\\)]$");
+  private static final Pattern NUMBER = Pattern.compile("^\\s*[-+]?[\\d.]+([eE][-+]?\\d+)?\\s*$");
+
+  private final JsonPathFilter filter;
+  // The lookup of a single comparison filter, or null if there is none
+  private final IndexLookup lookup;
+
+  private FilterPlan(JsonPathFilter filter, IndexLookup lookup) {
+    this.filter = filter;
+    this.lookup = lookup;
+  }
+
+  /**
+   * Compiles the plan of a filter.
+   *
+   * @param filter The JsonPath filter.
+   * @return The plan.
+   * @throws com.jayway.jsonpath.InvalidPathException If the filter is not a valid JsonPath.
+   */
+  public static FilterPlan compile(String filter) {
+    JsonPathFilter compiled = JsonPathFilter.compile(filter);
+    Matcher matcher = SINGLE_COMPARISON.matcher(filter.trim());
+    if (!matcher.matches()) {
+      return new FilterPlan(compiled, null);
+    }
+    Comparable<?> literal = literalOf(matcher);
+    IndexLookup lookup = IndexLookup.of(matcher.group(1));
+    switch (matcher.group(2)) {
+      case "==":
+        // JsonPath finds numbers and strings equal when their texts are, which an index cannot
+        if (literal instanceof BigDecimal
+            || literal instanceof String && NUMBER.matcher((String) literal).matches()) {
+          return new FilterPlan(compiled, null);
+        }
+        return new FilterPlan(compiled, lookup.orEqual(literal));
+      case "<":
+        return new FilterPlan(compiled, lookup.orRange(null, false, literal, false));
+      case "<=":
+        return new FilterPlan(compiled, lookup.orRange(null, false, literal, true));
+      case ">":
+        return new FilterPlan(compiled, lookup.orRange(literal, false, null, false));
+      default:
+        return new FilterPlan(compiled, lookup.orRange(literal, true, null, false));
+    }
+  }
+
+  /**
+   * Returns the index lookup that finds every entry the filter may match, if the filter compares a
+   * single field with a literal.
+   *
+   * @return The lookup, or null if the filter has none.
+   */
+  public IndexLookup getIndexLookup() {
+    return lookup;
+  }
+
+  /**
+   * Tells whether the filter decides on each payload on its own, in which case it can be applied to
+   * any subset of the domain, in any order.
+   *
+   * @return true if the filter is a predicate on each payload.
+   */
+  public boolean isPerPayload() {
+    return filter.isPerPayload();
+  }
+
+  /**
+   * Applies the filter to the candidate payloads.
+   *
+   * @param payloads The payloads of the candidate entries.
+   * @return The payloads matched by the filter.
+   */
+  public List<JsonNode> apply(List<JsonNode> payloads) {
+    return filter.apply(payloads);
+  }
+
+  private static Comparable<?> literalOf(Matcher matcher) {
+    if (matcher.group(4) != null) {
+      return matcher.group(4);
+    }
+    if (matcher.group(5) != null) {
+      return matcher.group(5);
+    }
+    String literal = matcher.group(3);
+    if ("true".equals(literal) || "false".equals(literal)) {
+      return Boolean.valueOf(literal);
+    }
+    return new BigDecimal(literal).stripTrailingZeros();
+  }
+
+  @Override
+  public String toString() {
+    return filter.toString();
+  }
+}
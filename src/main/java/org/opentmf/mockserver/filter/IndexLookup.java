@@ -0,0 +1,144 @@
+package org.opentmf.mockserver.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.model.Id;
+
+/**
+ * A lookup of a secondary index for the entries whose field has a value in any of a set of ranges.
+ * The entries found must be a superset of the entries the condition behind the lookup matches, so
+ * that evaluating the condition on them gives the same result as on the whole domain. An exact
+ * lookup finds the very entries its condition matches, so they can be counted without evaluating
+ * the condition.
+ *
+ * @author Gokhan Demir
+ */
+public final class IndexLookup {
+
+  private static final class Range {
+    private final Comparable<?> from;
+    private final boolean fromInclusive;
+    private final Comparable<?> to;
+    private final boolean toInclusive;
+
+    private Range(Comparable<?> from, boolean fromInclusive, Comparable<?> to,
+        boolean toInclusive) {
+      this.from = from;
+      this.fromInclusive = fromInclusive;
+      this.to = to;
+      this.toInclusive = toInclusive;
+    }
+  }
+
+  private final String field;
+  private final List<Range> ranges;
+  private final boolean exact;
+
+  private IndexLookup(String field, List<Range> ranges, boolean exact) {
+    this.field = field;
+    this.ranges = ranges;
+    this.exact = exact;
+  }
+
+  /**
+   * Starts a lookup of the given field, finding nothing until ranges are added.
+   *
+   * @param field The dotted path of the field.
+   * @return The empty lookup.
+   */
+  public static IndexLookup of(String field) {
+    return new IndexLookup(field, Collections.emptyList(), false);
+  }
+
+  /**
+   * Returns a lookup that also finds the entries with the given value.
+   *
+   * @param value The indexable value.
+   * @return The extended lookup.
+   */
+  public IndexLookup orEqual(Comparable<?> value) {
+    return orRange(value, true, value, true);
+  }
+
+  /**
+   * Returns a lookup that also finds the entries with a value within the given range. A null bound
+   * leaves that side of the range open.
+   *
+   * @param from The lower bound, or null.
+   * @param fromInclusive Whether the lower bound is part of the range.
+   * @param to The upper bound, or null.
+   * @param toInclusive Whether the upper bound is part of the range.
+   * @return The extended lookup.
+   */
+  public IndexLookup orRange(Comparable<?> from, boolean fromInclusive, Comparable<?> to,
+      boolean toInclusive) {
+    List<Range> extended = new ArrayList<>(ranges);
+    extended.add(new Range(from, fromInclusive, to, toInclusive));
+    return new IndexLookup(field, extended, exact);
+  }
+
+  /**
+   * Returns this lookup, marked as finding exactly the entries its condition matches.
+   *
+   * @return The exact lookup.
+   */
+  public IndexLookup asExact() {
+    return new IndexLookup(field, ranges, true);
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public boolean isExact() {
+    return exact;
+  }
+
+  /**
+   * Estimates the number of entries the lookup finds, in O(log n) per range.
+   *
+   * @param snapshot The snapshot of the domain.
+   * @return An upper bound of the number of entries found, or -1 if the field is not indexed.
+   */
+  public long estimate(DomainSnapshot snapshot) {
+    if (!snapshot.isIndexed(field)) {
+      return -1;
+    }
+    long count = 0;
+    for (Range range : ranges) {
+      count += snapshot.countRange(field, range.from, range.fromInclusive, range.to,
+          range.toInclusive);
+    }
+    return count;
+  }
+
+  /**
+   * Finds the entries of the lookup.
+   *
+   * @param snapshot The snapshot of the domain, in which the field must be indexed.
+   * @return The entries found, ordered by id.
+   */
+  public SortedMap<Id, CacheEntry> find(DomainSnapshot snapshot) {
+    if (ranges.size() == 1) {
+      Range range = ranges.get(0);
+      return snapshot.findRange(field, range.from, range.fromInclusive, range.to,
+          range.toInclusive);
+    }
+    SortedMap<Id, CacheEntry> result = new TreeMap<>();
+    for (Range range : ranges) {
+      result.putAll(snapshot.findRange(field, range.from, range.fromInclusive, range.to,
+          range.toInclusive));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return field + " (" + ranges.size() + " ranges)";
+  }
+}
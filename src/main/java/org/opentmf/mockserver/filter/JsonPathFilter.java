@@ -0,0 +1,115 @@
+package org.opentmf.mockserver.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.opentmf.mockserver.util.JacksonUtil;
+import org.opentmf.mockserver.util.ParallelUtil;
+
+/**
+ * A JsonPath filter, compiled once and evaluated directly on the cached Jackson trees, without
+ * serializing them.
+ *
+ * <p>A filter of the form <code>$[?(predicate)]</code> whose predicate does not refer to the root
+ * document is evaluated on each payload on its own, and keeps the payloads it accepts. The logical
+ * operators of the predicate short-circuit, so most payloads are rejected after their first
+ * comparison. Any other filter, such as a slice, is evaluated once on an array of all payloads.
+ * Either way, the payloads returned are the very instances given, not copies of them.
+ *
+ * @author Gokhan Demir
+ */
+public final class JsonPathFilter {
+
+  private static final Configuration CONFIGURATION = Configuration.builder()
+      .jsonProvider(new JacksonJsonNodeJsonProvider())
+      .mappingProvider(new JacksonMappingProvider())
+      .build();
+
+  // A filter applying a single predicate to each element of the root array
+  private static final Pattern PREDICATE = Pattern.compile("^\\$\\[\\?\\((.*)\\)]$", Pattern.DOTALL);
+
+  private final JsonPath path;
+  private final boolean perPayload;
+
+  private JsonPathFilter(JsonPath path, boolean perPayload) {
+    this.path = path;
+    this.perPayload = perPayload;
+  }
+
+  /**
+   * Compiles a JsonPath filter.
+   *
+   * @param filter The filter expression, such as <code>$[?(@.state == 'completed')]</code>.
+   * @return The compiled filter.
+   * @throws com.jayway.jsonpath.InvalidPathException If the filter is not a valid JsonPath.
+   */
+  public static JsonPathFilter compile(String filter) {
+    String trimmed = filter.trim();
+    Matcher matcher = PREDICATE.matcher(trimmed);
+    // Within a single payload, $ would be the payload instead of the array of all payloads
+    boolean perPayload = matcher.matches() && matcher.group(1).indexOf('$') < 0;
+    return new JsonPathFilter(JsonPath.compile(trimmed), perPayload);
+  }
+
+  /**
+   * Tells whether the filter decides on each payload on its own.
+   *
+   * @return true if {@link #matches(JsonNode)} can be used.
+   */
+  public boolean isPerPayload() {
+    return perPayload;
+  }
+
+  /**
+   * Tells whether the predicate of the filter accepts a payload.
+   *
+   * @param payload The payload.
+   * @return true if the payload is accepted.
+   * @throws IllegalStateException If the filter does not decide on each payload on its own.
+   */
+  public boolean matches(JsonNode payload) {
+    if (!perPayload) {
+      throw new IllegalStateException("The filter " + path.getPath() + " is not a predicate");
+    }
+    JsonNode result = path.read(payload, CONFIGURATION);
+    return result != null && result.size() > 0;
+  }
+
+  /**
+   * Applies the filter to the payloads of a domain.
+   *
+   * @param payloads The payloads.
+   * @return The payloads accepted by the filter, in their given order, or whatever the filter
+   *     selects out of the array of payloads if it is not a predicate.
+   */
+  public List<JsonNode> apply(List<JsonNode> payloads) {
+    if (perPayload) {
+      return ParallelUtil.filter(payloads, this::matches);
+    }
+    ArrayNode array = JacksonUtil.createArrayNode();
+    payloads.forEach(array::add);
+    JsonNode result = path.read(array, CONFIGURATION);
+    if (result == null) {
+      return Collections.emptyList();
+    }
+    if (!result.isArray()) {
+      return Collections.singletonList(result);
+    }
+    List<JsonNode> selected = new ArrayList<>(result.size());
+    result.forEach(selected::add);
+    return selected;
+  }
+
+  @Override
+  public String toString() {
+    return path.getPath();
+  }
+}
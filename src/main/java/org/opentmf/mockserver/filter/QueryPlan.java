@@ -0,0 +1,94 @@
+package org.opentmf.mockserver.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+
+/**
+ * The way a list query reads the entries of a domain, as chosen by the {@link QueryPlanner}.
+ *
+ * @author Gokhan Demir
+ */
+public final class QueryPlan {
+
+  /** The access paths to the entries of a domain. */
+  public enum Kind {
+    /** Reads all entries, ordered by id. */
+    FULL_SCAN,
+    /** Reads the entries found by a secondary index lookup, ordered by id. */
+    INDEX_LOOKUP,
+    /** Reads all entries in the order of the sort field, so that they need no sorting. */
+    ORDERED_SCAN
+  }
+
+  private final Kind kind;
+  private final IndexLookup lookup;
+  private final String orderField;
+  private final boolean descending;
+
+  QueryPlan(Kind kind, IndexLookup lookup, String orderField, boolean descending) {
+    this.kind = kind;
+    this.lookup = lookup;
+    this.orderField = orderField;
+    this.descending = descending;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Tells whether the candidates come in the order of the sort criteria already.
+   *
+   * @return true for an ordered scan.
+   */
+  public boolean isOrdered() {
+    return kind == Kind.ORDERED_SCAN;
+  }
+
+  /**
+   * Reads the candidate entries of the query, a superset of the entries it matches.
+   *
+   * @param snapshot The snapshot of the domain the plan was made for.
+   * @return The candidate entries.
+   */
+  public Collection<CacheEntry> findCandidates(DomainSnapshot snapshot) {
+    switch (kind) {
+      case INDEX_LOOKUP:
+        return lookup.find(snapshot).values();
+      case ORDERED_SCAN:
+        List<CacheEntry> ordered = new ArrayList<>(snapshot.getEntries().size());
+        Iterator<CacheEntry> it = snapshot.ordered(orderField, descending);
+        it.forEachRemaining(ordered::add);
+        return ordered;
+      default:
+        return snapshot.getEntries().values();
+    }
+  }
+
+  /**
+   * Counts the matches of a query whose only condition is the one behind the index lookup of the
+   * plan, from the ids the lookup finds, without reading the payloads.
+   *
+   * @param snapshot The snapshot of the domain the plan was made for.
+   * @return The number of matches, or -1 if the plan is no lookup, or its lookup is not exact.
+   */
+  public long countExact(DomainSnapshot snapshot) {
+    return kind == Kind.INDEX_LOOKUP && lookup.isExact() ? lookup.find(snapshot).size() : -1;
+  }
+
+  @Override
+  public String toString() {
+    switch (kind) {
+      case INDEX_LOOKUP:
+        return kind + " " + lookup;
+      case ORDERED_SCAN:
+        return kind + " " + (descending ? "-" : "") + orderField;
+      default:
+        return kind.toString();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.opentmf.mockserver.filter;
+
+import java.util.List;
+import java.util.Set;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.cache.IndexConfig;
+import org.opentmf.mockserver.filter.QueryPlan.Kind;
+
+/**
+ * Chooses how a filtered list query reads the entries of a domain. The cost of each access path is
+ * estimated from the domain snapshot itself, since the index range views know their sizes:
+ *
+ * <ul>
+ *   <li>An index lookup costs in proportion to the entries it finds, but collecting them by id
+ *       costs more per entry than a scan, so it is only chosen when it finds far fewer entries.
+ *       Among the lookups, the most selective one wins.
+ *   <li>An ordered scan reads every entry, like a full scan, but in the order of a single sort
+ *       field that every domain is indexed on, so the matches need no sorting.
+ *   <li>Otherwise, the query scans the whole domain.
+ * </ul>
+ *
+ * @author Gokhan Demir
+ */
+public final class QueryPlanner {
+
+  // How much more an entry found by a lookup costs than an entry read by a scan
+  static final int LOOKUP_COST_FACTOR = 4;
+
+  private QueryPlanner() {
+  }
+
+  /**
+   * Plans a list query.
+   *
+   * @param snapshot The snapshot of the domain.
+   * @param lookups The index lookups of the conditions of the query, any of which may be used.
+   * @param sort The sort criteria.
+   * @param orderIndependent Whether the filters of the query decide on each entry on its own, so
+   *     that they can be evaluated on any subset of the domain, in any order.
+   * @return The plan.
+   */
+  public static QueryPlan plan(DomainSnapshot snapshot, List<IndexLookup> lookups,
+      Set<String> sort, boolean orderIndependent) {
+    if (!orderIndependent) {
+      return new QueryPlan(Kind.FULL_SCAN, null, null, false);
+    }
+    long size = snapshot.getEntries().size();
+    IndexLookup best = null;
+    long bestEstimate = Long.MAX_VALUE;
+    for (IndexLookup lookup : lookups) {
+      long estimate = lookup.estimate(snapshot);
+      if (estimate >= 0 && estimate < bestEstimate) {
+        best = lookup;
+        bestEstimate = estimate;
+      }
+    }
+    if (best != null && bestEstimate * LOOKUP_COST_FACTOR < size) {
+      return new QueryPlan(Kind.INDEX_LOOKUP, best, null, false);
+    }
+    if (sort.size() == 1) {
+      String sortField = sort.iterator().next();
+      boolean descending = sortField.startsWith("-");
+      String field = descending ? sortField.substring(1) : sortField;
+      if (IndexConfig.ORDERING_FIELDS.contains(field)
+          && snapshot.ordered(field, descending) != null) {
+        return new QueryPlan(Kind.ORDERED_SCAN, null, field, descending);
+      }
+    }
+    return new QueryPlan(Kind.FULL_SCAN, null, null, false);
+  }
+}
@@ -0,0 +1,146 @@
+package org.opentmf.mockserver.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.opentmf.mockserver.cache.SortKey;
+import org.opentmf.mockserver.util.ParallelUtil;
+import org.opentmf.mockserver.util.SortUtil;
+
+/**
+ * The parsed sort criteria of a list query, such as <code>-createdDate,relatedParty.name</code>:
+ * dotted field paths in the order they are given, each descending if prefixed with a minus sign.
+ *
+ * <p>Sorting decodes the fields of each payload once into {@link SortKey}s, and then compares only
+ * the keys. Payloads missing a field come last for that field, in either direction.
+ *
+ * @author Gokhan Demir
+ */
+public final class SortSpec {
+
+  private final Set<String> criteria;
+  private final String[][] paths;
+  private final boolean[] descending;
+
+  private SortSpec(List<String> criteria) {
+    this.criteria = Collections.unmodifiableSet(new LinkedHashSet<>(criteria));
+    this.paths = new String[this.criteria.size()][];
+    this.descending = new boolean[this.criteria.size()];
+    int i = 0;
+    for (String criterion : this.criteria) {
+      descending[i] = criterion.startsWith("-");
+      paths[i] = (descending[i] ? criterion.substring(1) : criterion).split("\\.");
+      i++;
+    }
+  }
+
+  /**
+   * Parses the sort criteria.
+   *
+   * @param sort The comma separated criteria.
+   * @return The parsed criteria.
+   */
+  public static SortSpec parse(String sort) {
+    List<String> criteria = new ArrayList<>();
+    for (String criterion : sort.split(",")) {
+      if (!criterion.trim().isEmpty()) {
+        criteria.add(criterion.trim());
+      }
+    }
+    return new SortSpec(criteria);
+  }
+
+  /**
+   * Returns the criteria as given, without duplicates, in their order.
+   *
+   * @return The unmodifiable criteria.
+   */
+  public Set<String> getCriteria() {
+    return criteria;
+  }
+
+  /**
+   * Returns a page of the payloads in sorted order, payloads that compare equal keeping their
+   * relative order.
+   *
+   * @param payloads The payloads.
+   * @param offset The number of sorted payloads to skip.
+   * @param limit The maximum number of payloads to return.
+   * @return The payloads of the page.
+   */
+  public List<JsonNode> sortedPage(List<JsonNode> payloads, int offset, int limit) {
+    if (paths.length == 0) {
+      return SortUtil.sortedPage(payloads, (a, b) -> 0, offset, limit);
+    }
+    List<Keyed> keyed = ParallelUtil.map(payloads, payload -> new Keyed(payload, keysOf(payload)));
+    List<Keyed> page = SortUtil.sortedPage(keyed, (a, b) -> compare(a.keys, b.keys), offset, limit);
+    List<JsonNode> result = new ArrayList<>(page.size());
+    page.forEach(k -> result.add(k.payload));
+    return result;
+  }
+
+  /**
+   * Returns the payloads that come strictly after a cursor in the sort order, ties broken by id,
+   * keeping their relative order.
+   *
+   * @param payloads The payloads.
+   * @param cursor The cursor, made for this sort.
+   * @return The payloads after the cursor.
+   */
+  public List<JsonNode> after(List<JsonNode> payloads, Cursor cursor) {
+    SortKey[] cursorKeys = cursor.getKeys();
+    return ParallelUtil.filter(payloads, payload -> {
+      int cmp = compare(keysOf(payload), cursorKeys);
+      return cmp > 0 || cmp == 0 && Cursor.idOf(payload).compareTo(cursor.getId()) > 0;
+    });
+  }
+
+  List<JsonNode> valuesOf(JsonNode payload) {
+    List<JsonNode> values = new ArrayList<>(paths.length);
+    for (String[] path : paths) {
+      values.add(Cursor.valueOrNull(SortKey.resolve(payload, path)));
+    }
+    return values;
+  }
+
+  SortKey[] keysOf(JsonNode payload) {
+    SortKey[] keys = new SortKey[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      keys[i] = SortKey.of(payload, paths[i]);
+    }
+    return keys;
+  }
+
+  int compare(SortKey[] a, SortKey[] b) {
+    for (int i = 0; i < a.length; i++) {
+      int cmp;
+      if (a[i].isMissing() || b[i].isMissing()) {
+        cmp = Boolean.compare(a[i].isMissing(), b[i].isMissing());
+      } else {
+        cmp = descending[i] ? b[i].compareTo(a[i]) : a[i].compareTo(b[i]);
+      }
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  private static final class Keyed {
+    private final JsonNode payload;
+    private final SortKey[] keys;
+
+    private Keyed(JsonNode payload, SortKey[] keys) {
+      this.payload = payload;
+      this.keys = keys;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.join(",", criteria);
+  }
+}
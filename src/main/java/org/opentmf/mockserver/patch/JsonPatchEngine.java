@@ -0,0 +1,338 @@
+package org.opentmf.mockserver.patch;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+/**
+ * Applies JSON Patch documents, as of RFC 6902, to the tree they patch. Only the nodes an operation
+ * touches are visited, so the cost of a patch is proportional to the patch rather than to the
+ * document.
+ *
+ * <p>The tree is changed in place, unless it is shared with readers that must not see it change,
+ * in which case the patch is copy-on-write: before a container is changed, it is copied shallowly,
+ * along with every container on the path down to it from the root, each at most once per patch.
+ * The containers the patch leaves alone are shared with the original tree, which stays as it was.
+ *
+ * <p>A patch is atomic: each change is recorded in an undo log as it is made, and if an operation
+ * fails, the changes made so far are undone in reverse order before the error is reported, leaving
+ * the patched tree as it was, field order included.
+ *
+ * @author Gokhan Demir
+ */
+public final class JsonPatchEngine {
+
+  // Numbers are equal if their values are, whatever their representation, as RFC 6902 requires
+  private static final Comparator<JsonNode> VALUE_COMPARATOR = (a, b) ->
+      a.isNumber() && b.isNumber()
+          ? a.decimalValue().compareTo(b.decimalValue())
+          : a.equals(b) ? 0 : 1;
+
+  private final Deque<Runnable> undoLog = new ArrayDeque<>();
+  // The containers copied by this patch, which are private to it, or null to patch in place
+  private final Set<JsonNode> copies;
+  private JsonNode root;
+
+  private JsonPatchEngine(JsonNode root, boolean copyOnWrite) {
+    this.root = root;
+    this.copies = copyOnWrite ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+  }
+
+  /**
+   * Applies a JSON Patch to a document.
+   *
+   * @param document The document to patch.
+   * @param patch The JSON Patch, an array of operations.
+   * @param copyOnWrite true to leave the document unchanged and return a patched copy that shares
+   *     the untouched containers with it, false to patch the document in place.
+   * @return The patched document, which is the given document itself if patched in place, unless
+   *     an operation replaces the whole of it.
+   * @throws IllegalArgumentException If the patch is malformed, or one of its operations fails, in
+   *     which case the document is left unchanged.
+   */
+  public static JsonNode apply(JsonNode document, JsonNode patch, boolean copyOnWrite) {
+    List<Operation> operations = parse(patch);
+    JsonPatchEngine engine = new JsonPatchEngine(document, copyOnWrite);
+    try {
+      for (Operation operation : operations) {
+        engine.perform(operation);
+      }
+    } catch (RuntimeException e) {
+      engine.rollback();
+      throw e;
+    }
+    return engine.root;
+  }
+
+  // Validates every operation before any change is made, so that malformed patches need no undo
+  private static List<Operation> parse(JsonNode patch) {
+    if (patch == null || !patch.isArray()) {
+      throw new IllegalArgumentException("A JSON Patch must be an array of operations");
+    }
+    List<Operation> operations = new ArrayList<>(patch.size());
+    for (JsonNode node : patch) {
+      if (!node.isObject()) {
+        throw new IllegalArgumentException("A JSON Patch operation must be an object: " + node);
+      }
+      String op = textOf(node, "op");
+      JsonPointer path = pointerOf(node, "path");
+      JsonPointer from = null;
+      JsonNode value = null;
+      switch (op) {
+        case "add":
+        case "replace":
+        case "test":
+          value = node.get("value");
+          if (value == null) {
+            throw new IllegalArgumentException("Missing value in operation: " + node);
+          }
+          break;
+        case "move":
+        case "copy":
+          from = pointerOf(node, "from");
+          break;
+        case "remove":
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown operation: " + op);
+      }
+      operations.add(new Operation(op, path, from, value));
+    }
+    return operations;
+  }
+
+  private static String textOf(JsonNode node, String member) {
+    JsonNode text = node.get(member);
+    if (text == null || !text.isTextual()) {
+      throw new IllegalArgumentException("Missing " + member + " in operation: " + node);
+    }
+    return text.textValue();
+  }
+
+  private static JsonPointer pointerOf(JsonNode node, String member) {
+    String text = textOf(node, member);
+    try {
+      return JsonPointer.compile(text);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid JSON Pointer: " + text, e);
+    }
+  }
+
+  private void perform(Operation operation) {
+    JsonPointer path = operation.path;
+    switch (operation.op) {
+      case "add":
+        add(path, operation.value);
+        break;
+      case "remove":
+        remove(path);
+        break;
+      case "replace":
+        replace(path, operation.value);
+        break;
+      case "move":
+        if (!operation.from.equals(path)) {
+          if (path.toString().startsWith(operation.from + "/")) {
+            throw new IllegalArgumentException(
+                "Cannot move " + operation.from + " into itself: " + path);
+          }
+          add(path, remove(operation.from));
+        }
+        break;
+      case "copy":
+        add(path, get(operation.from).deepCopy());
+        break;
+      default:
+        JsonNode actual = get(path);
+        if (!actual.equals(VALUE_COMPARATOR, operation.value)) {
+          throw new IllegalArgumentException("Test failed at " + path + ": expected "
+              + operation.value + ", found " + actual);
+        }
+    }
+  }
+
+  private void rollback() {
+    while (!undoLog.isEmpty()) {
+      undoLog.pop().run();
+    }
+  }
+
+  private JsonNode get(JsonPointer path) {
+    JsonNode node = root.at(path);
+    if (node.isMissingNode()) {
+      throw new IllegalArgumentException("No such path: " + path);
+    }
+    return node;
+  }
+
+  // The object or array holding the member a path points at, ready to be changed
+  private JsonNode parentOf(JsonPointer path) {
+    if (copies == null) {
+      JsonNode parent = get(path.head());
+      if (!parent.isContainerNode()) {
+        throw new IllegalArgumentException("No such path: " + path);
+      }
+      return parent;
+    }
+    // Copy the containers down the path that this patch has not copied yet
+    root = writable(root);
+    JsonNode parent = root;
+    for (JsonPointer rest = path.head(); !rest.matches(); rest = rest.tail()) {
+      JsonNode child = parent.isObject()
+          ? parent.get(rest.getMatchingProperty())
+          : parent.get(rest.getMatchingIndex());
+      if (child == null || !child.isContainerNode()) {
+        throw new IllegalArgumentException("No such path: " + path);
+      }
+      JsonNode copy = writable(child);
+      if (copy != child) {
+        if (parent.isObject()) {
+          ((ObjectNode) parent).replace(rest.getMatchingProperty(), copy);
+        } else {
+          ((ArrayNode) parent).set(rest.getMatchingIndex(), copy);
+        }
+      }
+      parent = copy;
+    }
+    return parent;
+  }
+
+  // The container itself if this patch has copied it already, or else a shallow copy of it
+  private JsonNode writable(JsonNode container) {
+    if (!container.isContainerNode() || copies.contains(container)) {
+      return container;
+    }
+    JsonNode copy = container.isObject()
+        ? JacksonUtil.createObjectNode().setAll((ObjectNode) container)
+        : JacksonUtil.createArrayNode().addAll((ArrayNode) container);
+    copies.add(copy);
+    return copy;
+  }
+
+  private void add(JsonPointer path, JsonNode value) {
+    if (path.matches()) {
+      JsonNode previous = root;
+      root = value;
+      undoLog.push(() -> root = previous);
+      return;
+    }
+    JsonNode parent = parentOf(path);
+    String name = path.last().getMatchingProperty();
+    if (parent.isObject()) {
+      ObjectNode object = (ObjectNode) parent;
+      JsonNode previous = object.replace(name, value);
+      undoLog.push(previous == null
+          ? () -> object.remove(name)
+          : () -> object.replace(name, previous));
+    } else {
+      ArrayNode array = (ArrayNode) parent;
+      int index = "-".equals(name) ? array.size() : indexOf(path, name, array.size() + 1);
+      array.insert(index, value);
+      undoLog.push(() -> array.remove(index));
+    }
+  }
+
+  // Replaces a value where it is, so that a field keeps its position
+  private void replace(JsonPointer path, JsonNode value) {
+    if (path.matches()) {
+      add(path, value);
+      return;
+    }
+    JsonNode parent = parentOf(path);
+    String name = path.last().getMatchingProperty();
+    if (parent.isObject()) {
+      ObjectNode object = (ObjectNode) parent;
+      if (!object.has(name)) {
+        throw new IllegalArgumentException("No such path: " + path);
+      }
+      JsonNode previous = object.replace(name, value);
+      undoLog.push(() -> object.replace(name, previous));
+    } else {
+      ArrayNode array = (ArrayNode) parent;
+      int index = indexOf(path, name, array.size());
+      JsonNode previous = array.set(index, value);
+      undoLog.push(() -> array.set(index, previous));
+    }
+  }
+
+  private JsonNode remove(JsonPointer path) {
+    if (path.matches()) {
+      throw new IllegalArgumentException("Cannot remove the whole document");
+    }
+    JsonNode parent = parentOf(path);
+    String name = path.last().getMatchingProperty();
+    if (parent.isObject()) {
+      ObjectNode object = (ObjectNode) parent;
+      int position = positionOf(object, name);
+      if (position < 0) {
+        throw new IllegalArgumentException("No such path: " + path);
+      }
+      JsonNode removed = object.remove(name);
+      undoLog.push(() -> reinsert(object, position, name, removed));
+      return removed;
+    }
+    ArrayNode array = (ArrayNode) parent;
+    int index = indexOf(path, name, array.size());
+    JsonNode removed = array.remove(index);
+    undoLog.push(() -> array.insert(index, removed));
+    return removed;
+  }
+
+  // The index of an array element, which must be below the bound
+  private static int indexOf(JsonPointer path, String name, int bound) {
+    int index = -1;
+    if (name.matches("0|[1-9]\\d{0,8}")) {
+      index = Integer.parseInt(name);
+    }
+    if (index < 0 || index >= bound) {
+      throw new IllegalArgumentException("No such array index: " + path);
+    }
+    return index;
+  }
+
+  private static int positionOf(ObjectNode object, String name) {
+    int position = 0;
+    for (Iterator<String> it = object.fieldNames(); it.hasNext(); position++) {
+      if (it.next().equals(name)) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  // Puts a removed field back at its position, which only a rollback needs
+  private static void reinsert(ObjectNode object, int position, String name, JsonNode value) {
+    List<Map.Entry<String, JsonNode>> fields = new ArrayList<>(object.size() + 1);
+    object.fields().forEachRemaining(
+        field -> fields.add(Map.entry(field.getKey(), field.getValue())));
+    fields.add(position, Map.entry(name, value));
+    object.removeAll();
+    fields.forEach(field -> object.set(field.getKey(), field.getValue()));
+  }
+
+  private static final class Operation {
+    private final String op;
+    private final JsonPointer path;
+    private final JsonPointer from;
+    private final JsonNode value;
+
+    private Operation(String op, JsonPointer path, JsonPointer from, JsonNode value) {
+      this.op = op;
+      this.path = path;
+      this.from = from;
+      this.value = value;
+    }
+  }
+}
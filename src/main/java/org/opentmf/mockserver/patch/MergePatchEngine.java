@@ -0,0 +1,89 @@
+package org.opentmf.mockserver.patch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+/**
+ * Applies JSON Merge Patch documents, as of RFC 7386, reading the patch token by token straight
+ * from its bytes, and merging each member into the target as it is read. Neither a tree of the
+ * whole patch nor a copy of the whole target is built; only the values the patch sets are read
+ * into trees.
+ *
+ * <p>The target is changed in place, unless it is shared with readers that must not see it change,
+ * in which case the merge is copy-on-write: each object the patch touches is copied shallowly, down
+ * from the root, and the objects it leaves alone are shared with the target. A patch that turns out
+ * malformed midway then leaves the target as it was.
+ *
+ * @author Gokhan Demir
+ */
+public final class MergePatchEngine {
+
+  private final JsonParser parser;
+  private final boolean copyOnWrite;
+
+  private MergePatchEngine(JsonParser parser, boolean copyOnWrite) {
+    this.parser = parser;
+    this.copyOnWrite = copyOnWrite;
+  }
+
+  /**
+   * Applies a JSON Merge Patch to a document.
+   *
+   * @param document The document to patch.
+   * @param patch The UTF-8 encoded JSON Merge Patch.
+   * @param copyOnWrite true to leave the document unchanged and return a patched copy that shares
+   *     the untouched objects with it, false to patch the document in place.
+   * @return The patched document, which is the given document itself if patched in place, unless
+   *     the patch replaces the whole of it.
+   * @throws IllegalArgumentException If the patch is not valid JSON, in which case a document
+   *     patched in place may have been changed partly.
+   */
+  public static JsonNode apply(JsonNode document, byte[] patch, boolean copyOnWrite) {
+    try (JsonParser parser = JacksonUtil.createParser(patch)) {
+      MergePatchEngine engine = new MergePatchEngine(parser, copyOnWrite);
+      JsonToken token = parser.nextToken();
+      if (token == null) {
+        throw new IllegalArgumentException("The merge patch is empty");
+      }
+      JsonNode patched = token == JsonToken.START_OBJECT
+          ? engine.merge(document)
+          : parser.readValueAsTree();
+      if (parser.nextToken() != null) {
+        throw new IllegalArgumentException("Unexpected content after the merge patch");
+      }
+      return patched;
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+  }
+
+  // Merges the members of the patch object the parser is at into the target, up to its end
+  private ObjectNode merge(JsonNode target) throws IOException {
+    ObjectNode object;
+    if (!target.isObject()) {
+      // A member that is not an object is replaced, as if the patch were merged into {}
+      object = JacksonUtil.createObjectNode();
+    } else if (copyOnWrite) {
+      object = JacksonUtil.createObjectNode();
+      object.setAll((ObjectNode) target);
+    } else {
+      object = (ObjectNode) target;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.VALUE_NULL) {
+        object.remove(name);
+      } else if (token == JsonToken.START_OBJECT) {
+        object.replace(name, merge(object.path(name)));
+      } else {
+        object.replace(name, parser.readValueAsTree());
+      }
+    }
+    return object;
+  }
+}
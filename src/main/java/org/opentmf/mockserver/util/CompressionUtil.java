@@ -0,0 +1,228 @@
+package org.opentmf.mockserver.util;
+
+import static org.opentmf.mockserver.util.Constants.COMPRESSION_MIN_BYTES;
+import static org.opentmf.mockserver.util.Constants.ONE_KILOBYTE;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.mockserver.model.BinaryBody;
+import org.mockserver.model.Body;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+
+/**
+ * Utility class for compressing response bodies with the content coding the client prefers, as
+ * told by its <code>Accept-Encoding</code> header.
+ *
+ * <p>Only successful responses with a body of at least <code>COMPRESSION_MIN_BYTES</code> bytes
+ * (1024 by default) are compressed, below which the saving does not pay for the work; a negative
+ * value disables compression. Compressors hold native memory that is costly to set up, so they
+ * are reset and reused from a bounded pool per coding, instead of being created per response.
+ *
+ * @author Gokhan Demir
+ */
+public final class CompressionUtil {
+
+  public static final String ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String CONTENT_ENCODING = "Content-Encoding";
+  public static final String VARY = "Vary";
+
+  private static final int MIN_BYTES = Integer.parseInt(
+      Optional.ofNullable(System.getenv(COMPRESSION_MIN_BYTES)).orElse(ONE_KILOBYTE));
+  private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+  private static final int OUTPUT_CHUNK_SIZE = 8192;
+  // Magic number, deflate method, no flags, no modification time, no extra flags, unknown system
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  /** The content codings responses can be compressed with, in the order of preference. */
+  public enum Encoding {
+    /** The gzip file format, RFC 1952. */
+    GZIP("gzip", true),
+    /** The zlib format, RFC 1950, which HTTP calls deflate. */
+    DEFLATE("deflate", false);
+
+    private final String token;
+    // gzip wraps raw deflate data in its own header and trailer
+    private final boolean raw;
+    private final BlockingQueue<Deflater> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    Encoding(String token, boolean raw) {
+      this.token = token;
+      this.raw = raw;
+    }
+
+    public String getToken() {
+      return token;
+    }
+
+    private Deflater borrow() {
+      Deflater deflater = pool.poll();
+      return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+    }
+
+    private void release(Deflater deflater) {
+      deflater.reset();
+      if (!pool.offer(deflater)) {
+        deflater.end();
+      }
+    }
+  }
+
+  private CompressionUtil() {}
+
+  /**
+   * Chooses the content coding of the response to a request, from its <code>Accept-Encoding
+   * </code> header. The coding with the highest quality wins, gzip winning ties; a quality of 0
+   * refuses a coding, and <code>*</code> stands for the codings the header does not name.
+   *
+   * @param httpRequest The HTTP request.
+   * @return The coding, or null if the response is to be sent as it is.
+   */
+  public static Encoding negotiate(HttpRequest httpRequest) {
+    if (MIN_BYTES < 0) {
+      return null;
+    }
+    String header = httpRequest.getFirstHeader(ACCEPT_ENCODING);
+    if (header.isEmpty()) {
+      return null;
+    }
+    double[] qualities = new double[Encoding.values().length];
+    boolean[] named = new boolean[qualities.length];
+    double wildcard = 0;
+    for (String item : header.split(",")) {
+      String[] parts = item.split(";");
+      String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+      double quality = qualityOf(parts);
+      if ("*".equals(coding)) {
+        wildcard = quality;
+      }
+      for (Encoding encoding : Encoding.values()) {
+        if (encoding.token.equals(coding)) {
+          qualities[encoding.ordinal()] = quality;
+          named[encoding.ordinal()] = true;
+        }
+      }
+    }
+    Encoding chosen = null;
+    double best = 0;
+    for (Encoding encoding : Encoding.values()) {
+      double quality = named[encoding.ordinal()] ? qualities[encoding.ordinal()] : wildcard;
+      if (quality > best) {
+        chosen = encoding;
+        best = quality;
+      }
+    }
+    return chosen;
+  }
+
+  // The q parameter of an Accept-Encoding item, 1 if absent, 0 if malformed
+  private static double qualityOf(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2).trim());
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Tells whether a body of the given size is compressed, if the client accepts it.
+   *
+   * @param length The size of the body, in bytes.
+   * @return true if the body is large enough to be compressed.
+   */
+  public static boolean isCompressible(int length) {
+    return MIN_BYTES >= 0 && length >= MIN_BYTES;
+  }
+
+  /**
+   * Compresses data with a content coding, on a pooled compressor.
+   *
+   * @param data The data.
+   * @param encoding The content coding.
+   * @return The compressed data.
+   */
+  public static byte[] compress(byte[] data, Encoding encoding) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    Deflater deflater = encoding.borrow();
+    try {
+      if (encoding == Encoding.GZIP) {
+        out.writeBytes(GZIP_HEADER);
+      }
+      deflater.setInput(data);
+      deflater.finish();
+      byte[] chunk = new byte[OUTPUT_CHUNK_SIZE];
+      while (!deflater.finished()) {
+        out.write(chunk, 0, deflater.deflate(chunk));
+      }
+    } finally {
+      encoding.release(deflater);
+    }
+    if (encoding == Encoding.GZIP) {
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      writeIntLittleEndian(out, (int) crc.getValue());
+      writeIntLittleEndian(out, data.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+
+  /**
+   * Compresses the body of a response with a content coding, if the response is successful and
+   * its body large enough. Such a response varies with <code>Accept-Encoding</code>, so it says
+   * so in header Vary, whether it is compressed or not.
+   *
+   * @param response The response, with its body as it is.
+   * @param encoding The coding chosen by {@link #negotiate}, or null.
+   * @return The response, with its body compressed if it applies.
+   */
+  public static HttpResponse encode(HttpResponse response, Encoding encoding) {
+    return encode(response, encoding, body -> compress(body, encoding));
+  }
+
+  /**
+   * Compresses the body of a response like {@link #encode(HttpResponse, Encoding)}, with a given
+   * compressor, such as one that returns a compressed form cached before.
+   *
+   * @param response The response, with its body as it is.
+   * @param encoding The coding chosen by {@link #negotiate}, or null.
+   * @param compressor The function that compresses the body with the coding.
+   * @return The response, with its body compressed if it applies.
+   */
+  public static HttpResponse encode(
+      HttpResponse response, Encoding encoding, UnaryOperator<byte[]> compressor) {
+    Body<?> body = response.getBody();
+    if (response.getStatusCode() == null
+        || response.getStatusCode() != HttpStatusCode.OK_200.code()
+        || body == null
+        || !isCompressible(body.getRawBytes().length)) {
+      return response;
+    }
+    response.withHeader(VARY, ACCEPT_ENCODING);
+    if (encoding == null) {
+      return response;
+    }
+    return response
+        .withBody(new BinaryBody(compressor.apply(body.getRawBytes())))
+        .withHeader(CONTENT_ENCODING, encoding.getToken());
+  }
+}
@@ -12,6 +12,64 @@ public class Constants {
   public static final String TWO_HOURS = String.valueOf(1000L * 60 * 60 * 2);
   public static final String THREE_SECONDS = String.valueOf(1000L * 3);
 
+  /** the expiry precision of the cache, in milliseconds */
+  public static final String CACHE_EVICTION_TICK_MILLIS = "CACHE_EVICTION_TICK_MILLIS";
+
+  /** optional upper bounds of the cache, globally and per domain; unbounded if not provided */
+  public static final String CACHE_MAX_ENTRIES = "CACHE_MAX_ENTRIES";
+  public static final String CACHE_MAX_BYTES = "CACHE_MAX_BYTES";
+  public static final String CACHE_MAX_ENTRIES_PER_DOMAIN = "CACHE_MAX_ENTRIES_PER_DOMAIN";
+  public static final String CACHE_MAX_BYTES_PER_DOMAIN = "CACHE_MAX_BYTES_PER_DOMAIN";
+
+  /** HEAP (default) to keep payloads as trees, or OFF_HEAP to keep them serialized in direct memory */
+  public static final String CACHE_STORAGE_MODE = "CACHE_STORAGE_MODE";
+
+  /** the file to restore the cache from at startup, and to snapshot it into; disabled if not provided */
+  public static final String CACHE_SNAPSHOT_FILE = "CACHE_SNAPSHOT_FILE";
+  public static final String CACHE_SNAPSHOT_INTERVAL_MILLIS = "CACHE_SNAPSHOT_INTERVAL_MILLIS";
+  public static final String ONE_MINUTE = String.valueOf(1000L * 60);
+
+  /** the append-only journal of cache mutations, compacted into the snapshot; disabled if not provided */
+  public static final String CACHE_JOURNAL_FILE = "CACHE_JOURNAL_FILE";
+  /** ALWAYS, INTERVAL (default) or NEVER */
+  public static final String CACHE_JOURNAL_FSYNC = "CACHE_JOURNAL_FSYNC";
+  public static final String CACHE_JOURNAL_FSYNC_INTERVAL_MILLIS = "CACHE_JOURNAL_FSYNC_INTERVAL_MILLIS";
+  public static final String ONE_SECOND = String.valueOf(1000L);
+
+  /** the secondary indexes per domain path, such as *:state,externalId;productOrder:relatedParty.id */
+  public static final String CACHE_INDEXES = "CACHE_INDEXES";
+
+  /** the maximum page size of list queries per domain path, such as *:100;productOrder:5000 */
+  public static final String MAX_PAGE_SIZE = "MAX_PAGE_SIZE";
+
+  /** the number of items from which list query steps run in parallel, and the threads they use */
+  public static final String PARALLEL_QUERY_THRESHOLD = "PARALLEL_QUERY_THRESHOLD";
+  public static final String PARALLEL_QUERY_THREADS = "PARALLEL_QUERY_THREADS";
+  public static final String TEN_THOUSAND = "10000";
+
+  /** the maximum number of list responses to keep for repeated queries; 0 disables the cache */
+  public static final String RESULT_CACHE_MAX_ENTRIES = "RESULT_CACHE_MAX_ENTRIES";
+  public static final String ONE_HUNDRED = "100";
+
+  /** the maximum total size in bytes of the list response bodies kept for repeated queries */
+  public static final String RESULT_CACHE_MAX_BYTES = "RESULT_CACHE_MAX_BYTES";
+  public static final String SIXTY_FOUR_MEGABYTES = String.valueOf(64L * 1024 * 1024);
+
+  /** the size in bytes at which a newline delimited JSON list page stops taking more payloads */
+  public static final String NDJSON_MAX_PAGE_BYTES = "NDJSON_MAX_PAGE_BYTES";
+  public static final String SIXTEEN_MEGABYTES = String.valueOf(16L * 1024 * 1024);
+
+  /** the minimum size of a response body to compress, in bytes; a negative value disables compression */
+  public static final String COMPRESSION_MIN_BYTES = "COMPRESSION_MIN_BYTES";
+  public static final String ONE_KILOBYTE = "1024";
+
+  /** true to filter list queries on the query parameters that do not control them; false by default */
+  public static final String ATTRIBUTE_FILTERING = "ATTRIBUTE_FILTERING";
+
+  /** the maximum number of parsed filter, sort and fields parameters to keep, each */
+  public static final String QUERY_CACHE_MAX_ENTRIES = "QUERY_CACHE_MAX_ENTRIES";
+  public static final String ONE_THOUSAND = "1000";
+
   /** comma separated list of additional fields to be included in the POST response */
   public static final String ADDITIONAL_FIELDS = "ADDITIONAL_FIELDS";
 }
@@ -0,0 +1,124 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.model.Id;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+
+/**
+ * Utility class for entity tags, which let clients revalidate a response they already have with
+ * <code>If-None-Match</code> instead of downloading it again.
+ *
+ * <p>The tags are strong: the tag of an entity is derived from its id, version and revision, and
+ * from the cache entry holding it, which is replaced on every write; the tag of a list is derived
+ * from the generation of its domain and the normalized query. Either also covers the fields
+ * selection and the content coding, which make a different representation.
+ *
+ * <p>The stamps of the entries and the generations of the domains are counted from zero by each
+ * process, while the contents of the cache may be restored across a restart. Every tag is thus
+ * also derived from a random epoch drawn at startup, so that a tag handed out before a restart
+ * never matches what is cached after it.
+ *
+ * @author Gokhan Demir
+ */
+public final class ETagUtil {
+
+  public static final String ETAG = "ETag";
+  public static final String IF_NONE_MATCH = "If-None-Match";
+
+  // Tells tags of one process apart from those of any other, which count stamps anew
+  private static final String EPOCH = UUID.randomUUID().toString();
+
+  private ETagUtil() {}
+
+  /**
+   * Returns the tag of an entity.
+   *
+   * @param id The id of the entity.
+   * @param entry The cache entry holding the entity.
+   * @param fields The fields selection of the request, or an empty set.
+   * @param encoding The content coding of the response, or null.
+   * @return The quoted tag.
+   */
+  public static String ofEntity(Id id, CacheEntry entry, Set<String> fields, Encoding encoding) {
+    // The parts are separated by characters no URL carries
+    StringBuilder key = new StringBuilder()
+        .append(id.getId()).append('\0')
+        .append(id.getVersion()).append('\0')
+        .append(entry.getRevision()).append('\0')
+        .append(entry.getStamp()).append('\0')
+        .append(encoding == null ? "" : encoding.getToken());
+    new TreeSet<>(fields).forEach(field -> key.append('\0').append(field));
+    return quote(key.toString());
+  }
+
+  /**
+   * Returns the tag of a list.
+   *
+   * @param queryKey The generation of the domain, the normalized query and the content coding.
+   * @return The quoted tag.
+   */
+  public static String ofList(String queryKey) {
+    return quote(queryKey);
+  }
+
+  /**
+   * Tells whether the request has an <code>If-None-Match</code> header matching the tag, using
+   * the weak comparison that applies to this header.
+   *
+   * @param httpRequest The HTTP request.
+   * @param etag The quoted tag of the current representation.
+   * @return true if the client has the current representation already.
+   */
+  public static boolean isNotModified(HttpRequest httpRequest, String etag) {
+    String header = httpRequest.getFirstHeader(IF_NONE_MATCH);
+    if (header.isEmpty()) {
+      return false;
+    }
+    for (String candidate : header.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Constructs a 304 Not Modified response, which carries the tag and no body.
+   *
+   * @param etag The quoted tag.
+   * @return The response.
+   */
+  public static HttpResponse notModified(String etag) {
+    return HttpResponse.response()
+        .withStatusCode(HttpStatusCode.NOT_MODIFIED_304.code())
+        .withHeader(ETAG, etag);
+  }
+
+  // Digests the key with the epoch, so that the tag is short, and free of characters a tag cannot
+  // carry
+  private static String quote(String key) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest((EPOCH + '\0' + key).getBytes(UTF_8));
+      return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22)
+          + '"';
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -1,11 +1,39 @@
 package org.opentmf.mockserver.util;
 
+import static org.opentmf.mockserver.util.Constants.ATTRIBUTE_FILTERING;
+import static org.opentmf.mockserver.util.Constants.MAX_PAGE_SIZE;
+import static org.opentmf.mockserver.util.Constants.ONE_THOUSAND;
+import static org.opentmf.mockserver.util.Constants.QUERY_CACHE_MAX_ENTRIES;
+
 import java.util.*;
 import org.mockserver.model.HttpRequest;
+import org.mockserver.model.NottableString;
+import org.mockserver.model.Parameter;
+import org.opentmf.mockserver.filter.AttributeCondition;
+import org.opentmf.mockserver.filter.AttributeFilter;
+import org.opentmf.mockserver.filter.Cursor;
+import org.opentmf.mockserver.filter.FilterPlan;
+import org.opentmf.mockserver.filter.SortSpec;
 
-/** Utility class for extracting parameters from HTTP requests. */
+/**
+ * Utility class for extracting parameters from HTTP requests. The parsed forms of the filter, sort
+ * and fields parameters are cached by their text, see {@link #getQueryCaches()}.
+ */
 public class HttpRequestUtil {
 
+  private static final int QUERY_CACHE_CAPACITY = Integer.parseInt(
+      Optional.ofNullable(System.getenv(QUERY_CACHE_MAX_ENTRIES)).orElse(ONE_THOUSAND));
+  private static final PageSizeConfig PAGE_SIZES =
+      PageSizeConfig.parse(System.getenv(MAX_PAGE_SIZE));
+  private static final QueryCache<FilterPlan> FILTER_PLANS =
+      new QueryCache<>("filter", QUERY_CACHE_CAPACITY);
+  private static final QueryCache<SortSpec> SORTS =
+      new QueryCache<>("sort", QUERY_CACHE_CAPACITY);
+  private static final QueryCache<Set<String>> FIELDS =
+      new QueryCache<>("fields", QUERY_CACHE_CAPACITY);
+  private static final QueryCache<AttributeFilter> ATTRIBUTE_FILTERS =
+      new QueryCache<>("attributes", QUERY_CACHE_CAPACITY);
+
   private HttpRequestUtil() {}
 
   /**
@@ -13,11 +41,25 @@ public class HttpRequestUtil {
    * valid integer, returns a default value of 10.
    *
    * @param httpRequest The HTTP request from which to extract the parameter.
-   * @return The extracted limit value, constrained to a maximum of 10.
+   * @return The extracted limit value, constrained to the maximum page size of all domains, see
+   *     {@link PageSizeConfig}.
    */
   public static int extractLimit(HttpRequest httpRequest) {
+    return extractLimit(httpRequest, "*");
+  }
+
+  /**
+   * Extracts the 'limit' parameter from the HTTP request. If the parameter is not found or is not a
+   * valid integer, returns a default value of 10.
+   *
+   * @param httpRequest The HTTP request from which to extract the parameter.
+   * @param domain The domain of the request.
+   * @return The extracted limit value, constrained to the maximum page size of the domain, see
+   *     {@link PageSizeConfig}.
+   */
+  public static int extractLimit(HttpRequest httpRequest, String domain) {
     int limit = extractIntParameter(httpRequest, "limit", 10);
-    return Math.min(limit, 10);
+    return Math.min(limit, PAGE_SIZES.forDomain(domain));
   }
 
   /**
@@ -33,15 +75,26 @@ public class HttpRequestUtil {
 
   /**
    * Extracts the 'sort' parameter from the HTTP request. Splits the parameter value by comma and
-   * returns as a set of strings. If the parameter is not found, returns a set with a default value
-   * of "createdDate".
+   * returns as a set of strings, in the order given. If the parameter is not found, returns the
+   * default sort criteria of "createdDate".
    *
    * @param httpRequest The HTTP request from which to extract the parameter.
-   * @return The extracted sort criteria as a set of strings.
+   * @return The extracted sort criteria as an unmodifiable, ordered set of strings.
    */
   public static Set<String> extractSort(HttpRequest httpRequest) {
+    return extractSortSpec(httpRequest).getCriteria();
+  }
+
+  /**
+   * Extracts the 'sort' parameter from the HTTP request, and returns it parsed. If the parameter is
+   * not found, returns the default sort criteria of "createdDate".
+   *
+   * @param httpRequest The HTTP request from which to extract the parameter.
+   * @return The parsed sort criteria.
+   */
+  public static SortSpec extractSortSpec(HttpRequest httpRequest) {
     String sortParam = extractStringParameter(httpRequest, "sort", "createdDate");
-    return new HashSet<>(Arrays.asList(sortParam.split(",")));
+    return SORTS.get(sortParam, SortSpec::parse);
   }
 
   /**
@@ -55,19 +108,106 @@ public class HttpRequestUtil {
     return extractStringParameter(httpRequest, "filter", null);
   }
 
+  /**
+   * Extracts the 'cursor' parameter from the HTTP request, and returns it decoded. If the
+   * parameter is not found or is empty, returns null.
+   *
+   * @param httpRequest The HTTP request from which to extract the parameter.
+   * @return The cursor to resume the query after, or null if not found or empty.
+   * @throws IllegalArgumentException If the parameter is not a valid cursor.
+   */
+  public static Cursor extractCursor(HttpRequest httpRequest) {
+    String cursor = extractStringParameter(httpRequest, "cursor", null);
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    return Cursor.decode(cursor);
+  }
+
   /**
    * Extracts the 'fields' parameter from the HTTP request. Splits the parameter value by comma and
    * returns as a set of strings. If the parameter is not found or is empty, returns an empty set.
    *
    * @param httpRequest The HTTP request from which to extract the parameter.
-   * @return The extracted fields as a set of strings, or an empty set if not found or empty.
+   * @return The extracted fields as an unmodifiable set of strings, or an empty set if not found
+   *     or empty.
    */
   public static Set<String> extractFields(HttpRequest httpRequest) {
     String fields = extractStringParameter(httpRequest, "fields", null);
     if (fields == null || fields.isEmpty()) {
       return Collections.emptySet();
     }
-    return new HashSet<>(Arrays.asList(fields.split(",")));
+    return FIELDS.get(fields, HttpRequestUtil::splitToSet);
+  }
+
+  /**
+   * Extracts the 'filter' parameter from the HTTP request, and returns its compiled plan. If the
+   * parameter is not found or is empty, returns null.
+   *
+   * @param httpRequest The HTTP request from which to extract the parameter.
+   * @return The plan of the filter, or null if not found or empty.
+   * @throws com.jayway.jsonpath.InvalidPathException If the filter is not a valid JsonPath.
+   */
+  public static FilterPlan extractFilterPlan(HttpRequest httpRequest) {
+    String filter = extractFilter(httpRequest);
+    if (filter == null || filter.isEmpty()) {
+      return null;
+    }
+    return FILTER_PLANS.get(filter, FilterPlan::compile);
+  }
+
+  /**
+   * Extracts the TMF-630 attribute filtering conditions from the HTTP request, such as <code>
+   * state=completed</code> or <code>createdDate.gt=2026-01-01</code>. Attribute filtering is only
+   * enabled with the <code>ATTRIBUTE_FILTERING</code> environment variable set to true, as clients
+   * may send query parameters that are not meant as filters. Then, every query parameter that is
+   * not one of {@link AttributeFilter#RESERVED_PARAMETERS}, and does not start with an underscore,
+   * as cache busters such as <code>_=1700000000</code> do, is a condition.
+   *
+   * @param httpRequest The HTTP request from which to extract the conditions.
+   * @return The attribute filter, or null if disabled or if there are no conditions.
+   */
+  public static AttributeFilter extractAttributeFilter(HttpRequest httpRequest) {
+    if (!Boolean.parseBoolean(System.getenv(ATTRIBUTE_FILTERING))) {
+      return null;
+    }
+    List<String> namesAndValues = new ArrayList<>();
+    // The conditions are keyed by their names and values, separated by characters no URL carries
+    StringBuilder key = new StringBuilder();
+    for (Parameter parameter : httpRequest.getQueryStringParameterList()) {
+      String name = parameter.getName().getValue();
+      if (AttributeFilter.RESERVED_PARAMETERS.contains(name) || name.startsWith("_")) {
+        continue;
+      }
+      for (NottableString value : parameter.getValues()) {
+        key.append(name).append('\0').append(value.getValue()).append('\0');
+        namesAndValues.add(name);
+        namesAndValues.add(value.getValue());
+      }
+    }
+    if (namesAndValues.isEmpty()) {
+      return null;
+    }
+    return ATTRIBUTE_FILTERS.get(key.toString(), text -> {
+      List<AttributeCondition> conditions = new ArrayList<>();
+      for (int i = 0; i < namesAndValues.size(); i += 2) {
+        conditions.add(AttributeCondition.parse(namesAndValues.get(i), namesAndValues.get(i + 1)));
+      }
+      return new AttributeFilter(conditions);
+    });
+  }
+
+  /**
+   * Returns the caches of parsed query parameters, with their hit and miss counters.
+   *
+   * @return The filter, sort, fields and attribute filter caches.
+   */
+  public static List<QueryCache<?>> getQueryCaches() {
+    return List.of(FILTER_PLANS, SORTS, FIELDS, ATTRIBUTE_FILTERS);
+  }
+
+  private static Set<String> splitToSet(String value) {
+    return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(value.split(","))));
   }
 
   private static int extractIntParameter(
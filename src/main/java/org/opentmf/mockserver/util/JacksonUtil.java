@@ -1,6 +1,7 @@
 package org.opentmf.mockserver.util;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -12,11 +13,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.deser.InstantDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
@@ -49,6 +53,14 @@ public final class JacksonUtil {
     }
   }
 
+  public static JsonNode readAsTree(ByteBuffer json) {
+    try {
+      return OBJECT_MAPPER.readTree(new ByteBufferBackedInputStream(json));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
   public static <T> T convertValue(Object object, Class<T> valueType) {
     return OBJECT_MAPPER.convertValue(object, valueType);
   }
@@ -69,6 +81,30 @@ public final class JacksonUtil {
     }
   }
 
+  public static byte[] writeAsBytes(Object obj) {
+    try {
+      return OBJECT_MAPPER.writeValueAsBytes(obj);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  public static JsonGenerator createGenerator(OutputStream out) {
+    try {
+      return OBJECT_MAPPER.getFactory().createGenerator(out);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  public static JsonParser createParser(byte[] json) {
+    try {
+      return OBJECT_MAPPER.getFactory().createParser(json);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
   public static List<JsonNode> convertToJsonNodeList(List<Object> list) {
     return OBJECT_MAPPER.convertValue(list, new TypeReference<List<JsonNode>>() {
     });
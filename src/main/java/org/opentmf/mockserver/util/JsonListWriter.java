@@ -0,0 +1,175 @@
+package org.opentmf.mockserver.util;
+
+import static org.opentmf.mockserver.model.TmfConstants.HREF;
+import static org.opentmf.mockserver.model.TmfConstants.ID;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.opentmf.mockserver.cache.CacheEntry;
+
+/**
+ * Writes the payloads of a list response as a JSON array, or as newline delimited JSON, one
+ * element at a time, straight into the bytes of the response body. Neither an intermediate array
+ * node nor a string of the whole list is built.
+ *
+ * <p>The bytes are written into a buffer that each thread reuses from one response to the next,
+ * and a fields selection is applied while writing, without copying the selected fields into new
+ * nodes. The whole body is buffered before it is sent, so newline delimited JSON, which suits
+ * large pages, is written up to a maximum size, and the lines that do not fit are left for the
+ * next page.
+ *
+ * @author Gokhan Demir
+ */
+public final class JsonListWriter {
+
+  private static final int INITIAL_BUFFER_SIZE = 8192;
+  // A buffer grown beyond this size is dropped after use, so that one large list pins no memory
+  private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+  private static final ThreadLocal<ByteArrayOutputStream> BUFFERS =
+      ThreadLocal.withInitial(() -> new ByteArrayOutputStream(INITIAL_BUFFER_SIZE));
+
+  private JsonListWriter() {}
+
+  /** Lines of JSON written up to a maximum size, and the number of payloads they hold. */
+  public static final class Lines {
+    private final byte[] bytes;
+    private final int count;
+
+    private Lines(byte[] bytes, int count) {
+      this.bytes = bytes;
+      this.count = count;
+    }
+
+    /** Returns the UTF-8 encoded lines. */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /** Returns the number of payloads written, the first ones of those given. */
+    public int getCount() {
+      return count;
+    }
+  }
+
+  /**
+   * Writes the payloads as a JSON array.
+   *
+   * @param payloads The payloads.
+   * @param fields The fields to select from each payload, besides id and href, or an empty set
+   *     for all fields.
+   * @return The UTF-8 encoded JSON array.
+   */
+  public static byte[] write(List<JsonNode> payloads, Set<String> fields) {
+    return write(payloads, fields, -1L, new int[1]);
+  }
+
+  /**
+   * Writes the payloads as newline delimited JSON, one payload per line, as long as the lines
+   * written so far are below a maximum size. The first payload is always written, so the lines
+   * exceed the maximum size by at most one payload.
+   *
+   * @param payloads The payloads.
+   * @param fields The fields to select from each payload, besides id and href, or an empty set
+   *     for all fields.
+   * @param maxBytes The maximum size of the lines.
+   * @return The lines, and the number of payloads written.
+   */
+  public static Lines writeLines(List<JsonNode> payloads, Set<String> fields, long maxBytes) {
+    int[] count = new int[1];
+    byte[] bytes = write(payloads, fields, maxBytes, count);
+    return new Lines(bytes, count[0]);
+  }
+
+  /**
+   * Writes the payloads of cache entries as newline delimited JSON, one payload per line, copying
+   * their serialized form instead of serializing their trees. Entries kept off-heap are thus never
+   * deserialized, and only one payload at a time is held besides the output. Lines that would take
+   * the output beyond a maximum size are left out, unless it is the first one.
+   *
+   * @param entries The cache entries.
+   * @param maxBytes The maximum size of the lines.
+   * @return The lines, and the number of payloads written.
+   */
+  public static Lines writeSerializedLines(List<CacheEntry> entries, long maxBytes) {
+    ByteArrayOutputStream buffer = BUFFERS.get();
+    buffer.reset();
+    int count = 0;
+    for (CacheEntry entry : entries) {
+      byte[] payload = entry.getPayloadBytes();
+      if (count > 0 && buffer.size() + payload.length + 1L > maxBytes) {
+        break;
+      }
+      buffer.writeBytes(payload);
+      buffer.write('\n');
+      count++;
+    }
+    return new Lines(toBytes(buffer), count);
+  }
+
+  // Writes lines if given a maximum size, or else an array
+  private static byte[] write(
+      List<JsonNode> payloads, Set<String> fields, long maxBytes, int[] count) {
+    boolean lines = maxBytes >= 0;
+    ByteArrayOutputStream buffer = BUFFERS.get();
+    buffer.reset();
+    try (JsonGenerator generator = JacksonUtil.createGenerator(buffer)) {
+      if (lines) {
+        // Root values are separated by the line feeds written after each of them
+        generator.setRootValueSeparator(null);
+      } else {
+        generator.writeStartArray();
+      }
+      for (JsonNode payload : payloads) {
+        if (lines && count[0] > 0
+            && buffer.size() + (long) generator.getOutputBuffered() >= maxBytes) {
+          break;
+        }
+        if (fields == null || fields.isEmpty() || !payload.isObject()) {
+          generator.writeTree(payload);
+        } else {
+          writeSelected(generator, payload, fields);
+        }
+        if (lines) {
+          generator.writeRaw('\n');
+        }
+        count[0]++;
+      }
+      if (!lines) {
+        generator.writeEndArray();
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+    return toBytes(buffer);
+  }
+
+  private static byte[] toBytes(ByteArrayOutputStream buffer) {
+    byte[] bytes = buffer.toByteArray();
+    if (bytes.length > MAX_POOLED_BUFFER_SIZE) {
+      BUFFERS.remove();
+    }
+    return bytes;
+  }
+
+  // Writes the selected fields, id and href in the order the payload has them
+  private static void writeSelected(JsonGenerator generator, JsonNode payload, Set<String> fields)
+      throws IOException {
+    generator.writeStartObject();
+    Iterator<Map.Entry<String, JsonNode>> it = payload.fields();
+    while (it.hasNext()) {
+      Map.Entry<String, JsonNode> field = it.next();
+      String name = field.getKey();
+      if (fields.contains(name) || ID.equals(name) || HREF.equals(name)) {
+        generator.writeFieldName(name);
+        generator.writeTree(field.getValue());
+      }
+    }
+    generator.writeEndObject();
+  }
+}
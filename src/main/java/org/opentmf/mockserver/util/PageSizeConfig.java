@@ -0,0 +1,84 @@
+package org.opentmf.mockserver.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The maximum page size of list queries, per domain path. The configuration is a semicolon
+ * separated list of <code>path:size</code> items, such as <code>*:100;productOrder:5000</code>.
+ * The path <code>*</code> applies to all domains; any other path applies to the domains that are
+ * equal to it or end with it, and takes precedence over <code>*</code>.
+ *
+ * @author Gokhan Demir
+ */
+public final class PageSizeConfig {
+
+  /** The maximum page size of all domains when nothing is configured. */
+  public static final String DEFAULT = "*:10";
+
+  private static final String ALL_DOMAINS = "*";
+
+  private final Map<String, Integer> sizeByPath;
+
+  private PageSizeConfig(Map<String, Integer> sizeByPath) {
+    this.sizeByPath = sizeByPath;
+  }
+
+  /**
+   * Parses a page size configuration.
+   *
+   * @param spec The configuration, or null for {@link #DEFAULT}.
+   * @return The parsed configuration.
+   * @throws IllegalArgumentException If an item has no path, or a size that is not a positive
+   *     integer.
+   */
+  public static PageSizeConfig parse(String spec) {
+    Map<String, Integer> sizeByPath = new LinkedHashMap<>();
+    sizeByPath.put(ALL_DOMAINS, 10);
+    for (String item : (spec == null ? DEFAULT : spec).split(";")) {
+      if (item.trim().isEmpty()) {
+        continue;
+      }
+      int colon = item.indexOf(':');
+      if (colon <= 0) {
+        throw new IllegalArgumentException("Page size configuration item without a path: " + item);
+      }
+      String size = item.substring(colon + 1).trim();
+      if (!size.matches("\\d+") || Integer.parseInt(size) == 0) {
+        throw new IllegalArgumentException("Invalid page size in configuration item: " + item);
+      }
+      sizeByPath.put(trimSlashes(item.substring(0, colon).trim()), Integer.parseInt(size));
+    }
+    return new PageSizeConfig(sizeByPath);
+  }
+
+  /**
+   * Returns the maximum page size of a domain.
+   *
+   * @param domain The domain, as extracted from the request path.
+   * @return The size of the most specific path matching the domain.
+   */
+  public int forDomain(String domain) {
+    int size = sizeByPath.get(ALL_DOMAINS);
+    int matchLength = -1;
+    for (Map.Entry<String, Integer> entry : sizeByPath.entrySet()) {
+      String path = entry.getKey();
+      if (!path.equals(ALL_DOMAINS) && path.length() > matchLength
+          && (domain.equals(path) || domain.endsWith("/" + path))) {
+        size = entry.getValue();
+        matchLength = path.length();
+      }
+    }
+    return size;
+  }
+
+  private static String trimSlashes(String path) {
+    String result = path.startsWith("/") ? path.substring(1) : path;
+    return result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+  }
+
+  @Override
+  public String toString() {
+    return sizeByPath.toString();
+  }
+}
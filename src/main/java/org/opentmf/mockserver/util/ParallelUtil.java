@@ -0,0 +1,122 @@
+package org.opentmf.mockserver.util;
+
+import static org.opentmf.mockserver.util.Constants.PARALLEL_QUERY_THREADS;
+import static org.opentmf.mockserver.util.Constants.PARALLEL_QUERY_THRESHOLD;
+import static org.opentmf.mockserver.util.Constants.TEN_THOUSAND;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for running the steps of list queries in parallel, on a dedicated fork/join pool.
+ *
+ * <p>A step runs in parallel only if it has at least <code>PARALLEL_QUERY_THRESHOLD</code> items
+ * (10000 by default), below which splitting costs more than it saves. The pool has <code>
+ * PARALLEL_QUERY_THREADS</code> daemon threads (the number of processors by default), and is apart
+ * from the common pool and from the threads serving requests, so that a large query can neither
+ * starve them nor be starved by them. A value of 1 disables parallel execution.
+ *
+ * @author Gokhan Demir
+ */
+public final class ParallelUtil {
+
+  private static final int THRESHOLD = Integer.parseInt(
+      Optional.ofNullable(System.getenv(PARALLEL_QUERY_THRESHOLD)).orElse(TEN_THOUSAND));
+  private static final int THREADS = Optional.ofNullable(System.getenv(PARALLEL_QUERY_THREADS))
+      .map(Integer::parseInt)
+      .orElse(Runtime.getRuntime().availableProcessors());
+  private static final ForkJoinPool POOL = THREADS > 1 ? createPool(THREADS) : null;
+
+  private ParallelUtil() {}
+
+  private static ForkJoinPool createPool(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    return new ForkJoinPool(threads, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("list-query-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+  }
+
+  /**
+   * Tells whether a step over the given number of items runs in parallel.
+   *
+   * @param size The number of items.
+   * @return true if the step runs on the pool.
+   */
+  public static boolean isParallel(int size) {
+    return POOL != null && size >= THRESHOLD;
+  }
+
+  /**
+   * Returns the number of threads of the pool, which is also the number of parts worth splitting
+   * a step into.
+   *
+   * @return The parallelism, 1 if parallel execution is disabled.
+   */
+  public static int getParallelism() {
+    return POOL == null ? 1 : POOL.getParallelism();
+  }
+
+  /**
+   * Returns the items that match a predicate, in their order.
+   *
+   * @param items The items.
+   * @param predicate The predicate, which must be safe to call from several threads.
+   * @param <T> The type of the items.
+   * @return The matching items.
+   */
+  public static <T> List<T> filter(Collection<T> items, Predicate<? super T> predicate) {
+    if (!isParallel(items.size())) {
+      return items.stream().filter(predicate).collect(Collectors.toList());
+    }
+    List<T> list = asList(items);
+    return invoke(() -> list.parallelStream().filter(predicate).collect(Collectors.toList()));
+  }
+
+  /**
+   * Maps the items, in their order.
+   *
+   * @param items The items.
+   * @param mapper The function, which must be safe to call from several threads.
+   * @param <T> The type of the items.
+   * @param <R> The type of the results.
+   * @return The results.
+   */
+  public static <T, R> List<R> map(Collection<T> items, Function<? super T, ? extends R> mapper) {
+    if (!isParallel(items.size())) {
+      return items.stream().map(mapper).collect(Collectors.toList());
+    }
+    List<T> list = asList(items);
+    return invoke(() -> list.parallelStream().map(mapper).collect(Collectors.toList()));
+  }
+
+  /**
+   * Runs a task on the pool, so that the parallel streams it uses fork onto the pool as well.
+   *
+   * @param task The task.
+   * @param <T> The type of the result.
+   * @return The result of the task.
+   */
+  public static <T> T invoke(Supplier<T> task) {
+    if (POOL == null) {
+      return task.get();
+    }
+    return POOL.submit(task::get).join();
+  }
+
+  // Parallel streams split lists that allow random access evenly, and other collections poorly
+  private static <T> List<T> asList(Collection<T> items) {
+    return items instanceof ArrayList ? (List<T>) items : new ArrayList<>(items);
+  }
+}
@@ -1,19 +1,61 @@
 package org.opentmf.mockserver.util;
 
-import static org.opentmf.mockserver.model.TmfConstants.VERSION;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.opentmf.mockserver.util.Constants.CACHE_DURATION_MILLIS;
+import static org.opentmf.mockserver.util.Constants.CACHE_EVICTION_TICK_MILLIS;
+import static org.opentmf.mockserver.util.Constants.CACHE_INDEXES;
+import static org.opentmf.mockserver.util.Constants.CACHE_JOURNAL_FILE;
+import static org.opentmf.mockserver.util.Constants.CACHE_JOURNAL_FSYNC;
+import static org.opentmf.mockserver.util.Constants.CACHE_JOURNAL_FSYNC_INTERVAL_MILLIS;
+import static org.opentmf.mockserver.util.Constants.CACHE_MAX_BYTES;
+import static org.opentmf.mockserver.util.Constants.CACHE_MAX_BYTES_PER_DOMAIN;
+import static org.opentmf.mockserver.util.Constants.CACHE_MAX_ENTRIES;
+import static org.opentmf.mockserver.util.Constants.CACHE_MAX_ENTRIES_PER_DOMAIN;
+import static org.opentmf.mockserver.util.Constants.CACHE_SNAPSHOT_FILE;
+import static org.opentmf.mockserver.util.Constants.CACHE_SNAPSHOT_INTERVAL_MILLIS;
+import static org.opentmf.mockserver.util.Constants.CACHE_STORAGE_MODE;
+import static org.opentmf.mockserver.util.Constants.ONE_MINUTE;
+import static org.opentmf.mockserver.util.Constants.ONE_SECOND;
 import static org.opentmf.mockserver.util.Constants.TWO_HOURS;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.SortedMap;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.cache.CacheJournal;
+import org.opentmf.mockserver.cache.CacheLimits;
+import org.opentmf.mockserver.cache.CacheSnapshot;
+import org.opentmf.mockserver.cache.CacheStats;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.cache.DomainStore;
+import org.opentmf.mockserver.cache.FsyncPolicy;
+import org.opentmf.mockserver.cache.HeapEntry;
+import org.opentmf.mockserver.cache.IndexConfig;
+import org.opentmf.mockserver.cache.MappedSortedMap;
+import org.opentmf.mockserver.cache.OffHeapStore;
+import org.opentmf.mockserver.cache.PersistentSortedMap;
+import org.opentmf.mockserver.cache.RemovalCause;
+import org.opentmf.mockserver.cache.StorageMode;
+import org.opentmf.mockserver.cache.TimingWheel;
+import org.opentmf.mockserver.cache.WTinyLfuPolicy;
 import org.opentmf.mockserver.model.Id;
 import org.opentmf.mockserver.model.RequestContext;
 import org.slf4j.Logger;
@@ -24,29 +66,90 @@ import org.slf4j.LoggerFactory;
  * update, get, and clear cache entries. Cache entries are stored as maps with domain and key
  * identifiers. Cache eviction is performed based on a specified time-to-live (TTL) for entries.
  *
+ * <p>The cache is safe for concurrent use without any global lock: domains are kept in a {@link
+ * ConcurrentHashMap}, and the entries of each domain in a {@link DomainStore} ordered by {@link
+ * Id}, whose writers publish a new version of a persistent map with compare-and-set. Reads never
+ * block, writes to different domains proceed in parallel, and {@link #getAll(String)} returns a
+ * consistent snapshot of a domain in O(1), without copying or locking.
+ *
+ * <p>Each domain also maintains the secondary indexes configured for it with the <code>
+ * CACHE_INDEXES</code> environment variable (see {@link IndexConfig}), which are part of the same
+ * snapshot as the entries, so that {@link #getSnapshot(String)} can answer equality and range
+ * queries on indexed fields without scanning the domain.
+ *
+ * <p>Expiry is driven by a {@link TimingWheel}: every entry is scheduled once when it is added, and
+ * each tick only looks at the entries that became due within that tick. The tick, which is the
+ * expiry precision, can be configured with the <code>CACHE_EVICTION_TICK_MILLIS</code>
+ * environment variable.
+ *
+ * <p>The cache can optionally be bounded by a maximum number of entries and a maximum estimated
+ * size in bytes, both globally and per domain. In bounded mode, each domain is governed by a {@link
+ * WTinyLfuPolicy}, so that the most frequently used payloads stay resident, and the writes of a
+ * domain are serialized on the lock of its policy.
+ *
+ * <p>Payloads are kept as Jackson trees on the heap by default. With the <code>CACHE_STORAGE_MODE
+ * </code> environment variable set to <code>OFF_HEAP</code>, they are kept as serialized JSON in an
+ * {@link OffHeapStore} instead, and only parsed when a callback needs the tree. In that mode, a
+ * changed tree must always be stored back with {@link #update(RequestContext, JsonNode)}.
+ *
+ * <p>With the <code>CACHE_SNAPSHOT_FILE</code> environment variable set, the cache is restored from
+ * that file when it is created, before the first request is served, and written back to it
+ * periodically and on shutdown. See {@link CacheSnapshot} for the file format. With the <code>
+ * CACHE_JOURNAL_FILE</code> environment variable set as well, every put, update, clear and
+ * eviction is also appended to a {@link CacheJournal}, which is replayed after the snapshot at
+ * startup, and compacted into each new snapshot. Touches are journaled too, but only once the
+ * deadline of an entry has moved by an eviction tick since it was last journaled, so that reads do
+ * not flood the journal, at the cost of replayed deadlines being up to a tick early. Mutations of
+ * the same id are appended in the order they were applied, by appending them while holding one of a
+ * fixed set of striped locks, and in bounded mode, the lock of the domain's policy as well. If
+ * the journal fails, mutations are still applied, and logged as not durable.
+ *
  * @author Gokhan Demir
  */
 public class PayloadCache {
 
   private static final Logger LOG = LoggerFactory.getLogger(PayloadCache.class);
   private static final String NO_CACHE_ENTRY_FOUND_FOR_DOMAIN = "No cache entry found for domain = \"{}\"";
-  private static final String START_EVICTING_OLD_CACHE_ITEMS = "Start evicting old cache items.";
   private static final String DOMAIN_WITH = "domain = \"{}\" with [{}]";
 
-  private final Map<String, TreeMap<Id, JsonNode>> dataCache = new LinkedHashMap<>();
-  private final Map<String, TreeMap<Id, Long>> timeCache = new HashMap<>();
+  private final ConcurrentMap<String, Domain> domains = new ConcurrentHashMap<>();
 
   private final long timeToLive;
+  private final long evictionTick;
+  private final TimingWheel<Expiry> expiryWheel;
+  private final CacheLimits limits;
+  private final WTinyLfuPolicy.Usage usage = new WTinyLfuPolicy.Usage();
+  private final CacheStats stats = new CacheStats();
+  private final OffHeapStore offHeapStore;
+  private final IndexConfig indexConfig;
+  private final Object[] journalLocks = new Object[64];
+  private volatile CacheJournal journal;
 
-  private PayloadCache(long timeToLive) {
+  private PayloadCache(long timeToLive, long evictionTick, CacheLimits limits,
+      StorageMode storageMode, IndexConfig indexConfig) {
     this.timeToLive = timeToLive;
-    LOG.info("Cache initialized to expire in {}", DurationUtil.formatDuration(timeToLive));
-    // Schedule a timer task for cache eviction
-    new Timer().scheduleAtFixedRate(new CacheEvictTimer(), 0L, timeToLive);
+    this.evictionTick = evictionTick;
+    this.limits = limits;
+    this.indexConfig = indexConfig;
+    this.offHeapStore = storageMode == StorageMode.OFF_HEAP
+        ? new OffHeapStore(OffHeapStore.DEFAULT_SLAB_SIZE)
+        : null;
+    for (int i = 0; i < journalLocks.length; i++) {
+      journalLocks[i] = new Object();
+    }
+    this.expiryWheel = new TimingWheel<>(evictionTick, timeToLive, this::expire);
+    LOG.info("Cache initialized to expire in {}, with a precision of {}",
+        DurationUtil.formatDuration(timeToLive), DurationUtil.formatDuration(evictionTick));
+    if (limits.isBounded()) {
+      LOG.info("Cache is bounded with {}", limits);
+    }
+    LOG.info("Cache stores payloads in {} memory", storageMode);
+    LOG.info("Cache maintains secondary indexes {}", indexConfig);
+    expiryWheel.start("payload-cache-expiry");
   }
 
   // Singleton instance of PayloadCache
-  private static PayloadCache instance = null;
+  private static volatile PayloadCache instance = null;
 
   /**
    * Returns the singleton instance of PayloadCache with default TTL.
@@ -54,132 +157,660 @@ public class PayloadCache {
    * @return The singleton instance of PayloadCache.
    */
   public static PayloadCache getInstance() {
-    if (instance == null) {
-      String cacheDurationMillis = System.getenv(CACHE_DURATION_MILLIS);
-      long milliseconds = Long.parseLong(cacheDurationMillis == null ? TWO_HOURS : cacheDurationMillis);
-      instance = new PayloadCache(milliseconds);
+    PayloadCache result = instance;
+    if (result == null) {
+      synchronized (PayloadCache.class) {
+        result = instance;
+        if (result == null) {
+          String cacheDurationMillis = System.getenv(CACHE_DURATION_MILLIS);
+          long milliseconds =
+              Long.parseLong(cacheDurationMillis == null ? TWO_HOURS : cacheDurationMillis);
+          String evictionTickMillis = System.getenv(CACHE_EVICTION_TICK_MILLIS);
+          long evictionTick = evictionTickMillis == null
+              ? defaultEvictionTick(milliseconds)
+              : Long.parseLong(evictionTickMillis);
+          CacheLimits limits = new CacheLimits(
+              limitOf(CACHE_MAX_ENTRIES),
+              limitOf(CACHE_MAX_BYTES),
+              limitOf(CACHE_MAX_ENTRIES_PER_DOMAIN),
+              limitOf(CACHE_MAX_BYTES_PER_DOMAIN));
+          String storageMode = System.getenv(CACHE_STORAGE_MODE);
+          result = new PayloadCache(milliseconds, evictionTick, limits,
+              storageMode == null ? StorageMode.HEAP : StorageMode.valueOf(storageMode),
+              IndexConfig.parse(System.getenv(CACHE_INDEXES)));
+          String snapshotFile = System.getenv(CACHE_SNAPSHOT_FILE);
+          String journalFile = System.getenv(CACHE_JOURNAL_FILE);
+          boolean journaled = journalFile != null && !journalFile.isEmpty();
+          if (journaled && (snapshotFile == null || snapshotFile.isEmpty())) {
+            snapshotFile = journalFile + ".snapshot";
+          }
+          if (snapshotFile != null && !snapshotFile.isEmpty()) {
+            String snapshotIntervalMillis = System.getenv(CACHE_SNAPSHOT_INTERVAL_MILLIS);
+            result.enableSnapshots(Paths.get(snapshotFile), Long.parseLong(
+                snapshotIntervalMillis == null ? ONE_MINUTE : snapshotIntervalMillis),
+                journaled ? Paths.get(journalFile) : null);
+          }
+          instance = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  // Entries expire within a sixtieth of their time-to-live, with a tick between 10 ms and a second
+  private static long defaultEvictionTick(long timeToLive) {
+    return Math.max(10L, Math.min(1000L, timeToLive / 60));
+  }
+
+  // Restores the last snapshot and journal, then keeps writing new snapshots periodically and once
+  // more on shutdown
+  private void enableSnapshots(Path file, long intervalMillis, Path journalFile) {
+    if (Files.exists(file)) {
+      try {
+        restore(file);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Cache could not be restored from {}, starting empty", file, e);
+      }
+    }
+    if (journalFile != null) {
+      enableJournal(file, journalFile);
+    }
+    ScheduledExecutorService snapshotter =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "payload-cache-snapshot");
+              thread.setDaemon(true);
+              return thread;
+            });
+    snapshotter.scheduleWithFixedDelay(
+        () -> compactSafely(file), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      snapshotter.shutdownNow();
+      compactSafely(file);
+      CacheJournal log = journal;
+      if (log != null) {
+        log.close();
+      }
+    }, "payload-cache-snapshot-on-shutdown"));
+    LOG.info("Cache snapshots are written to {} every {}", file,
+        DurationUtil.formatDuration(intervalMillis));
+  }
+
+  // Replays the journal over the restored snapshot, folds both into a new snapshot, and starts
+  // appending to a new journal
+  private void enableJournal(Path file, Path journalFile) {
+    String fsync = System.getenv(CACHE_JOURNAL_FSYNC);
+    FsyncPolicy fsyncPolicy = fsync == null ? FsyncPolicy.INTERVAL : FsyncPolicy.valueOf(fsync);
+    String fsyncIntervalMillis = System.getenv(CACHE_JOURNAL_FSYNC_INTERVAL_MILLIS);
+    long fsyncInterval =
+        Long.parseLong(fsyncIntervalMillis == null ? ONE_SECOND : fsyncIntervalMillis);
+    try {
+      long replayed = CacheJournal.replay(journalFile, this::replay);
+      LOG.info("Cache replayed {} mutations from {}", replayed, journalFile);
+      snapshot(file);
+      CacheJournal.delete(journalFile);
+      journal = CacheJournal.open(journalFile, fsyncPolicy, fsyncInterval);
+      LOG.info("Cache mutations are journaled to {} with fsync policy {}", journalFile,
+          fsyncPolicy);
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Cache journal {} could not be enabled, continuing without it", journalFile, e);
     }
-    return instance;
   }
 
-  // TimerTask for cache eviction
-  private static class CacheEvictTimer extends TimerTask {
+  // Writes a new snapshot; with a journal, the mutations journaled before it are dropped after
+  private void compactSafely(Path file) {
+    CacheJournal log = journal;
+    try {
+      if (log != null) {
+        log.rotate();
+      }
+      snapshot(file);
+      if (log != null) {
+        log.deleteRotated();
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Cache snapshot could not be written to {}", file, e);
+    }
+  }
+
+  private static long limitOf(String environmentVariable) {
+    String limit = System.getenv(environmentVariable);
+    return limit == null || limit.isEmpty() ? Long.MAX_VALUE : Long.parseLong(limit);
+  }
+
+  // The expiry bookkeeping of a single cache entry, scheduled on the expiry wheel
+  private static final class Expiry implements TimingWheel.Timeout {
+    private final String domain;
+    private final Id key;
+    private volatile long deadline;
+    // The last deadline known to the journal
+    private volatile long journaled;
+
+    private Expiry(String domain, Id key, long deadline) {
+      this.domain = domain;
+      this.key = key;
+      this.deadline = deadline;
+    }
+
     @Override
-    public void run() {
-      LOG.info(START_EVICTING_OLD_CACHE_ITEMS);
-      getInstance().evictOldItems();
+    public long getDeadline() {
+      return deadline;
     }
   }
 
-  public synchronized void put(RequestContext ctx, JsonNode value) {
-    dataCache.putIfAbsent(ctx.getDomain(), new TreeMap<>());
-    timeCache.putIfAbsent(ctx.getDomain(), new TreeMap<>());
+  // The entries of a single domain, with their expiry times and their eviction policy if bounded
+  private final class Domain {
+    private final String name;
+    private final DomainStore data;
+    private final ConcurrentSkipListMap<Id, Expiry> times = new ConcurrentSkipListMap<>();
+    private final WTinyLfuPolicy<Id> policy;
+
+    private Domain(String name) {
+      this.name = name;
+      this.data = new DomainStore(indexConfig.forDomain(name));
+      this.policy = limits.isBounded()
+          ? new WTinyLfuPolicy<>(
+              limits.getMaxEntriesPerDomain(), limits.getMaxBytesPerDomain(), usage, this::evicted)
+          : null;
+    }
+
+    // Runs a mutation of this domain, atomically with the bookkeeping of its policy if bounded
+    private void write(Runnable mutation) {
+      if (policy == null) {
+        mutation.run();
+        return;
+      }
+      policy.lock();
+      try {
+        mutation.run();
+      } finally {
+        policy.unlock();
+      }
+      enforceGlobalLimits();
+    }
+
+    private void recordWrite(Id key, CacheEntry entry) {
+      if (policy != null) {
+        policy.recordWrite(key, entry.getWeight());
+      }
+    }
+
+    private void recordAccess(Id key) {
+      if (policy != null) {
+        policy.recordAccess(key);
+      }
+    }
 
-    if (dataCache.get(ctx.getDomain()).containsKey(ctx.getId())) {
-      throw new IllegalArgumentException("Key: [" + ctx.getId() + "] already exists in cache for domain ");
+    private void recordRemoval(Id key, RemovalCause cause) {
+      if (policy != null) {
+        policy.recordRemoval(key);
+      }
+      stats.recordRemoval(cause);
     }
 
-    touch(ctx);
-    dataCache.get(ctx.getDomain()).put(ctx.getId(), value);
+    private void evicted(Id key, RemovalCause cause) {
+      release(data.remove(key));
+      times.remove(key);
+      stats.recordRemoval(cause);
+      journalEviction(key, cause);
+      LOG.info("Cache entry for " + DOMAIN_WITH + " is evicted due to {}", name, key, cause);
+    }
+
+    // Called while the id's writes are serialized, so that the eviction is journaled in order.
+    // Evictions are not waited on: at worst, replay brings back an entry that was evicted anyway.
+    private void journalEviction(Id key, RemovalCause cause) {
+      CacheJournal log = journal;
+      if (log != null) {
+        log.append(CacheJournal.Operation.EVICT, name, key, cause.name().getBytes(UTF_8));
+      }
+    }
+  }
+
+  public void put(RequestContext ctx, JsonNode value) {
+    Domain domain = domains.computeIfAbsent(ctx.getDomain(), Domain::new);
+    Id key = copyOf(ctx.getId());
+    CacheEntry entry = entryOf(domain, value);
+    mutate(domain, key,
+        () -> {
+          if (!insert(domain, key, entry, System.currentTimeMillis() + timeToLive)) {
+            throw new IllegalArgumentException("Key: [" + ctx.getId() + "] already exists in cache for domain ");
+          }
+          extend(domain, key, System.currentTimeMillis() + timeToLive, true);
+        },
+        log -> log.append(
+            CacheJournal.Operation.PUT, domain.name, key, entry.getPayloadBytes()));
     LOG.info("Cache entry for " + DOMAIN_WITH + " added", ctx.getDomain(), ctx.getId());
   }
 
-  public synchronized void update(RequestContext ctx, JsonNode value) {
-    if (!dataCache.get(ctx.getDomain()).containsKey(ctx.getId())) {
+  /**
+   * Replaces the payload of an id that is already cached, and restarts its eviction timer.
+   *
+   * @param ctx The request context.
+   * @param value The new payload.
+   * @return The cache entry now holding the payload.
+   * @throws IllegalArgumentException If the id is not cached.
+   */
+  public CacheEntry update(RequestContext ctx, JsonNode value) {
+    Domain domain = domains.get(ctx.getDomain());
+    if (domain == null) {
       throw new IllegalArgumentException();
     }
-    touch(ctx);
-    dataCache.get(ctx.getDomain()).put(ctx.getId(), value);
+    Id key = copyOf(ctx.getId());
+    CacheEntry entry = entryOf(domain, value);
+    mutate(domain, key,
+        () -> {
+          CacheEntry replaced = domain.data.replace(key, entry);
+          if (replaced == null) {
+            entry.release();
+            throw new IllegalArgumentException();
+          }
+          replaced.release();
+          extend(domain, key, System.currentTimeMillis() + timeToLive, true);
+          domain.recordWrite(key, entry);
+        },
+        log -> log.append(
+            CacheJournal.Operation.UPDATE, domain.name, key, entry.getPayloadBytes()));
+    return entry;
   }
 
-  // Update the last access time of cached data in the cache
-  public synchronized void touch(RequestContext ctx) {
-    Id key = new Id();
-    key.setId(ctx.getId().getId());
-    key.setVersion("");
-    timeCache.get(ctx.getDomain()).subMap(key, true, allOf(key), true)
-        .replaceAll((k, v) -> System.currentTimeMillis());
+  // Update the last access time of cached data in the cache, for all versions of the id. Only the
+  // deadline moves; the expiry wheel notices that lazily when the old deadline comes due.
+  public void touch(RequestContext ctx) {
+    Domain domain = domains.get(ctx.getDomain());
+    if (domain == null) {
+      return;
+    }
+    CacheJournal log = journal;
+    if (extend(domain, ctx.getId(), System.currentTimeMillis() + timeToLive, log == null)) {
+      Id key = new Id();
+      key.setId(ctx.getId().getId());
+      log.append(CacheJournal.Operation.TOUCH, domain.name, key, null);
+    }
   }
 
-  public synchronized JsonNode getLatestOf(RequestContext ctx) {
-    if (dataCache.get(ctx.getDomain()) == null) {
-      LOG.info(NO_CACHE_ENTRY_FOUND_FOR_DOMAIN, ctx.getDomain());
-      return null;
+  // Moves the deadline of all versions of an id forward. Returns true if the move is to be
+  // journaled, which is once a deadline has moved by a tick since it was last journaled, unless
+  // the caller's own record already carries the new deadline.
+  private boolean extend(Domain domain, Id id, long deadline, boolean recorded) {
+    // A null version sorts first, so this key starts the range of all versions of the id
+    Id key = new Id();
+    key.setId(id.getId());
+    boolean due = false;
+    for (Expiry expiry : domain.times.subMap(key, true, allOf(key), true).values()) {
+      expiry.deadline = Math.max(expiry.deadline, deadline);
+      if (recorded) {
+        expiry.journaled = deadline;
+      } else if (deadline - expiry.journaled >= evictionTick) {
+        expiry.journaled = deadline;
+        due = true;
+      }
     }
-    TreeMap<Id, JsonNode> map = dataCache.get(ctx.getDomain());
-    return map.subMap(ctx.getId(), true, allOf(ctx.getId()), true).lastEntry().getValue();
+    return due;
   }
 
-  public synchronized String getLatestVersion(String domain, Id key) {
-    if (dataCache.get(domain) == null) {
-      LOG.info(NO_CACHE_ENTRY_FOUND_FOR_DOMAIN, domain);
-      return null;
-    }
-    TreeMap<Id, JsonNode> map = dataCache.get(domain);
-    return map.subMap(key, true, allOf(key), true)
-        .lastEntry()
-        .getValue()
-        .get(VERSION)
-        .asText();
+  public JsonNode getLatestOf(RequestContext ctx) {
+    CacheEntry latest = getLatestEntryOf(ctx);
+    return latest == null ? null : latest.getPayload();
   }
 
-  public synchronized JsonNode get(RequestContext ctx) {
+  /**
+   * Returns the cache entry of the latest version of the id of the request context.
+   *
+   * @param ctx The request context.
+   * @return The cache entry, or null if no version of the id is cached.
+   */
+  public CacheEntry getLatestEntryOf(RequestContext ctx) {
+    Map.Entry<Id, CacheEntry> latest = latestEntryOf(ctx.getDomain(), ctx.getId());
+    return latest == null ? null : latest.getValue();
+  }
+
+  public String getLatestVersion(String domain, Id key) {
+    Map.Entry<Id, CacheEntry> latest = latestEntryOf(domain, key);
+    return latest == null ? null : latest.getKey().getVersion();
+  }
+
+  public JsonNode get(RequestContext ctx) {
+    CacheEntry entry = getEntry(ctx);
+    return entry == null ? null : entry.getPayload();
+  }
+
+  /**
+   * Returns the cache entry of the id of the request context. Unlike {@link #get(RequestContext)},
+   * this gives access to the serialized payload without building a tree in off-heap mode.
+   *
+   * @param ctx The request context.
+   * @return The cache entry, or null if not cached.
+   */
+  public CacheEntry getEntry(RequestContext ctx) {
     LOG.info("Getting cache entry for " + DOMAIN_WITH, ctx.getDomain(), ctx.getId());
 
-    if (dataCache.get(ctx.getDomain()) == null) {
+    Domain domain = domains.get(ctx.getDomain());
+    if (domain == null) {
       LOG.info(NO_CACHE_ENTRY_FOUND_FOR_DOMAIN, ctx.getDomain());
       return null;
     }
-    return dataCache.get(ctx.getDomain()).get(ctx.getId());
+    CacheEntry entry = domain.data.get(ctx.getId());
+    if (entry != null) {
+      domain.recordAccess(ctx.getId());
+    }
+    return entry;
   }
 
-  public synchronized SortedMap<Id, JsonNode> getAll(String domain) {
-    LOG.info("Getting cache entries for domain = \"{}\". Existing domain list: {}", domain, dataCache.keySet());
+  /**
+   * Returns an immutable snapshot of the entries of the given domain. Later writes to the domain
+   * are not reflected in the returned map.
+   *
+   * @param domain The domain identifier.
+   * @return The entries of the domain, ordered by id, or an empty map if the domain is unknown.
+   */
+  public SortedMap<Id, JsonNode> getAll(String domain) {
+    LOG.info("Getting cache entries for domain = \"{}\". Existing domain list: {}", domain, domains.keySet());
 
-    if (dataCache.get(domain) == null) {
+    Domain domainCache = domains.get(domain);
+    if (domainCache == null) {
       LOG.info(NO_CACHE_ENTRY_FOUND_FOR_DOMAIN, domain);
       return Collections.emptySortedMap();
     }
-    return dataCache.get(domain);
+    return new MappedSortedMap<>(domainCache.data.snapshot().getEntries(), CacheEntry::getPayload);
   }
 
   /**
-   * Clears a specific cache entry identified by domain and key.
+   * Returns an immutable snapshot of the given domain, giving access to its entries and secondary
+   * indexes as of a single point in time.
    *
-   * @param domain The domain identifier for the cache entry.
-   * @param key The key identifier for the cache entry.
+   * @param domain The domain identifier.
+   * @return The snapshot of the domain, which is empty if the domain is unknown.
    */
-  private synchronized void clear(String domain, Id key) {
-    dataCache.get(domain).remove(key);
-    timeCache.get(domain).remove(key);
-    LOG.info("Old cache entry for " + DOMAIN_WITH + " is removed", domain, key);
+  public DomainSnapshot getSnapshot(String domain) {
+    Domain domainCache = domains.get(domain);
+    return domainCache == null
+        ? DomainSnapshot.empty(indexConfig.forDomain(domain))
+        : domainCache.data.snapshot();
   }
 
-  public synchronized void clear(RequestContext ctx) {
-    dataCache.get(ctx.getDomain()).remove(ctx.getId());
-    timeCache.get(ctx.getDomain()).remove(ctx.getId());
+  public void clear(RequestContext ctx) {
+    Domain domain = domains.get(ctx.getDomain());
+    if (domain == null) {
+      return;
+    }
+    mutate(domain, ctx.getId(),
+        () -> remove(domain, ctx.getId(), RemovalCause.EXPLICIT),
+        log -> log.append(CacheJournal.Operation.CLEAR, domain.name, ctx.getId(), null));
     LOG.info("Old cache entry for " + DOMAIN_WITH + " is removed", ctx.getDomain(),
         ctx.getId());
   }
 
-  // Evicts old cache entries based on time-to-live (TTL)
-  private void evictOldItems() {
-    LOG.info(START_EVICTING_OLD_CACHE_ITEMS);
-    timeCache
-        .keySet()
-        .forEach(
-            domain -> {
-              for (Iterator<Id> iterator = timeCache.get(domain).keySet().iterator();
-                  iterator.hasNext(); ) {
-                Id key = iterator.next();
-                long t = timeCache.get(domain).get(key);
-                if (System.currentTimeMillis() - t >= timeToLive) {
-                  iterator.remove();
-                  clear(domain, key);
-                }
-              }
-            });
-    LOG.info("Evicting old cache items completed.");
+  /**
+   * Writes all cached payloads, with their last touch times, into a snapshot file. Each domain is
+   * written as of a single point in time, but writes to other domains, and touches, that happen
+   * while the snapshot is taken may or may not be included.
+   *
+   * @param file The snapshot file to replace.
+   * @return The number of payloads written.
+   * @throws IOException If the snapshot cannot be written.
+   */
+  public synchronized long snapshot(Path file) throws IOException {
+    long start = System.currentTimeMillis();
+    long count = CacheSnapshot.write(file, domains.values().stream()
+        .flatMap(domain -> domain.data.snapshot().getEntries().entrySet().stream()
+            .map(e -> recordOf(domain, e)))
+        .filter(Objects::nonNull)
+        .iterator());
+    LOG.info("Cache snapshot of {} entries written to {} in {} ms", count, file,
+        System.currentTimeMillis() - start);
+    return count;
+  }
+
+  /**
+   * Adds the payloads of a snapshot file to the cache, parsing them in parallel. Payloads whose
+   * time-to-live has passed since their last touch, and ids that are already cached, are skipped.
+   *
+   * @param file The snapshot file to read.
+   * @return The number of payloads restored.
+   * @throws IOException If the file cannot be read, or is not a complete snapshot.
+   */
+  public long restore(Path file) throws IOException {
+    long start = System.currentTimeMillis();
+    List<CacheSnapshot.Record> records = CacheSnapshot.read(file);
+    long count = records.parallelStream()
+        .filter(record -> record.getLastTouch() + timeToLive > start)
+        .filter(this::restore)
+        .count();
+    LOG.info("Cache restored {} of {} entries from {} in {} ms", count, records.size(), file,
+        System.currentTimeMillis() - start);
+    return count;
+  }
+
+  /**
+   * Returns the counters of the entries removed from the cache, by cause.
+   *
+   * @return The cache statistics.
+   */
+  public CacheStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Evicts the cache entry of an expiry that came due on the expiry wheel. Expiries that are no
+   * longer registered, because the entry was cleared or replaced meanwhile, are ignored. The
+   * eviction holds the striped lock of the id, so that it is journaled in order with the writes of
+   * the id.
+   *
+   * @param expiry The expiry that came due.
+   */
+  private void expire(Expiry expiry) {
+    Domain domain = domains.get(expiry.domain);
+    if (domain == null) {
+      return;
+    }
+    synchronized (journalLockOf(expiry.key)) {
+      domain.write(
+          () -> {
+            if (domain.times.remove(expiry.key, expiry)) {
+              release(domain.data.remove(expiry.key));
+              domain.recordRemoval(expiry.key, RemovalCause.EXPIRED);
+              domain.journalEviction(expiry.key, RemovalCause.EXPIRED);
+              LOG.info("Old cache entry for " + DOMAIN_WITH + " is removed", expiry.domain, expiry.key);
+            }
+          });
+    }
+  }
+
+  // Evicts from the largest domains until the cache as a whole is within its limits again
+  private void enforceGlobalLimits() {
+    while (limits.isExceededBy(usage)) {
+      RemovalCause cause =
+          usage.getEntries() > limits.getMaxEntries() ? RemovalCause.SIZE : RemovalCause.WEIGHT;
+      Domain largest = null;
+      for (Domain domain : domains.values()) {
+        if (largest == null || sizeOf(domain, cause) > sizeOf(largest, cause)) {
+          largest = domain;
+        }
+      }
+      if (largest == null) {
+        return;
+      }
+      largest.policy.lock();
+      try {
+        if (!largest.policy.evictOne(cause)) {
+          return;
+        }
+      } finally {
+        largest.policy.unlock();
+      }
+    }
+  }
+
+  private static long sizeOf(Domain domain, RemovalCause cause) {
+    return cause == RemovalCause.SIZE ? domain.policy.getEntries() : domain.policy.getWeight();
+  }
+
+  private Map.Entry<Id, CacheEntry> latestEntryOf(String domainName, Id key) {
+    Domain domain = domains.get(domainName);
+    if (domain == null) {
+      LOG.info(NO_CACHE_ENTRY_FOUND_FOR_DOMAIN, domainName);
+      return null;
+    }
+    Map.Entry<Id, CacheEntry> latest =
+        ((PersistentSortedMap<Id, CacheEntry>)
+            domain.data.snapshot().getEntries().subMap(key, allOf(key)))
+            .lastEntry();
+    if (latest != null) {
+      domain.recordAccess(latest.getKey());
+    }
+    return latest;
+  }
+
+  // Runs a mutation of an id; with a journal, also appends it, in the order the id was mutated.
+  // The append is part of the domain's write, so that evictions by the policy, which are journaled
+  // under its lock, are ordered with the mutations as well. A mutation that cannot be journaled
+  // stays applied, and is only reported as not durable.
+  private void mutate(Domain domain, Id key, Runnable mutation,
+      Function<CacheJournal, CompletableFuture<Void>> append) {
+    CacheJournal log = journal;
+    if (log == null) {
+      domain.write(mutation);
+      return;
+    }
+    List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+    synchronized (journalLockOf(key)) {
+      domain.write(
+          () -> {
+            mutation.run();
+            durable.add(append.apply(log));
+          });
+    }
+    awaitDurable(durable.get(0), domain.name, key);
+  }
+
+  /**
+   * Waits for a journaled mutation to become durable. A failure is logged rather than thrown, as
+   * the mutation has been applied already, and will be served until the cache restarts.
+   *
+   * @param durable The future returned by the journal for the mutation.
+   * @param domain The domain of the mutated id.
+   * @param key The mutated id.
+   * @return true if the mutation is durable, false if the journal failed to write it.
+   */
+  static boolean awaitDurable(CompletableFuture<Void> durable, String domain, Id key) {
+    try {
+      durable.join();
+      return true;
+    } catch (CompletionException e) {
+      LOG.warn("Cache entry for " + DOMAIN_WITH + " is changed, but not durable: {}", domain, key,
+          e.getCause() == null ? e : e.getCause().toString());
+      return false;
+    }
+  }
+
+  // Taken before the lock of a policy, never after, so that the two cannot deadlock
+  private Object journalLockOf(Id key) {
+    return journalLocks[(key.hashCode() & Integer.MAX_VALUE) % journalLocks.length];
+  }
+
+  // Removes an entry if cached; called on the domain's write
+  private void remove(Domain domain, Id key, RemovalCause cause) {
+    CacheEntry removed = domain.data.remove(key);
+    if (removed != null) {
+      removed.release();
+      domain.times.remove(key);
+      domain.recordRemoval(key, cause);
+    }
+  }
+
+  // Applies a journaled mutation as of the time it was journaled. Replay runs over a snapshot that
+  // may already contain the mutation, so a put overwrites, and a clear, touch or eviction tolerates
+  // a missing id.
+  void replay(CacheJournal.Record record) {
+    Domain domain = domains.computeIfAbsent(record.getDomain(), Domain::new);
+    Id key = record.getId();
+    long deadline = record.getTime() + timeToLive;
+    switch (record.getOperation()) {
+      case CLEAR:
+        domain.write(() -> remove(domain, key, RemovalCause.EXPLICIT));
+        return;
+      case EVICT:
+        RemovalCause cause = RemovalCause.valueOf(new String(record.getPayload(), UTF_8));
+        domain.write(() -> remove(domain, key, cause));
+        return;
+      case TOUCH:
+        extend(domain, key, deadline, true);
+        return;
+      default:
+        break;
+    }
+    if (deadline <= System.currentTimeMillis()) {
+      domain.write(() -> remove(domain, key, RemovalCause.EXPIRED));
+      return;
+    }
+    CacheEntry entry =
+        entryOf(domain, JacksonUtil.readAsTree(ByteBuffer.wrap(record.getPayload())));
+    domain.write(
+        () -> {
+          release(domain.data.put(key, entry));
+          Expiry expiry = domain.times.get(key);
+          if (expiry == null) {
+            expiry = new Expiry(domain.name, key, deadline);
+            domain.times.put(key, expiry);
+            expiryWheel.schedule(expiry);
+          } else {
+            expiry.deadline = deadline;
+          }
+          extend(domain, key, deadline, true);
+          domain.recordWrite(key, entry);
+        });
+  }
+
+  // Adds an entry that is not cached yet, and schedules its expiry; called on the domain's write
+  private boolean insert(Domain domain, Id key, CacheEntry entry, long deadline) {
+    if (domain.data.putIfAbsent(key, entry) != null) {
+      entry.release();
+      return false;
+    }
+    Expiry expiry = new Expiry(domain.name, key, deadline);
+    domain.times.put(key, expiry);
+    expiryWheel.schedule(expiry);
+    domain.recordWrite(key, entry);
+    return true;
+  }
+
+  private boolean restore(CacheSnapshot.Record record) {
+    Domain domain = domains.computeIfAbsent(record.getDomain(), Domain::new);
+    CacheEntry entry =
+        entryOf(domain, JacksonUtil.readAsTree(ByteBuffer.wrap(record.getPayload())));
+    boolean[] inserted = new boolean[1];
+    domain.write(() -> inserted[0] =
+        insert(domain, record.getId(), entry, record.getLastTouch() + timeToLive));
+    return inserted[0];
+  }
+
+  // Returns null for an entry that was removed while the snapshot was being taken
+  private CacheSnapshot.Record recordOf(Domain domain, Map.Entry<Id, CacheEntry> entry) {
+    Expiry expiry = domain.times.get(entry.getKey());
+    if (expiry == null) {
+      return null;
+    }
+    return new CacheSnapshot.Record(domain.name, entry.getKey(), expiry.deadline - timeToLive,
+        entry.getValue().getPayloadBytes());
+  }
+
+  private CacheEntry entryOf(Domain domain, JsonNode value) {
+    CacheEntry entry = offHeapStore == null ? new HeapEntry(value) : offHeapStore.store(value);
+    return domain.data.index(entry, value);
+  }
+
+  private static void release(CacheEntry entry) {
+    if (entry != null) {
+      entry.release();
+    }
+  }
+
+  // Keys must not change once they are inside a sorted map, so never store the caller's instance
+  private static Id copyOf(Id key) {
+    Id copy = new Id();
+    copy.setId(key.getId());
+    copy.setVersion(key.getVersion());
+    return copy;
   }
 
   private static Id allOf(Id key) {
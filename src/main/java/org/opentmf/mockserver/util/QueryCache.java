@@ -0,0 +1,148 @@
+package org.opentmf.mockserver.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache of values computed from a text, such as parsed query parameters keyed by the
+ * text of the parameter, or list responses keyed by their normalized query. Lookups are lock free;
+ * when the cache grows beyond its capacity, the least recently used values are evicted.
+ *
+ * <p>A cache of large values, such as response bodies, can also be bounded by the total weight of
+ * its values, given by a weigher, in which case a value heavier than that bound is not cached at
+ * all.
+ *
+ * <p>Cached values are shared between requests, so they must be immutable.
+ *
+ * @param <V> The type of the cached values.
+ * @author Gokhan Demir
+ */
+public final class QueryCache<V> {
+
+  private static final class Node<V> {
+    private final V value;
+    private final long weight;
+    private volatile long lastAccess;
+
+    private Node(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+      this.lastAccess = System.nanoTime();
+    }
+  }
+
+  private final String name;
+  private final int capacity;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final Map<String, Node<V>> nodes = new ConcurrentHashMap<>();
+  private final AtomicLong weight = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public QueryCache(String name, int capacity) {
+    this(name, capacity, Long.MAX_VALUE, value -> 0L);
+  }
+
+  /**
+   * Creates a cache bounded both by the number of its values and by their total weight.
+   *
+   * @param name The name of the cache.
+   * @param capacity The maximum number of values.
+   * @param maxWeight The maximum total weight of the values.
+   * @param weigher The weight of a value, such as its size in bytes.
+   */
+  public QueryCache(String name, int capacity, long maxWeight, ToLongFunction<V> weigher) {
+    this.name = name;
+    this.capacity = capacity;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+  }
+
+  /**
+   * Returns the parsed value of a query parameter, parsing it only if it is not cached. A parser
+   * that throws leaves nothing in the cache, nor does one that returns a value heavier than the
+   * maximum weight of the cache.
+   *
+   * @param text The text of the parameter.
+   * @param parser The parser to use on a miss.
+   * @return The parsed value.
+   */
+  public V get(String text, Function<String, V> parser) {
+    Node<V> node = nodes.get(text);
+    if (node != null) {
+      hits.increment();
+      node.lastAccess = System.nanoTime();
+      return node.value;
+    }
+    misses.increment();
+    V value = parser.apply(text);
+    long valueWeight = weigher.applyAsLong(value);
+    if (valueWeight > maxWeight) {
+      return value;
+    }
+    Node<V> created = new Node<>(value, valueWeight);
+    node = nodes.putIfAbsent(text, created);
+    if (node != null) {
+      return node.value;
+    }
+    if (weight.addAndGet(valueWeight) > maxWeight || nodes.size() > capacity) {
+      evict();
+    }
+    return created.value;
+  }
+
+  // Misses are rare once the working set is cached, so a scan for the oldest entry is cheap enough
+  private synchronized void evict() {
+    while (nodes.size() > capacity || weight.get() > maxWeight) {
+      Map.Entry<String, Node<V>> oldest = null;
+      for (Map.Entry<String, Node<V>> e : nodes.entrySet()) {
+        if (oldest == null || e.getValue().lastAccess - oldest.getValue().lastAccess < 0) {
+          oldest = e;
+        }
+      }
+      if (oldest == null) {
+        return;
+      }
+      if (nodes.remove(oldest.getKey(), oldest.getValue())) {
+        weight.addAndGet(-oldest.getValue().weight);
+        evictions.increment();
+      }
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  public long weight() {
+    return weight.get();
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return name + "{size=" + size() + ", weight=" + weight() + ", hits=" + hitCount() + ", misses=" + missCount()
+        + ", evictions=" + evictionCount() + '}';
+  }
+}
@@ -0,0 +1,72 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.mockserver.model.BinaryBody;
+import org.mockserver.model.ConnectionOptions;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+import org.mockserver.model.MediaType;
+
+/**
+ * Utility class for generating successful responses from already serialized JSON payloads. The
+ * bodies hold only the serialized bytes, which are written to the wire as they are; they are never
+ * decoded into a string, unless the body is asked for one, as when it is logged.
+ *
+ * @author Yusuf BOZKURT
+ */
+public class ResponseUtil {
+
+  /** The media type of newline delimited JSON. */
+  public static final MediaType APPLICATION_NDJSON = MediaType.parse("application/x-ndjson");
+
+  // The size of the chunks a chunked body is sent in
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private ResponseUtil() {}
+
+  /**
+   * Constructs an HttpResponse object with the given status code and serialized JSON body. The
+   * bytes are written to the wire as they are, without serializing or decoding the payload again.
+   *
+   * @param statusCode The HTTP status code of the response.
+   * @param json The UTF-8 encoded JSON body.
+   * @return HttpResponse object carrying the JSON body.
+   */
+  public static HttpResponse getJsonResponse(HttpStatusCode statusCode, byte[] json) {
+    return HttpResponse.response()
+        .withStatusCode(statusCode.code())
+        .withContentType(MediaType.APPLICATION_JSON)
+        .withBody(new SerializedBody(json, MediaType.APPLICATION_JSON));
+  }
+
+  /**
+   * Constructs an HttpResponse object with the given status code and newline delimited JSON body.
+   * The body is held in memory in full, and only sent with chunked transfer encoding, so its size
+   * is to be bounded by the caller.
+   *
+   * @param statusCode The HTTP status code of the response.
+   * @param ndjson The UTF-8 encoded lines of JSON.
+   * @return HttpResponse object carrying the body, to be sent in chunks.
+   */
+  public static HttpResponse getNdjsonResponse(HttpStatusCode statusCode, byte[] ndjson) {
+    return HttpResponse.response()
+        .withStatusCode(statusCode.code())
+        .withContentType(APPLICATION_NDJSON)
+        .withBody(new SerializedBody(ndjson, APPLICATION_NDJSON))
+        .withConnectionOptions(ConnectionOptions.connectionOptions().withChunkSize(CHUNK_SIZE));
+  }
+
+  // A binary body of UTF-8 encoded text, which reads back as the text rather than as base64
+  private static final class SerializedBody extends BinaryBody {
+
+    private SerializedBody(byte[] bytes, MediaType contentType) {
+      super(bytes, contentType);
+    }
+
+    @Override
+    public String toString() {
+      return new String(getRawBytes(), UTF_8);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.opentmf.mockserver.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for sorting list query results into pages.
+ *
+ * @author Gokhan Demir
+ */
+public final class SortUtil {
+
+  // A page ending beyond this fraction of the items is cheaper to cut out of a full sort
+  private static final int FULL_SORT_RATIO = 4;
+
+  private SortUtil() {
+  }
+
+  /**
+   * Returns a page of the items in sorted order. Items that compare equal keep their relative
+   * order, as with a stable sort.
+   *
+   * <p>A page near the start of the items is selected with a bounded heap of the first <code>
+   * offset + limit</code> items, in O(n log k) time and O(k) memory. A page further down falls back
+   * to sorting all items. Above the threshold of {@link ParallelUtil}, either is split across the
+   * threads of its pool.
+   *
+   * @param items The items.
+   * @param comparator The sort order.
+   * @param offset The number of sorted items to skip.
+   * @param limit The maximum number of items to return.
+   * @param <T> The type of the items.
+   * @return The items of the page.
+   */
+  public static <T> List<T> sortedPage(
+      List<T> items, Comparator<? super T> comparator, int offset, int limit) {
+    long end = (long) offset + limit;
+    if (ParallelUtil.isParallel(items.size())) {
+      return parallelSortedPage(items, comparator, offset, limit);
+    }
+    if (end * FULL_SORT_RATIO >= items.size()) {
+      return items.stream()
+          .sorted(comparator)
+          .skip(offset)
+          .limit(limit)
+          .collect(Collectors.toList());
+    }
+    List<T> top = selectFirst(items, comparator, (int) end);
+    return top.subList(Math.min(offset, top.size()), top.size());
+  }
+
+  static <T> List<T> parallelSortedPage(
+      List<T> items, Comparator<? super T> comparator, int offset, int limit) {
+    long end = (long) offset + limit;
+    if (end * FULL_SORT_RATIO >= items.size()) {
+      // A parallel sort of an ordered stream is stable as well
+      return ParallelUtil.invoke(() -> items.parallelStream()
+          .sorted(comparator)
+          .skip(offset)
+          .limit(limit)
+          .collect(Collectors.toList()));
+    }
+    // The first items of the whole are among the first items of the parts, which are selected in
+    // parallel, and then concatenated in the order of the parts to keep the selection stable
+    int parts = ParallelUtil.getParallelism();
+    int partSize = (items.size() + parts - 1) / parts;
+    List<List<T>> partitions = new ArrayList<>(parts);
+    for (int from = 0; from < items.size(); from += partSize) {
+      partitions.add(items.subList(from, Math.min(items.size(), from + partSize)));
+    }
+    List<T> merged = new ArrayList<>();
+    ParallelUtil.invoke(() -> partitions.parallelStream()
+        .map(part -> selectFirst(part, comparator, (int) end))
+        .collect(Collectors.toList()))
+        .forEach(merged::addAll);
+    List<T> top = selectFirst(merged, comparator, (int) end);
+    return top.subList(Math.min(offset, top.size()), top.size());
+  }
+
+  /**
+   * Selects the first k items in sorted order, keeping the relative order of equal items.
+   *
+   * @param items The items, which should allow random access.
+   * @param comparator The sort order.
+   * @param k The number of items to select.
+   * @param <T> The type of the items.
+   * @return The first k items, sorted.
+   */
+  static <T> List<T> selectFirst(List<T> items, Comparator<? super T> comparator, int k) {
+    if (k <= 0) {
+      return Collections.emptyList();
+    }
+    // Items are held by position, which breaks ties and so keeps the selection stable
+    Comparator<Integer> order = (a, b) -> {
+      int cmp = comparator.compare(items.get(a), items.get(b));
+      return cmp != 0 ? cmp : Integer.compare(a, b);
+    };
+    // The greatest selected item is on top, ready to be replaced by a lesser one
+    PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, order.reversed());
+    for (int i = 0; i < items.size(); i++) {
+      if (heap.size() < k) {
+        heap.add(i);
+      } else if (order.compare(i, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(i);
+      }
+    }
+    List<Integer> positions = new ArrayList<>(heap);
+    positions.sort(order);
+    List<T> selected = new ArrayList<>(positions.size());
+    positions.forEach(position -> selected.add(items.get(position)));
+    return selected;
+  }
+}
@@ -0,0 +1,135 @@
+package org.opentmf.mockserver.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opentmf.mockserver.model.Id;
+
+class CacheJournalTests {
+
+  @TempDir Path directory;
+
+  @Test
+  void replay_afterRotation_readsRotatedFileFirst() throws IOException {
+    Path file = directory.resolve("cache.journal");
+    CacheJournal journal = CacheJournal.open(file, FsyncPolicy.ALWAYS, 1000L);
+    journal.append(CacheJournal.Operation.PUT, "productOrder", idOf("1"), bytesOf("1")).join();
+    journal.rotate();
+    journal.append(CacheJournal.Operation.UPDATE, "productOrder", idOf("1"), bytesOf("2")).join();
+    journal.append(CacheJournal.Operation.CLEAR, "productOrder", idOf("1"), null).join();
+    journal.close();
+
+    List<CacheJournal.Record> records = new ArrayList<>();
+    long count = CacheJournal.replay(file, records::add);
+
+    assertEquals(3, count);
+    assertEquals(CacheJournal.Operation.PUT, records.get(0).getOperation());
+    assertEquals("{\"id\":\"1\"}", new String(records.get(0).getPayload(), UTF_8));
+    assertEquals(CacheJournal.Operation.UPDATE, records.get(1).getOperation());
+    assertEquals("{\"id\":\"2\"}", new String(records.get(1).getPayload(), UTF_8));
+    assertEquals(CacheJournal.Operation.CLEAR, records.get(2).getOperation());
+    assertEquals("productOrder", records.get(2).getDomain());
+    assertEquals(idOf("1"), records.get(2).getId());
+    assertNull(records.get(2).getPayload());
+  }
+
+  @Test
+  void replay_ofTouchesAndEvictions_keepsTheirOrder() throws IOException {
+    Path file = directory.resolve("cache.journal");
+    CacheJournal journal = CacheJournal.open(file, FsyncPolicy.ALWAYS, 1000L);
+    journal.append(CacheJournal.Operation.PUT, "productOrder", idOf("1"), bytesOf("1")).join();
+    journal.append(CacheJournal.Operation.TOUCH, "productOrder", idOf("1"), null).join();
+    journal.append(CacheJournal.Operation.EVICT, "productOrder", idOf("1"),
+        RemovalCause.WEIGHT.name().getBytes(UTF_8)).join();
+    journal.close();
+
+    List<CacheJournal.Record> records = new ArrayList<>();
+    CacheJournal.replay(file, records::add);
+
+    assertEquals(3, records.size());
+    assertEquals(CacheJournal.Operation.TOUCH, records.get(1).getOperation());
+    assertNull(records.get(1).getPayload());
+    assertEquals(CacheJournal.Operation.EVICT, records.get(2).getOperation());
+    assertEquals("WEIGHT", new String(records.get(2).getPayload(), UTF_8));
+  }
+
+  @Test
+  void replay_ofTornTail_stopsAtLastCompleteRecord() throws IOException {
+    Path file = directory.resolve("cache.journal");
+    CacheJournal journal = CacheJournal.open(file, FsyncPolicy.INTERVAL, 1000L);
+    for (int i = 0; i < 10; i++) {
+      journal.append(CacheJournal.Operation.PUT, "productOrder", idOf(String.valueOf(i)),
+          bytesOf(String.valueOf(i)));
+    }
+    journal.close();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    assertEquals(9, CacheJournal.replay(file, record -> { }));
+  }
+
+  @Test
+  void append_afterAFailedWrite_reportsEveryMutationAsNotDurable() throws IOException {
+    // Every write to /dev/full fails with "No space left on device"
+    Path full = Paths.get("/dev/full");
+    assumeTrue(Files.isWritable(full));
+    CacheJournal journal = CacheJournal.open(full, FsyncPolicy.ALWAYS, 1000L);
+
+    CompletionException first = assertThrows(CompletionException.class, () -> journal
+        .append(CacheJournal.Operation.PUT, "productOrder", idOf("1"), bytesOf("1")).join());
+    CompletionException later = assertThrows(CompletionException.class, () -> journal
+        .append(CacheJournal.Operation.CLEAR, "productOrder", idOf("1"), null).join());
+
+    assertInstanceOf(IOException.class, first.getCause());
+    assertInstanceOf(IOException.class, later.getCause());
+    assertTrue(journal.isFailed());
+    journal.close();
+  }
+
+  @Test
+  void replay_ofCorruptLength_stopsWithoutAllocatingIt() throws IOException {
+    Path file = directory.resolve("cache.journal");
+    CacheJournal journal = CacheJournal.open(file, FsyncPolicy.ALWAYS, 1000L);
+    journal.append(CacheJournal.Operation.PUT, "productOrder", idOf("1"), bytesOf("1")).join();
+    journal.close();
+    assertFalse(journal.isFailed());
+    try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+      DataOutputStream data = new DataOutputStream(out);
+      data.writeInt(Integer.MAX_VALUE);
+      data.writeInt(0);
+      data.write(new byte[16]);
+    }
+
+    assertEquals(1, CacheJournal.replay(file, record -> { }));
+  }
+
+  private static Id idOf(String id) {
+    Id key = new Id();
+    key.setId(id);
+    return key;
+  }
+
+  private static byte[] bytesOf(String id) {
+    return ("{\"id\":\"" + id + "\"}").getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,65 @@
+package org.opentmf.mockserver.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opentmf.mockserver.model.Id;
+
+class CacheSnapshotTests {
+
+  @TempDir Path directory;
+
+  @Test
+  void writeAndRead_roundTripsRecords() throws IOException {
+    Path file = directory.resolve("cache.snapshot");
+    byte[] large = new byte[200 * 1024];
+    Arrays.fill(large, (byte) 'x');
+    List<CacheSnapshot.Record> records = List.of(
+        new CacheSnapshot.Record("productOrder", idOf("1", null), 1000L, "{\"id\":\"1\"}".getBytes(UTF_8)),
+        new CacheSnapshot.Record("productOffering", idOf("2", "3"), 2000L, large));
+
+    long written = CacheSnapshot.write(file, records.iterator());
+    List<CacheSnapshot.Record> read = CacheSnapshot.read(file);
+
+    assertEquals(2, written);
+    assertEquals(2, read.size());
+    assertEquals("productOrder", read.get(0).getDomain());
+    assertEquals("1", read.get(0).getId().getId());
+    assertNull(read.get(0).getId().getVersion());
+    assertEquals(1000L, read.get(0).getLastTouch());
+    assertArrayEquals(records.get(0).getPayload(), read.get(0).getPayload());
+    assertEquals(idOf("2", "3"), read.get(1).getId());
+    assertArrayEquals(large, read.get(1).getPayload());
+  }
+
+  @Test
+  void read_ofTruncatedFile_throws() throws IOException {
+    Path file = directory.resolve("cache.snapshot");
+    CacheSnapshot.write(file, List.of(
+        new CacheSnapshot.Record("productOrder", idOf("1", null), 1000L, "{}".getBytes(UTF_8)))
+        .iterator());
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 4);
+    }
+
+    assertThrows(IOException.class, () -> CacheSnapshot.read(file));
+  }
+
+  private static Id idOf(String id, String version) {
+    Id key = new Id();
+    key.setId(id);
+    key.setVersion(version);
+    return key;
+  }
+}
@@ -0,0 +1,31 @@
+package org.opentmf.mockserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.AuditFieldUtil;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class HeapEntryTests {
+
+  @Test
+  void getPayloadBytes_isReusedUntilRevisionChanges() {
+    ObjectNode payload = JacksonUtil.createObjectNode();
+    payload.put("id", "1");
+    AuditFieldUtil.setCreateFields(payload);
+    HeapEntry entry = new HeapEntry(payload);
+
+    byte[] first = entry.getPayloadBytes();
+    byte[] second = entry.getPayloadBytes();
+    payload.put("state", "completed");
+    AuditFieldUtil.setUpdateFields(payload);
+    byte[] third = entry.getPayloadBytes();
+
+    assertSame(first, second);
+    assertNotSame(second, third);
+    assertArrayEquals(JacksonUtil.writeAsBytes(payload), third);
+  }
+}
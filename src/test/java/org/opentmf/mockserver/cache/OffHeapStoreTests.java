@@ -0,0 +1,58 @@
+package org.opentmf.mockserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class OffHeapStoreTests {
+
+  @Test
+  void store_roundTripsPayload() {
+    OffHeapStore store = new OffHeapStore(1024);
+    ObjectNode payload = payloadOf("1");
+    payload.put("updatedDate", "2024-01-01T00:00:00Z");
+
+    CacheEntry entry = store.store(payload);
+
+    assertEquals(payload, entry.getPayload());
+    assertArrayEquals(JacksonUtil.writeAsBytes(payload), entry.getPayloadBytes());
+    assertEquals(entry.getPayloadBytes().length, entry.getWeight());
+    assertTrue(entry.isUpdated());
+  }
+
+  @Test
+  void release_ofMostEntries_compactsSlabs() {
+    OffHeapStore store = new OffHeapStore(1024);
+    List<CacheEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      entries.add(store.store(payloadOf(String.valueOf(i))));
+    }
+    long allocated = store.getAllocatedBytes();
+
+    for (int i = 0; i < entries.size(); i++) {
+      if (i % 10 != 0) {
+        entries.get(i).release();
+      }
+    }
+
+    assertTrue(store.getAllocatedBytes() < allocated);
+    assertTrue(store.getLiveBytes() * 2 >= store.getAllocatedBytes() - 1024);
+    for (int i = 0; i < entries.size(); i += 10) {
+      assertEquals(payloadOf(String.valueOf(i)), entries.get(i).getPayload());
+    }
+  }
+
+  private static ObjectNode payloadOf(String id) {
+    ObjectNode payload = JacksonUtil.createObjectNode();
+    payload.put("id", id);
+    payload.put("href", "/productOrder/" + id);
+    payload.put("state", "acknowledged");
+    return payload;
+  }
+}
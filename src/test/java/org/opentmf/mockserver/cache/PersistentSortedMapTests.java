@@ -0,0 +1,88 @@
+package org.opentmf.mockserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class PersistentSortedMapTests {
+
+  @Test
+  void withAndWithout_matchTreeMap() {
+    Random random = new Random(42);
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    PersistentSortedMap<Integer, Integer> actual = PersistentSortedMap.empty();
+
+    for (int i = 0; i < 5000; i++) {
+      int key = random.nextInt(500);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        actual = actual.without(key);
+      } else {
+        expected.put(key, i);
+        actual = actual.with(key, i);
+      }
+    }
+
+    assertEquals(expected, actual);
+    assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+    assertEquals(expected.subMap(100, 200), actual.subMap(100, 200));
+    assertEquals(expected.subMap(100, 200).size(), actual.subMap(100, 200).size());
+    assertEquals(expected.headMap(50).size(), actual.headMap(50).size());
+    assertEquals(expected.tailMap(450).lastKey(), actual.tailMap(450).lastKey());
+    assertEquals(expected.subMap(100, 200).firstKey(), actual.subMap(100, 200).firstKey());
+  }
+
+  @Test
+  void descendingIterator_walksRangeBackwards() {
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    PersistentSortedMap<Integer, Integer> actual = PersistentSortedMap.empty();
+    for (int i = 0; i < 300; i += 3) {
+      expected.put(i, i);
+      actual = actual.with(i, i);
+    }
+
+    List<Integer> all = new ArrayList<>();
+    actual.descendingIterator().forEachRemaining(e -> all.add(e.getKey()));
+    List<Integer> range = new ArrayList<>();
+    ((PersistentSortedMap<Integer, Integer>) actual.subMap(100, 200))
+        .descendingIterator()
+        .forEachRemaining(e -> range.add(e.getKey()));
+
+    assertEquals(new ArrayList<>(expected.descendingKeySet()), all);
+    assertEquals(new ArrayList<>(expected.subMap(100, true, 200, false).descendingKeySet()), range);
+  }
+
+  @Test
+  void with_leavesPreviousVersionUntouched() {
+    PersistentSortedMap<String, Integer> before =
+        PersistentSortedMap.<String, Integer>empty().with("a", 1).with("b", 2);
+
+    PersistentSortedMap<String, Integer> after = before.with("c", 3).without("a").with("b", 20);
+
+    assertEquals(2, before.size());
+    assertEquals(1, before.get("a"));
+    assertEquals(2, before.get("b"));
+    assertNull(before.get("c"));
+    assertEquals(2, after.size());
+    assertEquals(20, after.get("b"));
+    assertNull(((PersistentSortedMap<String, Integer>) after.subMap("x", "z")).lastEntry());
+  }
+
+  @Test
+  void with_keepsTheMappedKeyWhenReplacingAValue() {
+    String mapped = new String("a");
+    String equal = new String("a");
+
+    PersistentSortedMap<String, Integer> replaced =
+        PersistentSortedMap.<String, Integer>empty().with(mapped, 1).with(equal, 2);
+
+    assertEquals(2, replaced.get("a"));
+    assertSame(mapped, replaced.firstKey());
+  }
+}
@@ -0,0 +1,98 @@
+package org.opentmf.mockserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTests {
+
+  private static final long TICK = 10L;
+
+  @Test
+  void advance_beforeDeadline_expiresNothing() {
+    List<Item> expired = new ArrayList<>();
+    TimingWheel<Item> wheel = new TimingWheel<>(TICK, 1000L, expired::add);
+    long now = System.currentTimeMillis();
+    wheel.schedule(new Item(now + 500));
+
+    assertEquals(0, wheel.advance(now + 400));
+    assertTrue(expired.isEmpty());
+  }
+
+  @Test
+  void advance_afterDeadline_expiresWithinOneTick() {
+    List<Item> expired = new ArrayList<>();
+    TimingWheel<Item> wheel = new TimingWheel<>(TICK, 1000L, expired::add);
+    long now = System.currentTimeMillis();
+    Item item = new Item(now + 500);
+    wheel.schedule(item);
+
+    assertEquals(1, wheel.advance(now + 500 + TICK));
+    assertEquals(List.of(item), expired);
+    assertEquals(0, wheel.advance(now + 2000));
+  }
+
+  @Test
+  void advance_withMovedDeadline_reschedulesInsteadOfExpiring() {
+    List<Item> expired = new ArrayList<>();
+    TimingWheel<Item> wheel = new TimingWheel<>(TICK, 1000L, expired::add);
+    long now = System.currentTimeMillis();
+    Item item = new Item(now + 500);
+    wheel.schedule(item);
+    item.deadline = now + 900;
+
+    assertEquals(0, wheel.advance(now + 600));
+    assertEquals(1, wheel.advance(now + 900 + TICK));
+    assertEquals(List.of(item), expired);
+  }
+
+  @Test
+  void advance_withDeadlineBeyondHorizon_waitsForLaterRevolution() {
+    List<Item> expired = new ArrayList<>();
+    TimingWheel<Item> wheel = new TimingWheel<>(TICK, 100L, expired::add);
+    long now = System.currentTimeMillis();
+    wheel.schedule(new Item(now + 5000));
+
+    assertEquals(0, wheel.advance(now + 4000));
+    assertEquals(1, wheel.advance(now + 5000 + TICK));
+  }
+
+  @Test
+  void advance_whenExpiryFails_retriesOnNextTickWithoutDroppingOthers() {
+    List<Item> expired = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    Item failing = new Item(now + 500);
+    boolean[] failed = new boolean[1];
+    TimingWheel<Item> wheel = new TimingWheel<>(TICK, 1000L, item -> {
+      if (item == failing && !failed[0]) {
+        failed[0] = true;
+        throw new IllegalStateException("journal unavailable");
+      }
+      expired.add(item);
+    });
+    Item other = new Item(now + 500);
+    wheel.schedule(failing);
+    wheel.schedule(other);
+
+    assertEquals(1, wheel.advance(now + 500));
+    assertEquals(List.of(other), expired);
+    assertEquals(1, wheel.advance(now + 500 + TICK));
+    assertEquals(List.of(other, failing), expired);
+  }
+
+  private static class Item implements TimingWheel.Timeout {
+    private long deadline;
+
+    private Item(long deadline) {
+      this.deadline = deadline;
+    }
+
+    @Override
+    public long getDeadline() {
+      return deadline;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.opentmf.mockserver.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class WTinyLfuPolicyTests {
+
+  private final Set<Integer> resident = new HashSet<>();
+  private final Map<RemovalCause, Integer> evictions = new HashMap<>();
+  private final WTinyLfuPolicy.Usage usage = new WTinyLfuPolicy.Usage();
+
+  @Test
+  void recordWrite_overMaximumEntries_evictsBySize() {
+    WTinyLfuPolicy<Integer> policy = policy(100, Long.MAX_VALUE);
+
+    for (int i = 0; i < 150; i++) {
+      write(policy, i, 1);
+    }
+
+    assertEquals(100, policy.getEntries());
+    assertEquals(100, resident.size());
+    assertEquals(100, usage.getEntries());
+    assertEquals(50, evictions.get(RemovalCause.SIZE));
+  }
+
+  @Test
+  void recordWrite_overMaximumWeight_evictsByWeight() {
+    WTinyLfuPolicy<Integer> policy = policy(Long.MAX_VALUE, 1000);
+
+    for (int i = 0; i < 30; i++) {
+      write(policy, i, 100);
+    }
+
+    assertTrue(policy.getWeight() <= 1000);
+    assertEquals(20, evictions.get(RemovalCause.WEIGHT));
+  }
+
+  @Test
+  void recordWrite_withBurstOfOneOffEntries_keepsFrequentlyUsedEntries() {
+    WTinyLfuPolicy<Integer> policy = policy(100, Long.MAX_VALUE);
+    for (int i = 0; i < 100; i++) {
+      write(policy, i, 1);
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int hot = 0; hot < 10; hot++) {
+        policy.recordAccess(hot);
+      }
+    }
+
+    for (int i = 1000; i < 2000; i++) {
+      write(policy, i, 1);
+    }
+
+    for (int hot = 0; hot < 10; hot++) {
+      assertTrue(resident.contains(hot), "hot entry " + hot + " was evicted");
+    }
+  }
+
+  @Test
+  void evictOne_withEntries_evictsAndReportsCause() {
+    WTinyLfuPolicy<Integer> policy = policy(100, Long.MAX_VALUE);
+    write(policy, 1, 1);
+
+    policy.lock();
+    try {
+      assertTrue(policy.evictOne(RemovalCause.WEIGHT));
+      assertFalse(policy.evictOne(RemovalCause.WEIGHT));
+    } finally {
+      policy.unlock();
+    }
+    assertEquals(1, evictions.get(RemovalCause.WEIGHT));
+    assertTrue(resident.isEmpty());
+  }
+
+  private WTinyLfuPolicy<Integer> policy(long maximumEntries, long maximumWeight) {
+    return new WTinyLfuPolicy<>(
+        maximumEntries,
+        maximumWeight,
+        usage,
+        (key, cause) -> {
+          resident.remove(key);
+          evictions.merge(cause, 1, Integer::sum);
+        });
+  }
+
+  private void write(WTinyLfuPolicy<Integer> policy, int key, long weight) {
+    policy.lock();
+    try {
+      resident.add(key);
+      policy.recordWrite(key, weight);
+    } finally {
+      policy.unlock();
+    }
+  }
+}
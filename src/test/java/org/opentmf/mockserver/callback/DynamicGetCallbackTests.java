@@ -8,13 +8,17 @@ import static org.opentmf.mockserver.util.Constants.THREE_SECONDS;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.opentmf.mockserver.util.JacksonUtil;
+import org.opentmf.mockserver.util.PayloadCache;
 import uk.org.webcompere.systemstubs.environment.EnvironmentVariables;
 import uk.org.webcompere.systemstubs.jupiter.SystemStub;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
@@ -127,6 +131,86 @@ class DynamicGetCallbackTests {
     assertEquals("completed", responseJson.get("status").asText());
   }
 
+  @Test
+  void shouldLeaveEarlierSnapshotsUnchangedWhenStatusIsChanged() {
+    // Given
+    String domain = "serviceInventory";
+    String id = UUID.randomUUID().toString();
+    addDataToCache(domain, id, "created");
+    JsonNode before = PayloadCache.getInstance().getAll(domain).entrySet().stream()
+        .filter(e -> id.equals(e.getKey().getId()))
+        .findFirst()
+        .orElseThrow()
+        .getValue();
+
+    // When
+    HttpResponse httpResponse =
+        dynamicGetCallback.handle(new HttpRequest().withPath("/" + domain + "/" + id));
+
+    // Then
+    assertEquals("active",
+        JacksonUtil.readAsTree(httpResponse.getBodyAsString()).get("status").asText());
+    assertEquals("created", before.get("status").asText());
+    assertNull(before.get("updatedDate"));
+  }
+
+  @Test
+  void shouldReturnNotModifiedWhenETagMatches() {
+    // Given
+    String domain = "serviceInventory";
+    String id = UUID.randomUUID().toString();
+    addDataToCache(domain, id, "created");
+    HttpRequest httpRequest = new HttpRequest().withPath("/" + domain + "/" + id);
+
+    // When (the first read changes the state, and is tagged after the change)
+    String firstTag = dynamicGetCallback.handle(httpRequest).getFirstHeader("ETag");
+    HttpResponse second = dynamicGetCallback.handle(httpRequest);
+    String tag = second.getFirstHeader("ETag");
+    HttpResponse revalidated = dynamicGetCallback.handle(
+        new HttpRequest().withPath("/" + domain + "/" + id).withHeader("If-None-Match", tag));
+    HttpResponse projected = dynamicGetCallback.handle(new HttpRequest()
+        .withPath("/" + domain + "/" + id)
+        .withQueryStringParameter("fields", "status")
+        .withHeader("If-None-Match", tag));
+
+    // Then
+    assertEquals(firstTag, tag);
+    assertEquals(304, revalidated.getStatusCode());
+    assertNull(revalidated.getBody());
+    assertEquals(tag, revalidated.getFirstHeader("ETag"));
+    assertEquals(200, projected.getStatusCode());
+    assertNotEquals(tag, projected.getFirstHeader("ETag"));
+  }
+
+  @Test
+  void shouldCompressLargePayloadOnceWhenGzipIsAccepted() throws IOException {
+    // Given
+    String domain = "testDomain";
+    String id = UUID.randomUUID().toString();
+    addDataToCache(domain, id, "completed".repeat(500));
+    HttpRequest plain = new HttpRequest().withPath("/" + domain + "/" + id);
+    HttpRequest gzip = new HttpRequest()
+        .withPath("/" + domain + "/" + id)
+        .withHeader("Accept-Encoding", "deflate;q=0.5, gzip");
+
+    // When
+    HttpResponse identity = dynamicGetCallback.handle(plain);
+    HttpResponse compressed = dynamicGetCallback.handle(gzip);
+    HttpResponse again = dynamicGetCallback.handle(gzip);
+
+    // Then
+    assertEquals("", identity.getFirstHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", identity.getFirstHeader("Vary"));
+    assertEquals("gzip", compressed.getFirstHeader("Content-Encoding"));
+    assertNotEquals(identity.getFirstHeader("ETag"), compressed.getFirstHeader("ETag"));
+    byte[] body = compressed.getBody().getRawBytes();
+    assertTrue(body.length < identity.getBody().getRawBytes().length);
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      assertArrayEquals(identity.getBody().getRawBytes(), in.readAllBytes());
+    }
+    assertSame(body, again.getBody().getRawBytes());
+  }
+
   @Test
   void testHandle_whenIdFromPayloadAndCacheNotNull() {
     // Given
@@ -2,14 +2,18 @@ package org.opentmf.mockserver.callback;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.opentmf.mockserver.util.Constants.ADDITIONAL_FIELDS;
+import static org.opentmf.mockserver.util.Constants.ATTRIBUTE_FILTERING;
 import static org.opentmf.mockserver.util.Constants.CACHE_DURATION_MILLIS;
 import static org.opentmf.mockserver.util.Constants.THREE_SECONDS;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
@@ -17,6 +21,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.opentmf.mockserver.util.JacksonUtil;
+import org.opentmf.mockserver.util.QueryCache;
 import uk.org.webcompere.systemstubs.environment.EnvironmentVariables;
 import uk.org.webcompere.systemstubs.jupiter.SystemStub;
 import uk.org.webcompere.systemstubs.jupiter.SystemStubsExtension;
@@ -30,7 +35,8 @@ class DynamicGetListCallbackTests {
   private static final EnvironmentVariables TEST_ENV_VARIABLES =
       new EnvironmentVariables(
           CACHE_DURATION_MILLIS, THREE_SECONDS,
-          ADDITIONAL_FIELDS, "project"
+          ADDITIONAL_FIELDS, "project",
+          ATTRIBUTE_FILTERING, "true"
       );
 
   @Test
@@ -174,6 +180,243 @@ class DynamicGetListCallbackTests {
     }
   }
 
+  @Test
+  void testIndexedSortMatchesFullSort() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 20);
+
+    for (String sort : new String[] {"createdDate", "-createdDate"}) {
+      // When (a second sort field on a constant keeps the order, but rules the index out)
+      HttpResponse indexed = dynamicGetListCallback.handle(pageRequest(domain, sort));
+      HttpResponse sorted = dynamicGetListCallback.handle(pageRequest(domain, sort + ",name"));
+
+      // Then
+      assertEquals(200, indexed.getStatusCode());
+      assertEquals(sorted.getBodyAsString(), indexed.getBodyAsString());
+      assertEquals("20", indexed.getFirstHeader("X-Total-Count"));
+      assertEquals("items 6-10/20", indexed.getFirstHeader("Content-Range"));
+    }
+  }
+
+  private static HttpRequest pageRequest(String domain, String sort) {
+    return new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("limit", "5")
+        .withQueryStringParameter("offset", "5")
+        .withQueryStringParameter("sort", sort);
+  }
+
+  @Test
+  void testCursorPagingMatchesOffsetPaging() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 20);
+
+    for (String sort : new String[] {"createdDate", "-createdDate", "-randomNumber", "isEven"}) {
+      // When
+      List<String> byOffset = new ArrayList<>();
+      for (int offset = 0; offset < 20; offset += 3) {
+        HttpResponse response = dynamicGetListCallback.handle(new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("limit", "3")
+            .withQueryStringParameter("offset", String.valueOf(offset))
+            .withQueryStringParameter("sort", sort));
+        JacksonUtil.readAsTree(response.getBodyAsString())
+            .forEach(node -> byOffset.add(node.get("id").asText()));
+      }
+      List<String> byCursor = new ArrayList<>();
+      String cursor = null;
+      int pages = 0;
+      do {
+        HttpRequest request = new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("limit", "3")
+            .withQueryStringParameter("sort", sort);
+        if (cursor != null) {
+          request.withQueryStringParameter("cursor", cursor);
+        }
+        HttpResponse response = dynamicGetListCallback.handle(request);
+        assertEquals(200, response.getStatusCode());
+        int first = byCursor.size() + 1;
+        JacksonUtil.readAsTree(response.getBodyAsString())
+            .forEach(node -> byCursor.add(node.get("id").asText()));
+        assertEquals("items " + first + "-" + byCursor.size() + "/20",
+            response.getFirstHeader("Content-Range"));
+        cursor = response.getFirstHeader("X-Next-Cursor");
+        if (!cursor.isEmpty()) {
+          assertTrue(response.getFirstHeader("Link")
+              .endsWith("cursor=" + cursor + ">; rel=\"next\""));
+        }
+        pages++;
+      } while (!cursor.isEmpty());
+
+      // Then
+      assertEquals(7, pages);
+      assertEquals(byOffset, byCursor);
+    }
+  }
+
+  @Test
+  void testHandleWithInvalidCursor() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 5);
+    HttpResponse firstPage = dynamicGetListCallback.handle(new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("limit", "2"));
+    String cursor = firstPage.getFirstHeader("X-Next-Cursor");
+
+    // When
+    HttpResponse garbled = dynamicGetListCallback.handle(new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("cursor", "not-a-cursor"));
+    HttpResponse otherSort = dynamicGetListCallback.handle(new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("sort", "name")
+        .withQueryStringParameter("cursor", cursor));
+
+    // Then
+    assertFalse(cursor.isEmpty());
+    assertEquals(400, garbled.getStatusCode());
+    assertEquals(400, otherSort.getStatusCode());
+  }
+
+  @Test
+  void testHandleWithNdjson() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 12);
+    HttpResponse json = dynamicGetListCallback.handle(pageRequest(domain, "createdDate"));
+
+    for (String fields : new String[] {null, "orderNumber"}) {
+      HttpRequest httpRequest = pageRequest(domain, "createdDate")
+          .withHeader("Accept", "application/x-ndjson");
+      if (fields != null) {
+        httpRequest.withQueryStringParameter("fields", fields);
+      }
+
+      // When
+      HttpResponse httpResponse = dynamicGetListCallback.handle(httpRequest);
+
+      // Then
+      assertEquals(200, httpResponse.getStatusCode());
+      assertEquals("application/x-ndjson", httpResponse.getFirstHeader("Content-Type"));
+      assertTrue(httpResponse.getConnectionOptions().getChunkSize() > 0);
+      assertEquals("items 6-10/12", httpResponse.getFirstHeader("Content-Range"));
+      String[] lines = httpResponse.getBodyAsString().split("\n");
+      JsonNode array = JacksonUtil.readAsTree(json.getBodyAsString());
+      assertEquals(5, lines.length);
+      for (int i = 0; i < lines.length; i++) {
+        JsonNode line = JacksonUtil.readAsTree(lines[i]);
+        assertEquals(array.get(i).get("id"), line.get("id"));
+        assertEquals(array.get(i).get("orderNumber"), line.get("orderNumber"));
+        assertEquals(fields == null, line.has("description"));
+      }
+    }
+  }
+
+  @Test
+  void testHandleCountOnly() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 12);
+    HttpRequest head = new HttpRequest().withMethod("HEAD").withPath("/" + domain);
+    HttpRequest evenCount = new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("limit", "0")
+        .withQueryStringParameter("isEven", "true");
+
+    // When
+    HttpResponse headResponse = dynamicGetListCallback.handle(head);
+    HttpResponse evenResponse = dynamicGetListCallback.handle(evenCount);
+
+    // Then
+    assertEquals(200, headResponse.getStatusCode());
+    assertNull(headResponse.getBody());
+    assertEquals("12", headResponse.getFirstHeader("X-Total-Count"));
+    assertEquals(200, evenResponse.getStatusCode());
+    assertEquals("[]", evenResponse.getBodyAsString());
+    assertEquals("6", evenResponse.getFirstHeader("X-Total-Count"));
+    assertEquals("items */6", evenResponse.getFirstHeader("Content-Range"));
+  }
+
+  @Test
+  void testRepeatedQueryIsServedFromResultCache() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 3);
+    HttpRequest first = new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("sort", "-orderNumber")
+        .withQueryStringParameter("isEven", "true");
+    HttpRequest reordered = new HttpRequest()
+        .withPath("/" + domain)
+        .withQueryStringParameter("isEven", "true")
+        .withQueryStringParameter("sort", "-orderNumber");
+    QueryCache<HttpResponse> results = DynamicGetListCallback.getResultCache();
+
+    // When
+    HttpResponse computed = dynamicGetListCallback.handle(first);
+    long hits = results.hitCount();
+    HttpResponse cached = dynamicGetListCallback.handle(reordered);
+    long hitsAfterRepeat = results.hitCount();
+    addDataToCache(domain, 1);
+    HttpResponse recomputed = dynamicGetListCallback.handle(first);
+
+    // Then
+    assertEquals(hits + 1, hitsAfterRepeat);
+    assertEquals(hitsAfterRepeat, results.hitCount());
+    assertEquals(computed.getBodyAsString(), cached.getBodyAsString());
+    assertEquals("2", cached.getFirstHeader("X-Total-Count"));
+    assertEquals("3", recomputed.getFirstHeader("X-Total-Count"));
+  }
+
+  @Test
+  void testHandleWithIfNoneMatch() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 3);
+    String tag = dynamicGetListCallback.handle(pageRequest(domain, "createdDate"))
+        .getFirstHeader("ETag");
+
+    // When
+    HttpResponse unchanged = dynamicGetListCallback.handle(
+        pageRequest(domain, "createdDate").withHeader("If-None-Match", "\"other\", " + tag));
+    addDataToCache(domain, 1);
+    HttpResponse changed = dynamicGetListCallback.handle(
+        pageRequest(domain, "createdDate").withHeader("If-None-Match", tag));
+
+    // Then
+    assertFalse(tag.isEmpty());
+    assertEquals(304, unchanged.getStatusCode());
+    assertNull(unchanged.getBody());
+    assertEquals(200, changed.getStatusCode());
+    assertFalse(tag.equals(changed.getFirstHeader("ETag")));
+  }
+
+  @Test
+  void testHandleWithIfNoneMatchOnUnknownDomain() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    String tag = dynamicGetListCallback.handle(pageRequest(domain, "createdDate"))
+        .getFirstHeader("ETag");
+
+    // When
+    HttpResponse repeated = dynamicGetListCallback.handle(pageRequest(domain, "createdDate"));
+    HttpResponse unchanged = dynamicGetListCallback.handle(
+        pageRequest(domain, "createdDate").withHeader("If-None-Match", tag));
+    addDataToCache(domain, 1);
+    HttpResponse changed = dynamicGetListCallback.handle(
+        pageRequest(domain, "createdDate").withHeader("If-None-Match", tag));
+
+    // Then
+    assertEquals(tag, repeated.getFirstHeader("ETag"));
+    assertEquals(304, unchanged.getStatusCode());
+    assertEquals(200, changed.getStatusCode());
+    assertFalse(tag.equals(changed.getFirstHeader("ETag")));
+  }
+
   @Test
   void testHandleWithFilter() {
     // Given
@@ -195,6 +438,118 @@ class DynamicGetListCallbackTests {
     assertEquals(10, arrayNode.size());
   }
 
+  @Test
+  void testHandleWithIndexedFilter() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 10);
+    HttpRequest acknowledged =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("filter", "$[?(@.state == 'acknowledged')]");
+    HttpRequest completed =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("filter", "$[?(@.state == 'completed')]");
+
+    // When
+    HttpResponse acknowledgedResponse = dynamicGetListCallback.handle(acknowledged);
+    HttpResponse completedResponse = dynamicGetListCallback.handle(completed);
+
+    // Then
+    assertEquals(200, acknowledgedResponse.getStatusCode());
+    assertEquals("10", acknowledgedResponse.getFirstHeader("X-Total-Count"));
+    assertEquals(200, completedResponse.getStatusCode());
+    assertEquals("0", completedResponse.getFirstHeader("X-Total-Count"));
+  }
+
+  @Test
+  void testHandleWithAttributeFilter() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 20);
+    HttpRequest httpRequest =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("isEven", "true")
+            .withQueryStringParameter("orderNumber.gte", "4")
+            .withQueryStringParameter("orderNumber.lt", "12")
+            .withQueryStringParameter("sort", "orderNumber");
+
+    // When
+    HttpResponse httpResponse = dynamicGetListCallback.handle(httpRequest);
+
+    // Then
+    assertEquals(200, httpResponse.getStatusCode());
+    assertEquals("4", httpResponse.getFirstHeader("X-Total-Count"));
+    ArrayNode arrayNode = (ArrayNode) JacksonUtil.readAsTree(httpResponse.getBodyAsString());
+    assertEquals(4, arrayNode.get(0).get("orderNumber").asInt());
+    assertEquals(10, arrayNode.get(3).get("orderNumber").asInt());
+  }
+
+  @Test
+  void testHandleWithAttributeFilterList() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 10);
+    HttpRequest httpRequest =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("orderNumber", "1,3,5,50")
+            .withQueryStringParameter("state", "acknowledged");
+
+    // When
+    HttpResponse httpResponse = dynamicGetListCallback.handle(httpRequest);
+
+    // Then
+    assertEquals(200, httpResponse.getStatusCode());
+    assertEquals("3", httpResponse.getFirstHeader("X-Total-Count"));
+  }
+
+  @Test
+  void testHandleIgnoresUnderscoreParameters() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 10);
+    HttpRequest httpRequest =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("_", "1700000000")
+            .withQueryStringParameter("state", "acknowledged");
+
+    // When
+    HttpResponse httpResponse = dynamicGetListCallback.handle(httpRequest);
+
+    // Then
+    assertEquals(200, httpResponse.getStatusCode());
+    assertEquals("10", httpResponse.getFirstHeader("X-Total-Count"));
+  }
+
+  @Test
+  void testHandleIgnoresAttributeFiltersUnlessEnabled() {
+    // Given
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, 10);
+    HttpRequest httpRequest =
+        new HttpRequest()
+            .withPath("/" + domain)
+            .withQueryStringParameter("correlationId", "42")
+            .withQueryStringParameter("fields.x", "1");
+
+    // When
+    TEST_ENV_VARIABLES.set(ATTRIBUTE_FILTERING, "false");
+    HttpResponse httpResponse;
+    try {
+      httpResponse = dynamicGetListCallback.handle(httpRequest);
+    } finally {
+      TEST_ENV_VARIABLES.set(ATTRIBUTE_FILTERING, "true");
+    }
+
+    // Then
+    assertEquals(200, httpResponse.getStatusCode());
+    assertEquals("10", httpResponse.getFirstHeader("X-Total-Count"));
+  }
+
   @Test
   void testHandleWithFields() {
     // Given
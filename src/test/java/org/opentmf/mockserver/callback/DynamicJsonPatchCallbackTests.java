@@ -2,6 +2,7 @@ package org.opentmf.mockserver.callback;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.opentmf.mockserver.util.Constants.ADDITIONAL_FIELDS;
 import static org.opentmf.mockserver.util.Constants.CACHE_DURATION_MILLIS;
 import static org.opentmf.mockserver.util.Constants.THREE_SECONDS;
@@ -55,11 +56,16 @@ class DynamicJsonPatchCallbackTests {
     httpRequest.withPath(domain + "/" + id).withBody(requestBody);
     RequestContext ctx = RequestContext.initialize(httpRequest, true, JacksonUtil.readAsTree(requestBody));
 
+    JsonNode before = CACHE.get(ctx);
+
     // When
     HttpResponse httpResponse = callback.handle(httpRequest);
 
     // Then
     assertEquals(200, httpResponse.getStatusCode());
+    assertEquals("GB", before.at("/contactMedium/0/characteristic/country").asText());
+    assertEquals("23", before.at("/contactMedium/0/characteristic/street1").asText());
+    assertSame(before.get("account"), CACHE.get(ctx).get("account"));
 
     JsonNode updatedServiceOrderJson = CACHE.get(ctx);
     assertNotNull(updatedServiceOrderJson);
@@ -78,6 +84,31 @@ class DynamicJsonPatchCallbackTests {
     assertEquals("US", secondContactMediumNode.path("characteristic").path("country").asText());
   }
 
+  @Test
+  void shouldLeavePayloadUnchangedWhenPatchFails() {
+    // Given
+    String id = UUID.randomUUID().toString();
+    String domain = RandomStringUtils.randomAlphabetic(5);
+    addDataToCache(domain, id);
+    String requestBody =
+        "[\n"
+            + "    { \"op\": \"remove\", \"path\": \"/contactMedium/0\" },\n"
+            + "    { \"op\": \"replace\", \"path\": \"/name\", \"value\": \"Changed\" },\n"
+            + "    { \"op\": \"test\", \"path\": \"/account/0/id\", \"value\": \"other\" }\n"
+            + "]";
+
+    httpRequest.withPath(domain + "/" + id).withBody(requestBody);
+    RequestContext ctx = RequestContext.initialize(httpRequest, true, null);
+    String before = JacksonUtil.writeAsString(CACHE.get(ctx));
+
+    // When
+    HttpResponse httpResponse = callback.handle(httpRequest);
+
+    // Then
+    assertEquals(400, httpResponse.getStatusCode());
+    assertEquals(before, JacksonUtil.writeAsString(CACHE.get(ctx)));
+  }
+
   @Test
   void testApplyPatch_withNonExistId() {
     // Given
@@ -1,7 +1,10 @@
 package org.opentmf.mockserver.callback;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import java.util.UUID;
@@ -92,6 +95,35 @@ class DynamicMergePatchCallbackTests {
     assertEquals("Organization", secondRelatedPartyNode.path("@referredType").asText());
   }
 
+  @Test
+  void shouldLeaveSharedPayloadUnchangedWhilePatching() {
+    // Given
+    String id = UUID.randomUUID().toString();
+    String domain = "mockserver";
+    String requestBody = "{ \"name\": null, \"engagedParty\": { \"name\": \"Changed\" } }";
+
+    httpRequest.withPath(domain + "/" + id).withBody(requestBody);
+    RequestContext ctx = RequestContext.initialize(httpRequest, true, null);
+    CACHE.put(ctx, getInitialJson(id));
+    JsonNode before = CACHE.get(ctx);
+
+    // When
+    HttpResponse httpResponse = callback.handle(httpRequest);
+    HttpResponse malformed = callback.handle(
+        new HttpRequest().withPath(domain + "/" + id).withBody("{ \"name\": "));
+
+    // Then
+    assertEquals(200, httpResponse.getStatusCode());
+    assertEquals(400, malformed.getStatusCode());
+    JsonNode after = CACHE.get(ctx);
+    assertFalse(after.has("name"));
+    assertEquals("Changed", after.path("engagedParty").path("name").asText());
+    assertEquals("Organization", after.path("engagedParty").path("@referredType").asText());
+    assertTrue(before.has("name"));
+    assertEquals("{{organizationName}}", before.path("engagedParty").path("name").asText());
+    assertSame(before.get("contactMedium"), after.get("contactMedium"));
+  }
+
   @Test
   void testApplyPatch_withNonExistId() {
     // Given
@@ -0,0 +1,64 @@
+package org.opentmf.mockserver.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class JsonPathFilterTests {
+
+  private static List<JsonNode> payloads() {
+    List<JsonNode> payloads = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      payloads.add(JacksonUtil.readAsTree("{\"id\":\"" + i + "\",\"number\":" + i
+          + ",\"state\":\"" + (i % 2 == 0 ? "completed" : "acknowledged") + "\""
+          + (i < 3 ? ",\"relatedParty\":[{\"id\":\"p" + i + "\"}]" : "") + "}"));
+    }
+    return payloads;
+  }
+
+  @Test
+  void apply_predicateKeepsOriginalInstances() {
+    List<JsonNode> payloads = payloads();
+    JsonPathFilter filter =
+        JsonPathFilter.compile("$[?(@.state == 'completed' && @.number > 0)]");
+
+    List<JsonNode> result = filter.apply(payloads);
+
+    assertTrue(filter.isPerPayload());
+    assertEquals(2, result.size());
+    assertSame(payloads.get(2), result.get(0));
+    assertSame(payloads.get(4), result.get(1));
+  }
+
+  @Test
+  void apply_predicateOnMissingOrNestedFields() {
+    List<JsonNode> payloads = payloads();
+
+    assertEquals(1, JsonPathFilter.compile("$[?(@.relatedParty[0].id == 'p1')]")
+        .apply(payloads).size());
+    assertEquals(3, JsonPathFilter.compile("$[?(@.relatedParty)]").apply(payloads).size());
+    assertEquals(4, JsonPathFilter.compile("$[?(@.number < 2 || @.number >= 4)]")
+        .apply(payloads).size());
+    assertFalse(JsonPathFilter.compile("$[?(@.missing == 'x')]").matches(payloads.get(0)));
+  }
+
+  @Test
+  void apply_nonPredicateRunsOnTheWholeArray() {
+    List<JsonNode> payloads = payloads();
+    JsonPathFilter filter = JsonPathFilter.compile("$[1:3]");
+
+    List<JsonNode> result = filter.apply(payloads);
+
+    assertFalse(filter.isPerPayload());
+    assertEquals(2, result.size());
+    assertSame(payloads.get(1), result.get(0));
+    assertSame(payloads.get(2), result.get(1));
+  }
+}
@@ -0,0 +1,161 @@
+package org.opentmf.mockserver.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.cache.CacheEntry;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.cache.DomainStore;
+import org.opentmf.mockserver.cache.HeapEntry;
+import org.opentmf.mockserver.cache.IndexConfig;
+import org.opentmf.mockserver.filter.QueryPlan.Kind;
+import org.opentmf.mockserver.model.Id;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class QueryPlannerTests {
+
+  private static final Set<String> BY_CREATED_DATE = Set.of("createdDate");
+
+  private static DomainSnapshot snapshotOf(int count) {
+    DomainStore store = new DomainStore(IndexConfig.parse("*:state,relatedParty.id,amount")
+        .forDomain("productOrder"));
+    for (int i = 0; i < count; i++) {
+      ObjectNode payload = JacksonUtil.createObjectNode();
+      payload.put("id", String.format("%04d", i));
+      payload.put("state", i % 50 == 0 ? "completed" : "acknowledged");
+      payload.put("amount", i);
+      payload.put("createdDate", String.format("2026-01-01T00:%02d:00Z", i % 60));
+      payload.putArray("relatedParty").addObject().put("id", String.valueOf(i % 3));
+      Id key = new Id();
+      key.setId(payload.get("id").asText());
+      store.put(key, store.index(new HeapEntry(payload), payload));
+    }
+    return store.snapshot();
+  }
+
+  private static List<JsonNode> matching(DomainSnapshot snapshot, QueryPlan plan,
+      AttributeFilter filter) {
+    Collection<CacheEntry> candidates = plan.findCandidates(snapshot);
+    return candidates.stream()
+        .map(CacheEntry::getPayload)
+        .filter(filter::matches)
+        .collect(Collectors.toList());
+  }
+
+  private static AttributeFilter filterOf(String name, String value) {
+    return new AttributeFilter(List.of(AttributeCondition.parse(name, value)));
+  }
+
+  @Test
+  void plan_usesSelectiveIndex() {
+    DomainSnapshot snapshot = snapshotOf(200);
+    AttributeFilter filter = filterOf("state", "completed");
+
+    QueryPlan plan =
+        QueryPlanner.plan(snapshot, filter.toIndexLookups(), BY_CREATED_DATE, true);
+
+    assertEquals(Kind.INDEX_LOOKUP, plan.getKind());
+    assertEquals(4, plan.findCandidates(snapshot).size());
+    assertEquals(4, matching(snapshot, plan, filter).size());
+  }
+
+  @Test
+  void plan_picksMostSelectiveIndex() {
+    DomainSnapshot snapshot = snapshotOf(200);
+    AttributeFilter filter = new AttributeFilter(List.of(
+        AttributeCondition.parse("relatedParty.id", "1"),
+        AttributeCondition.parse("amount.lt", "10")));
+
+    QueryPlan plan =
+        QueryPlanner.plan(snapshot, filter.toIndexLookups(), BY_CREATED_DATE, true);
+
+    assertEquals(Kind.INDEX_LOOKUP, plan.getKind());
+    assertEquals(10, plan.findCandidates(snapshot).size());
+    assertEquals(3, matching(snapshot, plan, filter).size());
+  }
+
+  @Test
+  void plan_scansInOrderWhenNoIndexIsSelective() {
+    DomainSnapshot snapshot = snapshotOf(200);
+    AttributeFilter filter = filterOf("state", "acknowledged");
+
+    QueryPlan ordered =
+        QueryPlanner.plan(snapshot, filter.toIndexLookups(), BY_CREATED_DATE, true);
+    QueryPlan unordered =
+        QueryPlanner.plan(snapshot, filter.toIndexLookups(), Set.of("-amount"), true);
+    QueryPlan sliced =
+        QueryPlanner.plan(snapshot, filter.toIndexLookups(), BY_CREATED_DATE, false);
+
+    assertEquals(Kind.ORDERED_SCAN, ordered.getKind());
+    assertEquals(Kind.FULL_SCAN, unordered.getKind());
+    assertEquals(Kind.FULL_SCAN, sliced.getKind());
+    List<JsonNode> matches = matching(snapshot, ordered, filter);
+    assertEquals(196, matches.size());
+    for (int i = 1; i < matches.size(); i++) {
+      assertTrue(matches.get(i - 1).get("createdDate").asText()
+          .compareTo(matches.get(i).get("createdDate").asText()) <= 0);
+    }
+  }
+
+  @Test
+  void indexLookups_findEveryMatch() {
+    DomainSnapshot snapshot = snapshotOf(120);
+    String[][] conditions = {
+        {"amount", "5,7"}, {"amount.gt", "100"}, {"amount.lte", "3"}, {"state", "completed"},
+        {"state.gte", "b"}, {"relatedParty.id", "2"}, {"relatedParty.id.lt", "1"}};
+
+    for (String[] condition : conditions) {
+      AttributeFilter filter = filterOf(condition[0], condition[1]);
+      long expected = snapshot.getEntries().values().stream()
+          .map(CacheEntry::getPayload)
+          .filter(filter::matches)
+          .count();
+      long found = filter.toIndexLookups().get(0).find(snapshot).values().stream()
+          .map(CacheEntry::getPayload)
+          .filter(filter::matches)
+          .count();
+      assertEquals(expected, found, condition[0] + "=" + condition[1]);
+    }
+  }
+
+  @Test
+  void countExact_ofAttributeLookup_countsTheMatchesWithoutReadingThem() {
+    DomainSnapshot snapshot = snapshotOf(200);
+    String[][] conditions = {
+        {"amount", "5,7"}, {"amount.lt", "20"}, {"state", "completed"}, {"state.gte", "b"},
+        {"relatedParty.id.gt", "1"}};
+
+    for (String[] condition : conditions) {
+      AttributeFilter filter = filterOf(condition[0], condition[1]);
+      long expected = snapshot.getEntries().values().stream()
+          .map(CacheEntry::getPayload)
+          .filter(filter::matches)
+          .count();
+      QueryPlan lookup = new QueryPlan(Kind.INDEX_LOOKUP, filter.toIndexLookups().get(0), null,
+          false);
+      assertEquals(expected, lookup.countExact(snapshot), condition[0] + "=" + condition[1]);
+    }
+  }
+
+  @Test
+  void countExact_ofInexactLookupOrScan_isUnknown() {
+    DomainSnapshot snapshot = snapshotOf(200);
+    IndexLookup filterLookup =
+        FilterPlan.compile("$[?(@.state == 'completed')]").getIndexLookup();
+
+    QueryPlan lookup = new QueryPlan(Kind.INDEX_LOOKUP, filterLookup, null, false);
+    QueryPlan scan = QueryPlanner.plan(
+        snapshot, filterOf("state", "acknowledged").toIndexLookups(), Set.of(), true);
+
+    assertEquals(-1, lookup.countExact(snapshot));
+    assertEquals(Kind.FULL_SCAN, scan.getKind());
+    assertEquals(-1, scan.countExact(snapshot));
+  }
+}
@@ -0,0 +1,68 @@
+package org.opentmf.mockserver.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class SortSpecTests {
+
+  private static List<String> sortedIds(String sort, String... payloads) {
+    List<JsonNode> nodes = new ArrayList<>();
+    for (String payload : payloads) {
+      nodes.add(JacksonUtil.readAsTree(payload));
+    }
+    return SortSpec.parse(sort).sortedPage(nodes, 0, nodes.size()).stream()
+        .map(node -> node.get("id").asText())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void parse_keepsDeclaredOrder() {
+    assertEquals(
+        List.of("-b", "a", "c.d"), new ArrayList<>(SortSpec.parse("-b,a,c.d").getCriteria()));
+  }
+
+  @Test
+  void sortedPage_comparesNumbersWithoutTruncation() {
+    assertEquals(List.of("1", "2", "3", "4"), sortedIds("n",
+        "{\"id\":\"3\",\"n\":1.7}",
+        "{\"id\":\"1\",\"n\":1.2}",
+        "{\"id\":\"4\",\"n\":9000000000}",
+        "{\"id\":\"2\",\"n\":1.5}"));
+  }
+
+  @Test
+  void sortedPage_comparesDateTimesByInstant() {
+    // As text, the shorter fraction would sort after the longer one
+    assertEquals(List.of("1", "2", "3"), sortedIds("createdDate",
+        "{\"id\":\"2\",\"createdDate\":\"2026-01-01T10:00:00.120Z\"}",
+        "{\"id\":\"3\",\"createdDate\":\"2026-01-01T12:00:00.1205+01:00\"}",
+        "{\"id\":\"1\",\"createdDate\":\"2026-01-01T10:00:00Z\"}"));
+  }
+
+  @Test
+  void sortedPage_putsMissingValuesLastInBothDirections() {
+    String[] payloads = {
+        "{\"id\":\"a\",\"rank\":2}",
+        "{\"id\":\"b\"}",
+        "{\"id\":\"c\",\"rank\":1}",
+        "{\"id\":\"d\",\"rank\":null}"};
+
+    assertEquals(List.of("c", "a", "b", "d"), sortedIds("rank", payloads));
+    assertEquals(List.of("a", "c", "b", "d"), sortedIds("-rank", payloads));
+  }
+
+  @Test
+  void sortedPage_sortsOnNestedFieldsInDeclaredOrder() {
+    assertEquals(List.of("3", "1", "2", "4"), sortedIds("-owner.name,size",
+        "{\"id\":\"1\",\"owner\":{\"name\":\"b\"},\"size\":1}",
+        "{\"id\":\"2\",\"owner\":{\"name\":\"b\"},\"size\":2}",
+        "{\"id\":\"3\",\"owner\":{\"name\":\"c\"},\"size\":9}",
+        "{\"id\":\"4\",\"owner\":{\"name\":\"a\"},\"size\":0}"));
+  }
+}
@@ -0,0 +1,110 @@
+package org.opentmf.mockserver.patch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class JsonPatchEngineTests {
+
+  private static final String DOCUMENT = "{\"id\":\"1\",\"state\":\"acknowledged\","
+      + "\"note\":[{\"text\":\"a\"},{\"text\":\"b\"}],\"a~b\":{\"c/d\":1},\"price\":10}";
+
+  @Test
+  void apply_changesTheDocumentInPlace() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+    JsonNode firstNote = document.get("note").get(0);
+
+    JsonNode patched = JsonPatchEngine.apply(document, JacksonUtil.readAsTree("["
+        + "{\"op\":\"test\",\"path\":\"/price\",\"value\":10.0},"
+        + "{\"op\":\"replace\",\"path\":\"/state\",\"value\":\"completed\"},"
+        + "{\"op\":\"add\",\"path\":\"/note/-\",\"value\":{\"text\":\"c\"}},"
+        + "{\"op\":\"add\",\"path\":\"/note/0\",\"value\":{\"text\":\"z\"}},"
+        + "{\"op\":\"remove\",\"path\":\"/a~0b/c~1d\"},"
+        + "{\"op\":\"copy\",\"from\":\"/note/1\",\"path\":\"/firstNote\"},"
+        + "{\"op\":\"move\",\"from\":\"/price\",\"path\":\"/total\"}"
+        + "]"), false);
+
+    assertSame(document, patched);
+    assertSame(firstNote, document.get("note").get(1));
+    assertEquals("{\"id\":\"1\",\"state\":\"completed\",\"note\":[{\"text\":\"z\"},{\"text\":\"a\"},"
+        + "{\"text\":\"b\"},{\"text\":\"c\"}],\"a~b\":{},\"firstNote\":{\"text\":\"a\"},"
+        + "\"total\":10}", JacksonUtil.writeAsString(document));
+  }
+
+  @Test
+  void apply_rollsBackEveryChangeWhenAnOperationFails() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    assertThrows(IllegalArgumentException.class, () -> JsonPatchEngine.apply(document,
+        JacksonUtil.readAsTree("["
+            + "{\"op\":\"remove\",\"path\":\"/state\"},"
+            + "{\"op\":\"replace\",\"path\":\"/id\",\"value\":\"2\"},"
+            + "{\"op\":\"remove\",\"path\":\"/note/0\"},"
+            + "{\"op\":\"move\",\"from\":\"/price\",\"path\":\"/note/0/price\"},"
+            + "{\"op\":\"add\",\"path\":\"/extra\",\"value\":true},"
+            + "{\"op\":\"test\",\"path\":\"/extra\",\"value\":false}"
+            + "]"), false));
+
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+  }
+
+  @Test
+  void apply_copiesOnlyTheTouchedPathsOnWrite() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    JsonNode patched = JsonPatchEngine.apply(document, JacksonUtil.readAsTree("["
+        + "{\"op\":\"replace\",\"path\":\"/note/1/text\",\"value\":\"c\"},"
+        + "{\"op\":\"add\",\"path\":\"/note/1/author\",\"value\":\"x\"},"
+        + "{\"op\":\"remove\",\"path\":\"/state\"}"
+        + "]"), true);
+
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+    assertEquals("{\"id\":\"1\",\"note\":[{\"text\":\"a\"},{\"text\":\"c\",\"author\":\"x\"}],"
+        + "\"a~b\":{\"c/d\":1},\"price\":10}", JacksonUtil.writeAsString(patched));
+    assertNotSame(document.get("note"), patched.get("note"));
+    assertSame(document.get("note").get(0), patched.get("note").get(0));
+    assertSame(document.get("a~b"), patched.get("a~b"));
+  }
+
+  @Test
+  void apply_leavesASharedDocumentUnchangedWhenAnOperationFails() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    assertThrows(IllegalArgumentException.class, () -> JsonPatchEngine.apply(document,
+        JacksonUtil.readAsTree("["
+            + "{\"op\":\"remove\",\"path\":\"/note/0\"},"
+            + "{\"op\":\"test\",\"path\":\"/id\",\"value\":\"2\"}"
+            + "]"), true));
+
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+  }
+
+  @Test
+  void apply_rejectsInvalidOperations() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    assertThrows(IllegalArgumentException.class, () -> apply(document, "{}"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"jump\",\"path\":\"/id\"}]"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"add\",\"path\":\"/id\"}]"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"remove\",\"path\":\"/missing\"}]"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"add\",\"path\":\"/note/3\",\"value\":1}]"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"replace\",\"path\":\"/note/01\",\"value\":1}]"));
+    assertThrows(IllegalArgumentException.class,
+        () -> apply(document, "[{\"op\":\"move\",\"from\":\"/note\",\"path\":\"/note/0\"}]"));
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+  }
+
+  private static JsonNode apply(JsonNode document, String patch) {
+    return JsonPatchEngine.apply(document, JacksonUtil.readAsTree(patch), false);
+  }
+}
@@ -0,0 +1,69 @@
+package org.opentmf.mockserver.patch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.opentmf.mockserver.util.JacksonUtil;
+
+class MergePatchEngineTests {
+
+  private static final String DOCUMENT = "{\"title\":\"Goodbye!\",\"author\":{\"givenName\":\"John\","
+      + "\"familyName\":\"Doe\"},\"tags\":[\"example\",\"sample\"],\"content\":\"text\","
+      + "\"related\":{\"id\":\"1\"}}";
+  private static final String PATCH = "{\"title\":\"Hello!\",\"phoneNumber\":\"+01-123-456\","
+      + "\"author\":{\"familyName\":null},\"tags\":[\"example\"],\"content\":{\"a\":null,\"b\":1}}";
+  private static final String PATCHED = "{\"title\":\"Hello!\",\"author\":{\"givenName\":\"John\"},"
+      + "\"tags\":[\"example\"],\"content\":{\"b\":1},\"related\":{\"id\":\"1\"},"
+      + "\"phoneNumber\":\"+01-123-456\"}";
+
+  @Test
+  void apply_mergesInPlace() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+    JsonNode author = document.get("author");
+
+    JsonNode patched = MergePatchEngine.apply(document, PATCH.getBytes(UTF_8), false);
+
+    assertSame(document, patched);
+    assertSame(author, patched.get("author"));
+    assertEquals(PATCHED, JacksonUtil.writeAsString(patched));
+  }
+
+  @Test
+  void apply_copiesOnlyTouchedObjectsOnWrite() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    JsonNode patched = MergePatchEngine.apply(document, PATCH.getBytes(UTF_8), true);
+
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+    assertEquals(PATCHED, JacksonUtil.writeAsString(patched));
+    assertNotSame(document.get("author"), patched.get("author"));
+    assertSame(document.get("related"), patched.get("related"));
+  }
+
+  @Test
+  void apply_replacesTheDocumentWithAPatchThatIsNotAnObject() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    JsonNode patched = MergePatchEngine.apply(document, "[1,2]".getBytes(UTF_8), true);
+
+    assertEquals("[1,2]", JacksonUtil.writeAsString(patched));
+  }
+
+  @Test
+  void apply_rejectsMalformedPatchesWithoutChangesOnWrite() {
+    JsonNode document = JacksonUtil.readAsTree(DOCUMENT);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> MergePatchEngine.apply(document, new byte[0], true));
+    assertThrows(IllegalArgumentException.class,
+        () -> MergePatchEngine.apply(document, "{\"title\":\"x\",".getBytes(UTF_8), true));
+    assertThrows(IllegalArgumentException.class,
+        () -> MergePatchEngine.apply(document, "{\"title\":\"x\"} {}".getBytes(UTF_8), true));
+    assertEquals(DOCUMENT, JacksonUtil.writeAsString(document));
+  }
+}
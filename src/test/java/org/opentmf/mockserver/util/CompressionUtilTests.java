@@ -0,0 +1,77 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+import org.opentmf.mockserver.util.CompressionUtil.Encoding;
+
+class CompressionUtilTests {
+
+  @Test
+  void negotiate_honoursQualities() {
+    assertNull(negotiate(""));
+    assertNull(negotiate("identity, br"));
+    assertEquals(Encoding.GZIP, negotiate("gzip, deflate"));
+    assertEquals(Encoding.DEFLATE, negotiate("gzip;q=0.4, deflate;q=0.8"));
+    assertEquals(Encoding.DEFLATE, negotiate("GZIP;q=0, *"));
+    assertEquals(Encoding.GZIP, negotiate("*;q=0.1"));
+    assertNull(negotiate("gzip;q=0, deflate;q=0"));
+    assertNull(negotiate("*;q=0"));
+  }
+
+  @Test
+  void compress_roundTripsWithPooledDeflaters() throws IOException {
+    byte[] data = "{\"id\":\"42\",\"state\":\"completed\"}".repeat(200).getBytes(UTF_8);
+
+    for (int i = 0; i < 3; i++) {
+      byte[] gzip = CompressionUtil.compress(data, Encoding.GZIP);
+      byte[] deflate = CompressionUtil.compress(data, Encoding.DEFLATE);
+
+      assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+      assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(deflate))));
+    }
+  }
+
+  @Test
+  void encode_compressesLargeSuccessfulBodiesOnly() {
+    byte[] small = "[]".getBytes(UTF_8);
+    byte[] large = "[{\"id\":\"42\"}]".repeat(200).getBytes(UTF_8);
+
+    HttpResponse untouched = ResponseUtil.getJsonResponse(HttpStatusCode.OK_200, small);
+    HttpResponse identity = ResponseUtil.getJsonResponse(HttpStatusCode.OK_200, large);
+    HttpResponse error = ResponseUtil.getJsonResponse(HttpStatusCode.BAD_REQUEST_400, large);
+
+    assertSame(small, CompressionUtil.encode(untouched, Encoding.GZIP).getBody().getRawBytes());
+    assertEquals("", untouched.getFirstHeader("Vary"));
+    assertSame(large, CompressionUtil.encode(identity, null).getBody().getRawBytes());
+    assertEquals("Accept-Encoding", identity.getFirstHeader("Vary"));
+    assertEquals("", CompressionUtil.encode(error, Encoding.GZIP).getFirstHeader("Vary"));
+    HttpResponse compressed = CompressionUtil.encode(
+        ResponseUtil.getJsonResponse(HttpStatusCode.OK_200, large), Encoding.DEFLATE);
+    assertEquals("deflate", compressed.getFirstHeader("Content-Encoding"));
+    assertEquals("application/json", compressed.getFirstHeader("Content-Type"));
+  }
+
+  private static Encoding negotiate(String acceptEncoding) {
+    return CompressionUtil.negotiate(
+        HttpRequest.request().withHeader("Accept-Encoding", acceptEncoding));
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    try (in) {
+      return in.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class JsonListWriterTests {
+
+  private static final List<JsonNode> PAYLOADS = List.of(
+      JacksonUtil.readAsTree("{\"id\":\"1\",\"href\":\"/a/1\",\"name\":\"x\",\"note\":null,"
+          + "\"items\":[{\"n\":1}],\"state\":\"done\"}"),
+      JacksonUtil.readAsTree("{\"state\":\"new\",\"id\":\"2\"}"));
+
+  @Test
+  void write_matchesSerializedArray() {
+    ArrayNode array = JacksonUtil.createArrayNode();
+    PAYLOADS.forEach(array::add);
+
+    assertEquals(JacksonUtil.writeAsString(array),
+        new String(JsonListWriter.write(PAYLOADS, Set.of()), UTF_8));
+    assertEquals("[]", new String(JsonListWriter.write(List.of(), Set.of()), UTF_8));
+  }
+
+  @Test
+  void write_selectsFieldsWithIdAndHref() {
+    assertEquals(
+        "[{\"id\":\"1\",\"href\":\"/a/1\",\"items\":[{\"n\":1}],\"state\":\"done\"},"
+            + "{\"state\":\"new\",\"id\":\"2\"}]",
+        new String(JsonListWriter.write(PAYLOADS, Set.of("state", "items", "absent")), UTF_8));
+  }
+
+  @Test
+  void writeLines_stopsOnceTheMaximumSizeIsReached() {
+    String first = JacksonUtil.writeAsString(PAYLOADS.get(0)) + "\n";
+
+    JsonListWriter.Lines all = JsonListWriter.writeLines(PAYLOADS, Set.of(), Long.MAX_VALUE);
+    JsonListWriter.Lines capped = JsonListWriter.writeLines(PAYLOADS, Set.of(), first.length());
+    JsonListWriter.Lines tiny = JsonListWriter.writeLines(PAYLOADS, Set.of(), 1);
+
+    assertEquals(2, all.getCount());
+    assertEquals(first + JacksonUtil.writeAsString(PAYLOADS.get(1)) + "\n",
+        new String(all.getBytes(), UTF_8));
+    assertEquals(1, capped.getCount());
+    assertEquals(first, new String(capped.getBytes(), UTF_8));
+    // The first payload is written whatever its size
+    assertEquals(1, tiny.getCount());
+    assertEquals(first, new String(tiny.getBytes(), UTF_8));
+  }
+}
@@ -0,0 +1,32 @@
+package org.opentmf.mockserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class PageSizeConfigTests {
+
+  @Test
+  void forDomain_defaultsToTen() {
+    assertEquals(10, PageSizeConfig.parse(null).forDomain("productOrder"));
+    assertEquals(10, PageSizeConfig.parse("productOrder:500").forDomain("serviceOrder"));
+  }
+
+  @Test
+  void forDomain_prefersTheMostSpecificPath() {
+    PageSizeConfig config = PageSizeConfig.parse(
+        "*:100; /productOrder/:5000; v4/productOrder:2000");
+
+    assertEquals(100, config.forDomain("tmf-api/serviceOrdering/v4/serviceOrder"));
+    assertEquals(5000, config.forDomain("productOrder"));
+    assertEquals(2000, config.forDomain("tmf-api/productOrdering/v4/productOrder"));
+  }
+
+  @Test
+  void parse_rejectsInvalidItems() {
+    assertThrows(IllegalArgumentException.class, () -> PageSizeConfig.parse("500"));
+    assertThrows(IllegalArgumentException.class, () -> PageSizeConfig.parse("*:0"));
+    assertThrows(IllegalArgumentException.class, () -> PageSizeConfig.parse("*:many"));
+  }
+}
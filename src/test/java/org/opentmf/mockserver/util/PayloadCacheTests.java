@@ -0,0 +1,183 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockserver.model.HttpRequest;
+import org.opentmf.mockserver.cache.CacheJournal;
+import org.opentmf.mockserver.cache.CacheSnapshot;
+import org.opentmf.mockserver.cache.DomainSnapshot;
+import org.opentmf.mockserver.cache.FsyncPolicy;
+import org.opentmf.mockserver.cache.RemovalCause;
+import org.opentmf.mockserver.model.RequestContext;
+
+class PayloadCacheTests {
+
+  private static final PayloadCache CACHE = PayloadCache.getInstance();
+
+  @Test
+  void putAndGet_withSameKey_returnsStoredPayload() {
+    String domain = RandomStringUtils.randomAlphabetic(8);
+    RequestContext ctx = contextOf(domain, "1");
+
+    CACHE.put(ctx, payloadOf("1"));
+
+    assertEquals("1", CACHE.get(ctx).get("id").asText());
+    assertThrows(IllegalArgumentException.class, () -> CACHE.put(ctx, payloadOf("1")));
+  }
+
+  @Test
+  void getLatestOf_withUnknownId_returnsNull() {
+    String domain = RandomStringUtils.randomAlphabetic(8);
+    CACHE.put(contextOf(domain, "1"), payloadOf("1"));
+
+    assertNull(CACHE.getLatestOf(contextOf(domain, "2")));
+    assertNull(CACHE.getLatestOf(contextOf(RandomStringUtils.randomAlphabetic(8), "2")));
+  }
+
+  @Test
+  void concurrentWriters_onDifferentDomains_storeEveryPayload() throws Exception {
+    int threads = 8;
+    int perThread = 500;
+    String prefix = RandomStringUtils.randomAlphabetic(8);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        String domain = prefix + (t % 2);
+        int base = t * perThread;
+        tasks.add(
+            () -> {
+              for (int i = base; i < base + perThread; i++) {
+                RequestContext ctx = contextOf(domain, String.valueOf(i));
+                CACHE.put(ctx, payloadOf(String.valueOf(i)));
+                assertNotNull(CACHE.get(ctx));
+                CACHE.getAll(domain).values().forEach(JsonNode::size);
+              }
+              return null;
+            });
+      }
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(threads * perThread / 2, CACHE.getAll(prefix + 0).size());
+    assertEquals(threads * perThread / 2, CACHE.getAll(prefix + 1).size());
+  }
+
+  @Test
+  void restore_ofSnapshot_bringsBackClearedPayloads(@TempDir Path directory) throws Exception {
+    String domain = RandomStringUtils.randomAlphabetic(8);
+    Path file = directory.resolve("cache.snapshot");
+    for (int i = 0; i < 100; i++) {
+      CACHE.put(contextOf(domain, String.valueOf(i)), payloadOf(String.valueOf(i)));
+    }
+    CACHE.snapshot(file);
+    for (int i = 0; i < 100; i++) {
+      CACHE.clear(contextOf(domain, String.valueOf(i)));
+    }
+    CACHE.put(contextOf(domain, "0"), payloadOf("0"));
+
+    long restored = CACHE.restore(file);
+
+    assertEquals(99, restored);
+    assertEquals(100, CACHE.getAll(domain).size());
+    assertEquals("42", CACHE.get(contextOf(domain, "42")).get("id").asText());
+  }
+
+  @Test
+  void replay_ofJournal_appliesTouchesAndEvictions(@TempDir Path directory) throws Exception {
+    String domain = RandomStringUtils.randomAlphabetic(8);
+    Path file = directory.resolve("cache.journal");
+    CACHE.put(contextOf(domain, "1"), payloadOf("1"));
+    CACHE.put(contextOf(domain, "2"), payloadOf("2"));
+    Thread.sleep(5);
+    CacheJournal journal = CacheJournal.open(file, FsyncPolicy.ALWAYS, 1000L);
+    journal.append(CacheJournal.Operation.TOUCH, domain, contextOf(domain, "1").getId(), null)
+        .join();
+    journal.append(CacheJournal.Operation.EVICT, domain, contextOf(domain, "2").getId(),
+        RemovalCause.SIZE.name().getBytes(UTF_8)).join();
+    journal.close();
+    List<CacheJournal.Record> records = new ArrayList<>();
+    CacheJournal.replay(file, records::add);
+
+    records.forEach(CACHE::replay);
+
+    assertNull(CACHE.get(contextOf(domain, "2")));
+    CACHE.snapshot(directory.resolve("cache.snapshot"));
+    CacheSnapshot.Record touched = CacheSnapshot.read(directory.resolve("cache.snapshot"))
+        .stream()
+        .filter(record -> record.getDomain().equals(domain))
+        .findFirst()
+        .orElseThrow();
+    assertEquals("1", touched.getId().getId());
+    assertEquals(records.get(0).getTime(), touched.getLastTouch());
+  }
+
+  @Test
+  void awaitDurable_ofFailedJournalWrite_reportsInsteadOfThrowing() {
+    RequestContext ctx = contextOf(RandomStringUtils.randomAlphabetic(8), "1");
+
+    assertTrue(PayloadCache.awaitDurable(
+        CompletableFuture.completedFuture(null), ctx.getDomain(), ctx.getId()));
+    assertFalse(PayloadCache.awaitDurable(
+        CompletableFuture.failedFuture(new IOException("No space left on device")),
+        ctx.getDomain(), ctx.getId()));
+  }
+
+  @Test
+  void secondaryIndex_followsPutUpdateAndClear() {
+    String domain = RandomStringUtils.randomAlphabetic(8);
+    for (int i = 0; i < 10; i++) {
+      ObjectNode payload = payloadOf(String.valueOf(i));
+      payload.put("state", i < 4 ? "completed" : "acknowledged");
+      payload.putArray("relatedParty").addObject().put("id", "party" + (i % 2));
+      CACHE.put(contextOf(domain, String.valueOf(i)), payload);
+    }
+    ObjectNode updated = payloadOf("5");
+    updated.put("state", "completed");
+    CACHE.update(contextOf(domain, "5"), updated);
+    CACHE.clear(contextOf(domain, "0"));
+
+    DomainSnapshot snapshot = CACHE.getSnapshot(domain);
+
+    assertEquals(4, snapshot.findEqual("state", "completed").size());
+    assertEquals(5, snapshot.findEqual("state", "acknowledged").size());
+    assertEquals(4, snapshot.findEqual("relatedParty.id", "party0").size());
+    assertEquals(4, snapshot.findEqual("relatedParty.id", "party1").size());
+    assertEquals(9, snapshot.findRange("state", "a", true, null, false).size());
+  }
+
+  static RequestContext contextOf(String domain, String id) {
+    return RequestContext.initialize(
+        new HttpRequest().withPath("/" + domain + "/" + id), true, null);
+  }
+
+  static ObjectNode payloadOf(String id) {
+    ObjectNode node = JacksonUtil.createObjectNode();
+    node.put("id", id);
+    return node;
+  }
+}
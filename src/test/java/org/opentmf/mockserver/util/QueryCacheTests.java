@@ -0,0 +1,86 @@
+package org.opentmf.mockserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.mockserver.model.HttpRequest;
+import org.opentmf.mockserver.filter.FilterPlan;
+
+class QueryCacheTests {
+
+  @Test
+  void get_parsesOncePerText() {
+    QueryCache<String> cache = new QueryCache<>("test", 10);
+    AtomicInteger parses = new AtomicInteger();
+
+    for (int i = 0; i < 5; i++) {
+      cache.get("a", text -> text + parses.incrementAndGet());
+      cache.get("b", text -> text + parses.incrementAndGet());
+    }
+
+    assertEquals(2, parses.get());
+    assertEquals(8, cache.hitCount());
+    assertEquals(2, cache.missCount());
+    assertEquals("a1", cache.get("a", text -> "unused"));
+  }
+
+  @Test
+  void get_evictsLeastRecentlyUsed() throws InterruptedException {
+    QueryCache<String> cache = new QueryCache<>("test", 2);
+    cache.get("a", text -> text);
+    cache.get("b", text -> text);
+    Thread.sleep(1);
+    cache.get("a", text -> text);
+
+    cache.get("c", text -> text);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.evictionCount());
+    assertEquals("a", cache.get("a", text -> "parsed again"));
+    assertEquals("parsed again", cache.get("b", text -> "parsed again"));
+  }
+
+  @Test
+  void get_evictsBeyondMaximumWeight() throws InterruptedException {
+    QueryCache<String> cache = new QueryCache<>("test", 10, 5, text -> (long) text.length());
+    cache.get("a", text -> "xx");
+    Thread.sleep(1);
+    cache.get("b", text -> "yy");
+
+    cache.get("c", text -> "zz");
+    String heavy = cache.get("d", text -> "too heavy");
+
+    assertEquals("too heavy", heavy);
+    assertEquals(2, cache.size());
+    assertEquals(4, cache.weight());
+    assertEquals(1, cache.evictionCount());
+    assertEquals("yy", cache.get("b", text -> "parsed again"));
+    assertEquals("parsed again", cache.get("a", text -> "parsed again"));
+    assertEquals("parsed again", cache.get("d", text -> "parsed again"));
+  }
+
+  @Test
+  void get_doesNotCacheFailures() {
+    QueryCache<String> cache = new QueryCache<>("test", 2);
+
+    assertThrows(IllegalArgumentException.class, () -> cache.get("x", text -> {
+      throw new IllegalArgumentException(text);
+    }));
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void extractFilterPlan_sharesPlansBetweenRequests() {
+    String filter = "$[?(@.name == '" + System.nanoTime() + "')]";
+    HttpRequest request = new HttpRequest().withQueryStringParameter("filter", filter);
+
+    FilterPlan first = HttpRequestUtil.extractFilterPlan(request);
+    FilterPlan second = HttpRequestUtil.extractFilterPlan(request);
+
+    assertSame(first, second);
+  }
+}
@@ -0,0 +1,35 @@
+package org.opentmf.mockserver.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.mockserver.model.Body;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+
+class ResponseUtilTests {
+
+  @Test
+  void getJsonResponse_keepsTheSerializedBytes() {
+    byte[] json = "{\"id\":\"1\",\"name\":\"Çağrı\"}".getBytes(UTF_8);
+
+    HttpResponse response = ResponseUtil.getJsonResponse(HttpStatusCode.OK_200, json);
+
+    assertEquals(Body.Type.BINARY, response.getBody().getType());
+    assertSame(json, response.getBody().getRawBytes());
+    assertEquals("application/json", response.getFirstHeader("Content-Type"));
+    assertEquals("{\"id\":\"1\",\"name\":\"Çağrı\"}", response.getBodyAsString());
+  }
+
+  @Test
+  void getNdjsonResponse_keepsTheSerializedBytes() {
+    byte[] ndjson = "{\"id\":\"1\"}\n{\"id\":\"2\"}\n".getBytes(UTF_8);
+
+    HttpResponse response = ResponseUtil.getNdjsonResponse(HttpStatusCode.OK_200, ndjson);
+
+    assertSame(ndjson, response.getBody().getRawBytes());
+    assertEquals("application/x-ndjson", response.getFirstHeader("Content-Type"));
+  }
+}
@@ -0,0 +1,75 @@
+package org.opentmf.mockserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class SortUtilTests {
+
+  @Test
+  void sortedPage_matchesStableFullSort() {
+    Random random = new Random(7);
+    List<int[]> items = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      // Few distinct keys, so that the order of equal items matters
+      items.add(new int[] {random.nextInt(20), i});
+    }
+    Comparator<int[]> byKey = Comparator.comparingInt(item -> item[0]);
+
+    for (int[] page : new int[][] {{0, 10}, {5, 10}, {90, 10}, {240, 20}, {995, 10}, {2000, 10}}) {
+      List<int[]> expected = items.stream()
+          .sorted(byKey)
+          .skip(page[0])
+          .limit(page[1])
+          .collect(Collectors.toList());
+
+      List<int[]> actual = SortUtil.sortedPage(items, byKey, page[0], page[1]);
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertSame(expected.get(i), actual.get(i));
+      }
+    }
+  }
+
+  @Test
+  void parallelSortedPage_matchesStableFullSort() {
+    Random random = new Random(11);
+    List<int[]> items = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      items.add(new int[] {random.nextInt(50), i});
+    }
+    Comparator<int[]> byKey = Comparator.comparingInt(item -> item[0]);
+
+    // Pages near the start merge the heads of the parts, the others are cut out of a full sort
+    for (int[] page : new int[][] {{0, 10}, {37, 25}, {900, 100}, {3000, 50}, {4990, 20}}) {
+      List<int[]> expected = items.stream()
+          .sorted(byKey)
+          .skip(page[0])
+          .limit(page[1])
+          .collect(Collectors.toList());
+
+      List<int[]> actual = SortUtil.parallelSortedPage(items, byKey, page[0], page[1]);
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertSame(expected.get(i), actual.get(i));
+      }
+    }
+  }
+
+  @Test
+  void selectFirst_keepsOnlyKItems() {
+    List<Integer> items = List.of(5, 3, 9, 1, 7, 3, 8);
+
+    assertEquals(List.of(1, 3, 3), SortUtil.selectFirst(items, Comparator.naturalOrder(), 3));
+    assertEquals(List.of(9, 8), SortUtil.selectFirst(items, Comparator.reverseOrder(), 2));
+    assertEquals(List.of(), SortUtil.selectFirst(items, Comparator.naturalOrder(), 0));
+  }
+}